@@ -0,0 +1,92 @@
+package org.araqnid.stuff.benchmarks;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteStreams;
+import org.araqnid.stuff.activity.ActivityEventSink;
+import org.araqnid.stuff.activity.ActivityNode;
+import org.araqnid.stuff.activity.ChannelActivityJsonEvents;
+import org.araqnid.stuff.activity.LogActivityEvents;
+import org.araqnid.stuff.activity.LogActivityJsonEvents;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Cost of encoding the start and end events of a typical request node. Standard output is discarded while running,
+ * so this measures serialization rather than the terminal.
+ */
+@State(Scope.Benchmark)
+public class ActivityEventSinkBenchmark {
+	private static final Map<String, Object> START_ATTRIBUTES = ImmutableMap.of("method", "GET", "path", "/_api/info/version");
+	private static final Map<String, Object> END_ATTRIBUTES = ImmutableMap.of("status", 200);
+
+	@Param({ "log", "log-json", "channel-json" })
+	public String sink;
+
+	private ActivityEventSink activityEventSink;
+	private PrintStream originalOut;
+	private final UUID activityId = UUID.randomUUID();
+	private final Instant started = Instant.now();
+
+	@Setup
+	public void setUp() {
+		originalOut = System.out;
+		System.setOut(new PrintStream(ByteStreams.nullOutputStream()));
+		ObjectMapper mapper = new ObjectMapper();
+		UUID instanceId = UUID.randomUUID();
+		switch (sink) {
+		case "log":
+			activityEventSink = new LogActivityEvents(mapper);
+			break;
+		case "log-json":
+			activityEventSink = new LogActivityJsonEvents(mapper, instanceId);
+			break;
+		case "channel-json":
+			activityEventSink = new ChannelActivityJsonEvents(mapper, instanceId, new NullChannel(), 65536);
+			break;
+		default:
+			throw new IllegalArgumentException(sink);
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		System.setOut(originalOut);
+	}
+
+	@Benchmark
+	public void start_and_end() {
+		activityEventSink.activityNodeStart(activityId, 1, ActivityNode.NO_PARENT, "HttpRequest", started, START_ATTRIBUTES);
+		activityEventSink.activityNodeEnd(activityId, 1, true, 1234567L, END_ATTRIBUTES);
+	}
+
+	private static final class NullChannel implements WritableByteChannel {
+		@Override
+		public int write(ByteBuffer src) throws IOException {
+			int remaining = src.remaining();
+			src.position(src.limit());
+			return remaining;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return true;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
@@ -0,0 +1,81 @@
+package org.araqnid.stuff.benchmarks;
+
+import java.lang.reflect.Method;
+import java.time.Clock;
+import javax.servlet.FilterChain;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.google.common.base.Defaults;
+import com.google.common.reflect.AbstractInvocationHandler;
+import com.google.common.reflect.Reflection;
+import org.araqnid.stuff.activity.ActivityFilter;
+import org.araqnid.stuff.activity.ActivityIdGenerator;
+import org.araqnid.stuff.activity.ActivityRegistry;
+import org.araqnid.stuff.activity.ActivityTiming;
+import org.araqnid.stuff.activity.NodeIdAllocator;
+import org.araqnid.stuff.activity.ResourceAccounting;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Per-request overhead of {@link ActivityFilter} around a chain that does nothing, with events discarded.
+ */
+@State(Scope.Benchmark)
+public class ActivityFilterBenchmark {
+	private static final FilterChain NO_OP_CHAIN = (request, response) -> { };
+
+	@Param({ "time", "random" })
+	public String activityIds;
+
+	private ActivityFilter filter;
+	private HttpServletRequest request;
+	private HttpServletResponse response;
+
+	@Setup
+	public void setUp() {
+		Clock clock = Clock.systemUTC();
+		filter = new ActivityFilter(NullActivityEventSink.INSTANCE,
+				NodeIdAllocator.DEFAULT,
+				activityIds.equals("random") ? ActivityIdGenerator.secureRandom() : ActivityIdGenerator.timeOrdered(clock),
+				ActivityTiming.perNode(clock),
+				new ActivityRegistry(),
+				ResourceAccounting.DISABLED);
+		request = stub(HttpServletRequest.class);
+		response = stub(HttpServletResponse.class);
+	}
+
+	@Benchmark
+	@Threads(1)
+	public void request_one_thread() throws Exception {
+		filter.doFilter(request, response, NO_OP_CHAIN);
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public void request_all_cores() throws Exception {
+		filter.doFilter(request, response, NO_OP_CHAIN);
+	}
+
+	private static <T> T stub(Class<T> iface) {
+		return Reflection.newProxy(iface, new AbstractInvocationHandler() {
+			@Override
+			protected Object handleInvocation(Object proxy, Method method, Object[] args) {
+				switch (method.getName()) {
+				case "getMethod":
+					return "GET";
+				case "getServletPath":
+					return "/_api/info/version";
+				case "getStatus":
+					return 200;
+				default:
+					return Defaults.defaultValue(method.getReturnType());
+				}
+			}
+		});
+	}
+}
@@ -0,0 +1,63 @@
+package org.araqnid.stuff.benchmarks;
+
+import java.time.Clock;
+import java.util.UUID;
+
+import org.araqnid.stuff.activity.Activity;
+import org.araqnid.stuff.activity.ActivityNode;
+import org.araqnid.stuff.activity.ActivityTiming;
+import org.araqnid.stuff.activity.NodeIdAllocator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Cost of opening and completing nodes, with events discarded. Each thread works within its own activity.
+ */
+@State(Scope.Thread)
+public class ActivityNodeBenchmark {
+	@Param({ "per-node", "monotonic" })
+	public String timing;
+
+	@Param({ "1", "4", "16" })
+	public int depth;
+
+	private Activity activity;
+	private ActivityNode[] stack;
+
+	@Setup
+	public void setUp() {
+		ActivityTiming activityTiming = timing.equals("monotonic")
+				? ActivityTiming.monotonic(Clock.systemUTC()) : ActivityTiming.perNode(Clock.systemUTC());
+		activity = new Activity(UUID.randomUUID(), "Benchmark", null, NullActivityEventSink.INSTANCE,
+				NodeIdAllocator.DEFAULT, activityTiming);
+		stack = new ActivityNode[depth];
+	}
+
+	@Benchmark
+	@Threads(1)
+	public ActivityNode nested_one_thread() {
+		return churn();
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public ActivityNode nested_all_cores() {
+		return churn();
+	}
+
+	private ActivityNode churn() {
+		ActivityNode node = activity.root;
+		for (int i = 0; i < depth; i++) {
+			node = node.begin("Child");
+			stack[i] = node;
+		}
+		for (int i = depth - 1; i >= 0; i--) {
+			stack[i].complete(true);
+		}
+		return node;
+	}
+}
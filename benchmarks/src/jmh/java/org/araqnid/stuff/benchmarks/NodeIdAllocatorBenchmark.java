@@ -0,0 +1,40 @@
+package org.araqnid.stuff.benchmarks;
+
+import org.araqnid.stuff.activity.NodeIdAllocator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+@State(Scope.Benchmark)
+public class NodeIdAllocatorBenchmark {
+	@Param({ "sequential", "blocks" })
+	public String allocator;
+
+	private NodeIdAllocator nodeIds;
+
+	@Setup
+	public void setUp() {
+		nodeIds = allocator.equals("sequential") ? NodeIdAllocator.sequential() : NodeIdAllocator.threadBlocks(1024);
+	}
+
+	@Benchmark
+	@Threads(1)
+	public long one_thread() {
+		return nodeIds.next();
+	}
+
+	@Benchmark
+	@Threads(4)
+	public long four_threads() {
+		return nodeIds.next();
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public long all_cores() {
+		return nodeIds.next();
+	}
+}
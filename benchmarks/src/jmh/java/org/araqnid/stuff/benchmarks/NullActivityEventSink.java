@@ -0,0 +1,24 @@
+package org.araqnid.stuff.benchmarks;
+
+import java.time.Instant;
+import java.util.UUID;
+import javax.annotation.Nullable;
+
+import org.araqnid.stuff.activity.ActivityEventSink;
+
+final class NullActivityEventSink implements ActivityEventSink {
+	static final NullActivityEventSink INSTANCE = new NullActivityEventSink();
+
+	@Override
+	public void activityNodeStart(UUID activityId,
+			long nodeId,
+			long nodeParentId,
+			String type,
+			Instant started,
+			@Nullable Object attributes) {
+	}
+
+	@Override
+	public void activityNodeEnd(UUID activityId, long nodeId, boolean success, long durationNanos, @Nullable Object attributes) {
+	}
+}
@@ -0,0 +1,41 @@
+package org.araqnid.stuff.benchmarks;
+
+import java.util.UUID;
+
+import org.araqnid.stuff.activity.Activity;
+import org.araqnid.stuff.activity.ActivityNode;
+import org.araqnid.stuff.activity.ThreadActivity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cost of the thread state updates made per request: attach and detach (including the MDC update) and the
+ * transitions made as child nodes open and close.
+ */
+@State(Scope.Thread)
+public class ThreadActivityBenchmark {
+	private Activity activity;
+	private ActivityNode child;
+
+	@Setup
+	public void setUp() {
+		activity = new Activity(UUID.randomUUID(), "Benchmark", null, NullActivityEventSink.INSTANCE);
+		child = new ActivityNode(activity, activity.root, "Child", null);
+	}
+
+	@Benchmark
+	public void attach_detach() {
+		ThreadActivity.attach(activity.root);
+		ThreadActivity.detach(activity);
+	}
+
+	@Benchmark
+	public void transition() {
+		ThreadActivity.attach(activity.root);
+		ThreadActivity.transition(activity.root, child);
+		ThreadActivity.transition(child, activity.root);
+		ThreadActivity.detach(activity);
+	}
+}
@@ -0,0 +1,46 @@
+package org.araqnid.stuff.test.integration;
+
+import java.util.UUID;
+
+import com.google.common.collect.ImmutableMultimap;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.araqnid.stuff.test.integration.HttpClientMatchers.headerWithValue;
+import static org.araqnid.stuff.test.integration.HttpClientMatchers.responseWithHeader;
+import static org.araqnid.stuff.test.integration.MiscMatchers.likeAUUID;
+import static org.araqnid.stuff.test.integration.MiscMatchers.twoParts;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.any;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+
+public class ActivityFilterIntegrationTest {
+	@Rule
+	public final ServerRunner server = new ServerRunner();
+
+	@Test
+	public void response_identifies_new_activity() throws Exception {
+		try (CloseableHttpResponse response = server.doGet("/_api/info/version")) {
+			assertThat(response, responseWithHeader("X-Activity", headerWithValue(twoParts(likeAUUID(), any(String.class)))));
+		}
+	}
+
+	@Test
+	public void inbound_activity_header_continues_caller_activity() throws Exception {
+		String activityId = UUID.randomUUID().toString();
+		try (CloseableHttpResponse response = server.doGetWithHeaders("/_api/info/version",
+				ImmutableMultimap.of("X-Activity", activityId + " 12345"))) {
+			assertThat(response, responseWithHeader("X-Activity", headerWithValue(twoParts(equalTo(activityId), not(equalTo("12345"))))));
+		}
+	}
+
+	@Test
+	public void malformed_inbound_activity_header_is_ignored() throws Exception {
+		try (CloseableHttpResponse response = server.doGetWithHeaders("/_api/info/version",
+				ImmutableMultimap.of("X-Activity", "not-an-activity"))) {
+			assertThat(response, responseWithHeader("X-Activity", headerWithValue(twoParts(likeAUUID(), any(String.class)))));
+		}
+	}
+}
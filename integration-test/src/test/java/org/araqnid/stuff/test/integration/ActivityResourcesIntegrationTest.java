@@ -0,0 +1,44 @@
+package org.araqnid.stuff.test.integration;
+
+import com.google.common.collect.ImmutableMultimap;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.araqnid.stuff.matchers.JsonStructureMatchers.jsonAny;
+import static org.araqnid.stuff.matchers.JsonStructureMatchers.jsonArray;
+import static org.araqnid.stuff.matchers.JsonStructureMatchers.jsonObject;
+import static org.araqnid.stuff.matchers.JsonStructureMatchers.jsonString;
+import static org.araqnid.stuff.test.integration.HttpClientMatchers.ok;
+import static org.araqnid.stuff.test.integration.HttpClientMatchers.responseWithJsonContent;
+import static org.araqnid.stuff.test.integration.InfoResourcesIntegrationTest.responseWithTextContent;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+
+public class ActivityResourcesIntegrationTest {
+	@Rule
+	public final ServerRunner server = new ServerRunner();
+
+	@Test
+	public void activities_resource_as_json_includes_current_request() throws Exception {
+		try (CloseableHttpResponse response = server.doGetWithHeaders("/_api/info/activities", ImmutableMultimap.of("Accept", "application/json"))) {
+			assertThat(response, is(allOf(ok(), responseWithJsonContent(jsonArray().including(jsonObject()
+					.withProperty("activity_id", jsonAny())
+					.withProperty("type", jsonString("HttpRequest"))
+					.withProperty("attributes", jsonAny())
+					.withProperty("started", jsonAny())
+					.withProperty("age_millis", jsonAny())
+					.withProperty("thread", jsonString(containsString("Jetty")))
+					.withProperty("nodes", jsonArray().of(jsonString("HttpRequest"))))))));
+		}
+	}
+
+	@Test
+	public void activities_resource_as_plain_text() throws Exception {
+		try (CloseableHttpResponse response = server.doGetWithHeaders("/_api/info/activities", ImmutableMultimap.of("Accept", "text/plain"))) {
+			assertThat(response, is(allOf(ok(), responseWithTextContent(containsString("HttpRequest")))));
+		}
+	}
+}
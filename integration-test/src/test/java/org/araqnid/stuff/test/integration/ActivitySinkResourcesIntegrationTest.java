@@ -0,0 +1,43 @@
+package org.araqnid.stuff.test.integration;
+
+import com.google.common.collect.ImmutableMultimap;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.araqnid.stuff.matchers.JsonStructureMatchers.jsonAny;
+import static org.araqnid.stuff.matchers.JsonStructureMatchers.jsonObject;
+import static org.araqnid.stuff.test.integration.HttpClientMatchers.ok;
+import static org.araqnid.stuff.test.integration.HttpClientMatchers.responseWithJsonContent;
+import static org.araqnid.stuff.test.integration.InfoResourcesIntegrationTest.responseWithTextContent;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+
+public class ActivitySinkResourcesIntegrationTest {
+	@Rule
+	public final ServerRunner server = new ServerRunner();
+
+	@Test
+	public void activity_sinks_resource_as_json_lists_destinations() throws Exception {
+		try (CloseableHttpResponse response = server.doGetWithHeaders("/_api/info/activity-sinks", ImmutableMultimap.of("Accept", "application/json"))) {
+			assertThat(response, is(allOf(ok(), responseWithJsonContent(jsonObject()
+					.withProperty("events", jsonObject()
+							.withProperty("capacity", jsonAny())
+							.withProperty("lag", jsonAny())
+							.withProperty("delivered", jsonAny())
+							.withProperty("dropped", jsonAny())
+							.withProperty("failed", jsonAny()))
+					.withAnyOtherProperties()))));
+		}
+	}
+
+	@Test
+	public void activity_sinks_resource_as_plain_text() throws Exception {
+		try (CloseableHttpResponse response = server.doGetWithHeaders("/_api/info/activity-sinks", ImmutableMultimap.of("Accept", "text/plain"))) {
+			assertThat(response, is(allOf(ok(), responseWithTextContent(allOf(containsString("events"),
+					containsString("flamegraph"))))));
+		}
+	}
+}
@@ -0,0 +1,75 @@
+package org.araqnid.stuff.test.integration;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableMultimap;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.araqnid.stuff.activity.ActivityFlameGraph;
+import org.araqnid.stuff.activity.ActivityNode;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.araqnid.stuff.matchers.JsonStructureMatchers.jsonAny;
+import static org.araqnid.stuff.matchers.JsonStructureMatchers.jsonArray;
+import static org.araqnid.stuff.matchers.JsonStructureMatchers.jsonInt;
+import static org.araqnid.stuff.matchers.JsonStructureMatchers.jsonObject;
+import static org.araqnid.stuff.matchers.JsonStructureMatchers.jsonString;
+import static org.araqnid.stuff.test.integration.HttpClientMatchers.ok;
+import static org.araqnid.stuff.test.integration.HttpClientMatchers.responseWithJsonContent;
+import static org.araqnid.stuff.test.integration.InfoResourcesIntegrationTest.responseWithTextContent;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+
+public class FlameGraphResourcesIntegrationTest {
+	@Rule
+	public final ServerRunner server = new ServerRunner();
+
+	@Before
+	public void foldTestActivity() {
+		ActivityFlameGraph flameGraph = server.getInjector().getInstance(ActivityFlameGraph.class);
+		UUID activityId = UUID.randomUUID();
+		flameGraph.activityNodeStart(activityId, 1, ActivityNode.NO_PARENT, "TestRoot", Instant.now(), null);
+		flameGraph.activityNodeStart(activityId, 2, 1, "TestChild", Instant.now(), null);
+		flameGraph.activityNodeEnd(activityId, 2, true, 3_000_000L, null);
+		flameGraph.activityNodeEnd(activityId, 1, true, 5_000_000L, null);
+	}
+
+	@Test
+	public void flame_graph_as_json() throws Exception {
+		try (CloseableHttpResponse response = server.doGetWithHeaders("/_api/info/flamegraph", ImmutableMultimap.of("Accept", "application/json"))) {
+			assertThat(response, is(allOf(ok(), responseWithJsonContent(jsonArray().including(jsonObject()
+					.withProperty("name", jsonString("TestRoot"))
+					.withProperty("count", jsonInt(1))
+					.withProperty("total_millis", jsonAny())
+					.withProperty("self_millis", jsonAny())
+					.withProperty("children", jsonArray().of(jsonObject()
+							.withProperty("name", jsonString("TestChild"))
+							.withProperty("count", jsonInt(1))
+							.withProperty("total_millis", jsonAny())
+							.withProperty("self_millis", jsonAny())
+							.withProperty("children", jsonArray().of())))))))));
+		}
+	}
+
+	@Test
+	public void flame_graph_as_collapsed_stacks() throws Exception {
+		try (CloseableHttpResponse response = server.doGetWithHeaders("/_api/info/flamegraph", ImmutableMultimap.of("Accept", "text/plain"))) {
+			assertThat(response, is(allOf(ok(), responseWithTextContent(allOf(containsString("TestRoot 2000\n"),
+					containsString("TestRoot;TestChild 3000\n"))))));
+		}
+	}
+
+	@Test
+	public void flame_graph_can_be_reset() throws Exception {
+		server.doPostForm("/_api/info/flamegraph/reset", ImmutableMultimap.of(), ImmutableMap.of()).close();
+		try (CloseableHttpResponse response = server.doGetWithHeaders("/_api/info/flamegraph?window=0", ImmutableMultimap.of("Accept", "text/plain"))) {
+			assertThat(response, is(allOf(ok(), responseWithTextContent(not(containsString("TestRoot"))))));
+		}
+	}
+}
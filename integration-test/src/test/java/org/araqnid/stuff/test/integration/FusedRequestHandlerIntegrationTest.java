@@ -0,0 +1,54 @@
+package org.araqnid.stuff.test.integration;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableMultimap;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.araqnid.stuff.matchers.JsonStructureMatchers.jsonAny;
+import static org.araqnid.stuff.matchers.JsonStructureMatchers.jsonObject;
+import static org.araqnid.stuff.test.integration.HttpClientMatchers.headerWithValue;
+import static org.araqnid.stuff.test.integration.HttpClientMatchers.ok;
+import static org.araqnid.stuff.test.integration.HttpClientMatchers.responseWith;
+import static org.araqnid.stuff.test.integration.HttpClientMatchers.responseWithHeader;
+import static org.araqnid.stuff.test.integration.HttpClientMatchers.responseWithJsonContent;
+import static org.araqnid.stuff.test.integration.HttpClientMatchers.statusIs;
+import static org.araqnid.stuff.test.integration.MiscMatchers.likeAUUID;
+import static org.araqnid.stuff.test.integration.MiscMatchers.twoParts;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.any;
+import static org.hamcrest.Matchers.is;
+
+public class FusedRequestHandlerIntegrationTest {
+	@Rule
+	public final ServerRunner server = new ServerRunner(() -> ImmutableMap.of("HTTP_PIPELINE", "fused"), binder -> { });
+
+	@Test
+	public void api_request_dispatched_to_resteasy() throws Exception {
+		try (CloseableHttpResponse response = server.doGetWithHeaders("/_api/info/version", ImmutableMultimap.of("Accept", "application/json"))) {
+			assertThat(response, is(allOf(ok(),
+					responseWithHeader("X-Server-Identity", headerWithValue(twoParts(any(String.class), likeAUUID()))),
+					responseWithHeader("X-Activity", headerWithValue(twoParts(likeAUUID(), any(String.class)))),
+					responseWithJsonContent(jsonObject().withAnyOtherProperties().withProperty("version", jsonAny())))));
+		}
+	}
+
+	@Test
+	public void static_request_served_with_identity_and_activity() throws Exception {
+		try (CloseableHttpResponse response = server.doGet("/")) {
+			assertThat(response, is(allOf(ok(),
+					responseWithHeader("X-Server-Identity", headerWithValue(twoParts(any(String.class), likeAUUID()))),
+					responseWithHeader("X-Activity", headerWithValue(twoParts(likeAUUID(), any(String.class)))))));
+		}
+	}
+
+	@Test
+	public void unknown_api_path_not_found() throws Exception {
+		try (CloseableHttpResponse response = server.doGet("/_api/no-such-resource")) {
+			assertThat(response, responseWith(statusIs(HttpStatus.SC_NOT_FOUND)));
+		}
+	}
+}
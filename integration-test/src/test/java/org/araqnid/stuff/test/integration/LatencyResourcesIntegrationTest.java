@@ -0,0 +1,46 @@
+package org.araqnid.stuff.test.integration;
+
+import com.google.common.collect.ImmutableMultimap;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.araqnid.stuff.matchers.JsonStructureMatchers.jsonAny;
+import static org.araqnid.stuff.matchers.JsonStructureMatchers.jsonObject;
+import static org.araqnid.stuff.test.integration.HttpClientMatchers.ok;
+import static org.araqnid.stuff.test.integration.HttpClientMatchers.responseWithJsonContent;
+import static org.araqnid.stuff.test.integration.InfoResourcesIntegrationTest.responseWithTextContent;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+
+public class LatencyResourcesIntegrationTest {
+	@Rule
+	public final ServerRunner server = new ServerRunner();
+
+	@Test
+	public void latency_resource_as_json_includes_previous_requests() throws Exception {
+		server.doGet("/_api/info/version").close();
+		try (CloseableHttpResponse response = server.doGetWithHeaders("/_api/info/latency", ImmutableMultimap.of("Accept", "application/json"))) {
+			assertThat(response, is(allOf(ok(), responseWithJsonContent(jsonObject()
+					.withProperty("HttpRequest", jsonObject()
+							.withProperty("count", jsonAny())
+							.withProperty("mean_millis", jsonAny())
+							.withProperty("p50_millis", jsonAny())
+							.withProperty("p90_millis", jsonAny())
+							.withProperty("p99_millis", jsonAny())
+							.withProperty("p999_millis", jsonAny())
+							.withProperty("max_millis", jsonAny()))
+					.withAnyOtherProperties()))));
+		}
+	}
+
+	@Test
+	public void latency_resource_as_plain_text() throws Exception {
+		server.doGet("/_api/info/version").close();
+		try (CloseableHttpResponse response = server.doGetWithHeaders("/_api/info/latency", ImmutableMultimap.of("Accept", "text/plain"))) {
+			assertThat(response, is(allOf(ok(), responseWithTextContent(containsString("HttpRequest")))));
+		}
+	}
+}
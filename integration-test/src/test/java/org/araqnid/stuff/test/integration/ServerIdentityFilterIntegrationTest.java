@@ -21,4 +21,12 @@ public class ServerIdentityFilterIntegrationTest {
 			assertThat(response, responseWithHeader("X-Server-Identity", headerWithValue(twoParts(any(String.class), likeAUUID()))));
 		}
 	}
+
+	@Test
+	public void api_response_includes_server_identity_and_activity() throws Exception {
+		try (CloseableHttpResponse response = server.doGet("/_api/info/version")) {
+			assertThat(response, responseWithHeader("X-Server-Identity", headerWithValue(twoParts(any(String.class), likeAUUID()))));
+			assertThat(response, responseWithHeader("X-Activity", headerWithValue(twoParts(likeAUUID(), any(String.class)))));
+		}
+	}
 }
\ No newline at end of file
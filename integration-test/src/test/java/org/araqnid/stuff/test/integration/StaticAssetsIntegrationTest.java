@@ -0,0 +1,62 @@
+package org.araqnid.stuff.test.integration;
+
+import com.google.common.collect.ImmutableMultimap;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.araqnid.stuff.test.integration.HttpClientMatchers.headerWithValue;
+import static org.araqnid.stuff.test.integration.HttpClientMatchers.ok;
+import static org.araqnid.stuff.test.integration.HttpClientMatchers.responseWith;
+import static org.araqnid.stuff.test.integration.HttpClientMatchers.responseWithHeader;
+import static org.araqnid.stuff.test.integration.HttpClientMatchers.statusIs;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+
+public class StaticAssetsIntegrationTest {
+	@Rule
+	public final ServerRunner server = new ServerRunner();
+
+	@Test
+	public void asset_served_with_length_and_etag() throws Exception {
+		try (CloseableHttpResponse response = server.doGetWithHeaders("/bus.js", ImmutableMultimap.of("Accept-Encoding", "identity"))) {
+			assertThat(response, is(allOf(ok(),
+					responseWithHeader("Content-Length", headerWithValue(equalTo(String.valueOf(response.getEntity().getContentLength())))),
+					responseWithHeader("ETag", headerWithValue(allOf(startsWith("\""), endsWith("\"")))))));
+		}
+	}
+
+	@Test
+	public void gzip_variant_has_separate_etag() throws Exception {
+		try (CloseableHttpResponse response = server.doGetWithHeaders("/bus.js", ImmutableMultimap.of("Accept-Encoding", "gzip"))) {
+			assertThat(response, is(allOf(ok(),
+					responseWithHeader("Vary", headerWithValue(equalTo("Accept-Encoding"))),
+					responseWithHeader("ETag", headerWithValue(endsWith("-gz\""))))));
+		}
+	}
+
+	@Test
+	public void matching_etag_gives_not_modified() throws Exception {
+		String etag;
+		try (CloseableHttpResponse response = server.doGetWithHeaders("/", ImmutableMultimap.of("Accept-Encoding", "identity"))) {
+			assertThat(response, ok());
+			etag = response.getFirstHeader("ETag").getValue();
+		}
+		try (CloseableHttpResponse response = server.doGetWithHeaders("/", ImmutableMultimap.of("Accept-Encoding", "identity", "If-None-Match", etag))) {
+			assertThat(response, is(allOf(responseWith(statusIs(HttpStatus.SC_NOT_MODIFIED)),
+					responseWithHeader("ETag", headerWithValue(equalTo(etag))))));
+		}
+	}
+
+	@Test
+	public void missing_asset_not_found() throws Exception {
+		try (CloseableHttpResponse response = server.doGet("/no-such-asset.js")) {
+			assertThat(response, responseWith(statusIs(HttpStatus.SC_NOT_FOUND)));
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package org.araqnid.stuff.test.integration;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableMultimap;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.araqnid.stuff.activity.ActivityRegistry;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.araqnid.stuff.matchers.JsonStructureMatchers.jsonAny;
+import static org.araqnid.stuff.matchers.JsonStructureMatchers.jsonArray;
+import static org.araqnid.stuff.matchers.JsonStructureMatchers.jsonObject;
+import static org.araqnid.stuff.matchers.JsonStructureMatchers.jsonString;
+import static org.araqnid.stuff.test.integration.HttpClientMatchers.headerWithValue;
+import static org.araqnid.stuff.test.integration.HttpClientMatchers.ok;
+import static org.araqnid.stuff.test.integration.HttpClientMatchers.responseWithHeader;
+import static org.araqnid.stuff.test.integration.HttpClientMatchers.responseWithJsonContent;
+import static org.araqnid.stuff.test.integration.MiscMatchers.likeAUUID;
+import static org.araqnid.stuff.test.integration.MiscMatchers.twoParts;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.any;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assume.assumeTrue;
+
+public class VirtualThreadIntegrationTest {
+	@Rule
+	public final ServerRunner server = new ServerRunner(() -> ImmutableMap.of("HTTP_EXECUTOR", "VIRTUAL"), binder -> { });
+
+	@Before
+	public void require_virtual_threads() {
+		boolean available;
+		try {
+			Thread.class.getMethod("ofVirtual");
+			available = true;
+		} catch (NoSuchMethodException e) {
+			available = false;
+		}
+		assumeTrue("virtual threads available", available);
+	}
+
+	@Test
+	public void request_activity_attached_to_virtual_thread() throws Exception {
+		try (CloseableHttpResponse response = server.doGetWithHeaders("/_api/info/activities", ImmutableMultimap.of("Accept", "application/json"))) {
+			assertThat(response, is(allOf(ok(),
+					responseWithHeader("X-Activity", headerWithValue(twoParts(likeAUUID(), any(String.class)))),
+					responseWithJsonContent(jsonArray().of(jsonObject().withAnyOtherProperties()
+							.withProperty("type", jsonString("HttpRequest"))
+							.withProperty("thread", jsonString(startsWith("Jetty-virtual-")))
+							.withProperty("nodes", jsonArray().of(jsonString("HttpRequest"))))))));
+		}
+	}
+
+	@Test
+	public void request_activity_detached_and_unregistered_on_completion() throws Exception {
+		for (int i = 0; i < 3; i++) {
+			server.doGet("/_api/info/version").close();
+		}
+		ActivityRegistry registry = server.getInjector().getInstance(ActivityRegistry.class);
+		long deadline = System.currentTimeMillis() + 5000;
+		while (registry.size() > 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertThat(registry.size(), equalTo(0));
+		try (CloseableHttpResponse response = server.doGetWithHeaders("/_api/info/activities", ImmutableMultimap.of("Accept", "application/json"))) {
+			assertThat(response, is(allOf(ok(), responseWithJsonContent(jsonArray().of(jsonAny())))));
+		}
+	}
+}
@@ -0,0 +1,67 @@
+package org.araqnid.stuff;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.araqnid.stuff.activity.ActivityRegistry;
+
+import static java.util.stream.Collectors.toList;
+
+@Path("_api/info/activities")
+public class ActivityResources {
+	private final ActivityRegistry registry;
+
+	@Inject
+	public ActivityResources(ActivityRegistry registry) {
+		this.registry = registry;
+	}
+
+	@GET
+	@Produces("application/json")
+	public List<InFlightActivity> getActivities() {
+		return registry.snapshot().stream().map(InFlightActivity::new).collect(toList());
+	}
+
+	@GET
+	@Produces("text/plain")
+	public String dumpActivities() {
+		StringWriter sw = new StringWriter();
+		PrintWriter pw = new PrintWriter(sw);
+		for (InFlightActivity activity : getActivities()) {
+			pw.printf("%10.3f %-36s %-24s %s %s%n", activity.ageMillis, activity.activityId,
+					activity.thread != null ? activity.thread : "-", String.join(" > ", activity.nodes),
+					activity.attributes != null ? activity.attributes : "");
+		}
+		pw.flush();
+		return sw.toString();
+	}
+
+	static class InFlightActivity {
+		@JsonProperty final UUID activityId;
+		@JsonProperty final String type;
+		@JsonProperty @Nullable final Object attributes;
+		@JsonProperty final Instant started;
+		@JsonProperty final double ageMillis;
+		@JsonProperty @Nullable final String thread;
+		@JsonProperty final List<String> nodes;
+
+		InFlightActivity(ActivityRegistry.Entry entry) {
+			this.activityId = entry.activityId;
+			this.type = entry.type;
+			this.attributes = entry.attributes;
+			this.started = entry.started;
+			this.ageMillis = entry.ageNanos / 1e6;
+			this.thread = entry.threadName;
+			this.nodes = entry.nodes;
+		}
+	}
+}
@@ -0,0 +1,59 @@
+package org.araqnid.stuff;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.araqnid.stuff.activity.FanOutActivityEventSink;
+
+@Path("_api/info/activity-sinks")
+public class ActivitySinkResources {
+	private final FanOutActivityEventSink sink;
+
+	@Inject
+	public ActivitySinkResources(FanOutActivityEventSink sink) {
+		this.sink = sink;
+	}
+
+	@GET
+	@Produces("application/json")
+	public Map<String, DestinationSummary> getDestinations() {
+		Map<String, DestinationSummary> output = new LinkedHashMap<>();
+		sink.status().forEach((name, status) -> output.put(name, new DestinationSummary(status)));
+		return output;
+	}
+
+	@GET
+	@Produces("text/plain")
+	public String dumpDestinations() {
+		StringWriter sw = new StringWriter();
+		PrintWriter pw = new PrintWriter(sw);
+		pw.printf("%10s %10s %12s %10s %10s  %s%n", "capacity", "lag", "delivered", "dropped", "failed", "destination");
+		getDestinations().forEach((name, summary) -> pw.printf("%10d %10d %12d %10d %10d  %s%n", summary.capacity,
+				summary.lag, summary.delivered, summary.dropped, summary.failed, name));
+		pw.flush();
+		return sw.toString();
+	}
+
+	static class DestinationSummary {
+		@JsonProperty final int capacity;
+		@JsonProperty final long lag;
+		@JsonProperty final long delivered;
+		@JsonProperty final long dropped;
+		@JsonProperty final long failed;
+
+		DestinationSummary(FanOutActivityEventSink.DestinationStatus status) {
+			this.capacity = status.capacity();
+			this.lag = status.lag();
+			this.delivered = status.delivered();
+			this.dropped = status.dropped();
+			this.failed = status.failed();
+		}
+	}
+}
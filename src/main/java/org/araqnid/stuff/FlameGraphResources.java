@@ -0,0 +1,74 @@
+package org.araqnid.stuff;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import javax.inject.Inject;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.araqnid.stuff.activity.ActivityFlameGraph;
+
+@Path("_api/info/flamegraph")
+public class FlameGraphResources {
+	private final ActivityFlameGraph flameGraph;
+
+	@Inject
+	public FlameGraphResources(ActivityFlameGraph flameGraph) {
+		this.flameGraph = flameGraph;
+	}
+
+	@GET
+	@Produces("application/json")
+	public List<FrameSummary> getFlameGraph(@QueryParam("window") @DefaultValue("5") int windowMinutes) {
+		return FrameSummary.children(flameGraph.snapshot(windowMinutes));
+	}
+
+	/** Self time in microseconds by node type path, as taken by flamegraph.pl and similar tools */
+	@GET
+	@Produces("text/plain")
+	public String dumpFlameGraph(@QueryParam("window") @DefaultValue("5") int windowMinutes) {
+		StringWriter sw = new StringWriter();
+		PrintWriter pw = new PrintWriter(sw);
+		flameGraph.snapshot(windowMinutes).collapsed((path, frame) -> pw.printf("%s %d%n", path.replace(' ', '_'),
+				frame.selfNanos() / 1000));
+		pw.flush();
+		return sw.toString();
+	}
+
+	@POST
+	@Path("reset")
+	public void reset() {
+		flameGraph.reset();
+	}
+
+	static class FrameSummary {
+		@JsonProperty final String name;
+		@JsonProperty final long count;
+		@JsonProperty final double totalMillis;
+		@JsonProperty final double selfMillis;
+		@JsonProperty final List<FrameSummary> children;
+
+		FrameSummary(ActivityFlameGraph.Frame frame) {
+			this.name = frame.name();
+			this.count = frame.count();
+			this.totalMillis = frame.totalNanos() / 1e6;
+			this.selfMillis = frame.selfNanos() / 1e6;
+			this.children = children(frame);
+		}
+
+		static List<FrameSummary> children(ActivityFlameGraph.Frame frame) {
+			List<FrameSummary> children = new ArrayList<>();
+			for (ActivityFlameGraph.Frame child : frame.children()) {
+				children.add(new FrameSummary(child));
+			}
+			return children;
+		}
+	}
+}
@@ -0,0 +1,48 @@
+package org.araqnid.stuff;
+
+import java.io.IOException;
+import java.util.UUID;
+import javax.inject.Inject;
+import javax.servlet.DispatcherType;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.araqnid.stuff.activity.ActivityFilter;
+import org.araqnid.stuff.config.ServerIdentity;
+import org.eclipse.jetty.http.PreEncodedHttpField;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.HandlerWrapper;
+
+/**
+ * Does the work of {@link ServerIdentityFilter} and {@link ActivityFilter} as a single Jetty handler, so that
+ * requests need not pass through the Guice servlet pipeline.
+ * <p>
+ * The server identity header is encoded once, and added to each response without building a string. Only the
+ * initial dispatch of a request is tracked, as the filters are only registered for {@link DispatcherType#REQUEST}:
+ * async and error dispatches pass straight through.
+ */
+public class FusedRequestHandler extends HandlerWrapper {
+	private final PreEncodedHttpField serverIdentityField;
+	private final ActivityFilter activityFilter;
+
+	@Inject
+	public FusedRequestHandler(@ServerIdentity String serverIdentity,
+			@ServerIdentity UUID instanceId,
+			ActivityFilter activityFilter) {
+		this.serverIdentityField = new PreEncodedHttpField(ServerIdentityFilter.SERVER_IDENTITY_HEADER,
+				ServerIdentityFilter.headerValue(serverIdentity, instanceId));
+		this.activityFilter = activityFilter;
+	}
+
+	@Override
+	public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response)
+			throws IOException, ServletException {
+		if (baseRequest.getDispatcherType() != DispatcherType.REQUEST) {
+			super.handle(target, baseRequest, request, response);
+			return;
+		}
+		baseRequest.getResponse().getHttpFields().add(serverIdentityField);
+		activityFilter.track(request, response, target, () -> super.handle(target, baseRequest, request, response));
+	}
+}
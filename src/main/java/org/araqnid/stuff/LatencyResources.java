@@ -0,0 +1,70 @@
+package org.araqnid.stuff;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.inject.Inject;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.araqnid.stuff.activity.ActivityLatencyStatistics;
+import org.araqnid.stuff.activity.LatencyHistogram;
+
+@Path("_api/info/latency")
+public class LatencyResources {
+	private final ActivityLatencyStatistics statistics;
+
+	@Inject
+	public LatencyResources(ActivityLatencyStatistics statistics) {
+		this.statistics = statistics;
+	}
+
+	@GET
+	@Produces("application/json")
+	public Map<String, LatencySummary> getLatency(@QueryParam("window") @DefaultValue("5") int windowMinutes) {
+		Map<String, LatencySummary> output = new LinkedHashMap<>();
+		statistics.snapshot(windowMinutes).forEach((key, snapshot) -> {
+			if (snapshot.count() > 0) output.put(key, new LatencySummary(snapshot));
+		});
+		return output;
+	}
+
+	@GET
+	@Produces("text/plain")
+	public String dumpLatency(@QueryParam("window") @DefaultValue("5") int windowMinutes) {
+		StringWriter sw = new StringWriter();
+		PrintWriter pw = new PrintWriter(sw);
+		pw.printf("%10s %10s %10s %10s %10s %10s %10s  %s%n", "count", "mean", "p50", "p90", "p99", "p99.9", "max",
+				"series");
+		getLatency(windowMinutes).forEach((key, summary) -> pw.printf("%10d %10.3f %10.3f %10.3f %10.3f %10.3f %10.3f  %s%n",
+				summary.count, summary.meanMillis, summary.p50Millis, summary.p90Millis, summary.p99Millis,
+				summary.p999Millis, summary.maxMillis, key));
+		pw.flush();
+		return sw.toString();
+	}
+
+	static class LatencySummary {
+		@JsonProperty final long count;
+		@JsonProperty final double meanMillis;
+		@JsonProperty final double p50Millis;
+		@JsonProperty final double p90Millis;
+		@JsonProperty final double p99Millis;
+		@JsonProperty final double p999Millis;
+		@JsonProperty final double maxMillis;
+
+		LatencySummary(LatencyHistogram.Snapshot snapshot) {
+			this.count = snapshot.count();
+			this.meanMillis = snapshot.meanNanos() / 1e6;
+			this.p50Millis = snapshot.percentileNanos(50) / 1e6;
+			this.p90Millis = snapshot.percentileNanos(90) / 1e6;
+			this.p99Millis = snapshot.percentileNanos(99) / 1e6;
+			this.p999Millis = snapshot.percentileNanos(99.9) / 1e6;
+			this.maxMillis = snapshot.maxNanos() / 1e6;
+		}
+	}
+}
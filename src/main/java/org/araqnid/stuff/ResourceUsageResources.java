@@ -0,0 +1,65 @@
+package org.araqnid.stuff;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.araqnid.stuff.activity.ResourceAccounting;
+
+@Path("_api/info/resources")
+public class ResourceUsageResources {
+	private final ResourceAccounting accounting;
+
+	@Inject
+	public ResourceUsageResources(ResourceAccounting accounting) {
+		this.accounting = accounting;
+	}
+
+	/** Totals by node type, heaviest allocators first */
+	@GET
+	@Produces("application/json")
+	public Map<String, ResourceSummary> getResourceUsage() {
+		Map<String, ResourceSummary> output = new LinkedHashMap<>();
+		accounting.snapshot().entrySet().stream()
+				.filter(e -> e.getValue().count() > 0)
+				.sorted(Comparator.comparingLong((Map.Entry<String, ResourceAccounting.Totals> e) -> e.getValue().allocatedBytes()).reversed())
+				.forEach(e -> output.put(e.getKey(), new ResourceSummary(e.getValue())));
+		return output;
+	}
+
+	@GET
+	@Produces("text/plain")
+	public String dumpResourceUsage() {
+		StringWriter sw = new StringWriter();
+		PrintWriter pw = new PrintWriter(sw);
+		pw.printf("%10s %12s %12s %16s %14s  %s%n", "count", "cpu_total", "cpu_mean", "alloc_total", "alloc_mean",
+				"type");
+		getResourceUsage().forEach((type, summary) -> pw.printf("%10d %12.3f %12.3f %16d %14d  %s%n", summary.count,
+				summary.cpuMillis, summary.meanCpuMillis, summary.allocatedBytes, summary.meanAllocatedBytes, type));
+		pw.flush();
+		return sw.toString();
+	}
+
+	static class ResourceSummary {
+		@JsonProperty final long count;
+		@JsonProperty final double cpuMillis;
+		@JsonProperty final double meanCpuMillis;
+		@JsonProperty final long allocatedBytes;
+		@JsonProperty final long meanAllocatedBytes;
+
+		ResourceSummary(ResourceAccounting.Totals totals) {
+			this.count = totals.count();
+			this.cpuMillis = totals.cpuNanos() / 1e6;
+			this.meanCpuMillis = cpuMillis / count;
+			this.allocatedBytes = totals.allocatedBytes();
+			this.meanAllocatedBytes = allocatedBytes / count;
+		}
+	}
+}
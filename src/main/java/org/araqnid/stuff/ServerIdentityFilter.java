@@ -20,13 +20,17 @@ import com.google.common.base.Joiner;
 
 @Singleton
 public class ServerIdentityFilter implements Filter {
-	private final String serverIdentity;
-	private final UUID instanceId;
+	public static final String SERVER_IDENTITY_HEADER = "X-Server-Identity";
+
+	private final String headerValue;
 
 	@Inject
 	public ServerIdentityFilter(@ServerIdentity String serverIdentity, @ServerIdentity UUID instanceId) {
-		this.serverIdentity = serverIdentity;
-		this.instanceId = instanceId;
+		this.headerValue = headerValue(serverIdentity, instanceId);
+	}
+
+	static String headerValue(String serverIdentity, UUID instanceId) {
+		return Joiner.on(' ').join(serverIdentity, instanceId);
 	}
 
 	@Override
@@ -50,7 +54,7 @@ public class ServerIdentityFilter implements Filter {
 
 	private void doHttpFilter(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
 			throws IOException, ServletException {
-		response.addHeader("X-Server-Identity", Joiner.on(' ').join(serverIdentity, instanceId));
+		response.addHeader(SERVER_IDENTITY_HEADER, headerValue);
 		chain.doFilter(request, response);
 	}
 }
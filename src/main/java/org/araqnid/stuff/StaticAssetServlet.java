@@ -0,0 +1,60 @@
+package org.araqnid.stuff;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.HttpOutput;
+
+/**
+ * Serves the web root from {@link StaticAssets}, with lengths, validators and precompressed variants.
+ */
+public class StaticAssetServlet extends HttpServlet {
+	private static final long serialVersionUID = 1L;
+
+	private final transient StaticAssets assets;
+
+	public StaticAssetServlet(StaticAssets assets) {
+		this.assets = assets;
+	}
+
+	@Override
+	protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+		serve(req, resp, true);
+	}
+
+	@Override
+	protected void doHead(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+		serve(req, resp, false);
+	}
+
+	private void serve(HttpServletRequest req, HttpServletResponse resp, boolean sendBody) throws IOException {
+		String path = req.getPathInfo() != null ? req.getServletPath() + req.getPathInfo() : req.getServletPath();
+		StaticAssets.Asset asset = assets.lookup(path);
+		if (asset == null) {
+			resp.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
+		}
+		StaticAssets.Variant variant = asset.select(req.getHeader("Accept-Encoding"));
+		resp.setHeader("ETag", variant.etag());
+		if (asset.compressed()) resp.setHeader("Vary", "Accept-Encoding");
+		if (variant.matches(req.getHeader("If-None-Match"))) {
+			resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return;
+		}
+		resp.setContentType(variant.contentType());
+		if (variant.contentEncoding() != null) resp.setHeader("Content-Encoding", variant.contentEncoding());
+		resp.setContentLength(variant.length());
+		if (!sendBody) return;
+		ServletOutputStream output = resp.getOutputStream();
+		if (output instanceof HttpOutput) {
+			((HttpOutput) output).sendContent(variant.content());
+		}
+		else {
+			Channels.newChannel(output).write(variant.content());
+		}
+	}
+}
@@ -0,0 +1,259 @@
+package org.araqnid.stuff;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+import javax.annotation.Nullable;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.BaseEncoding;
+import com.google.common.io.ByteStreams;
+import org.araqnid.stuff.config.EmbeddedResource;
+import org.eclipse.jetty.http.MimeTypes;
+import org.eclipse.jetty.util.resource.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In-memory copy of the static web assets, loaded and hashed once at startup.
+ * <p>
+ * Each asset keeps its identity content and a gzip variant (when that is smaller), both in direct buffers; for an
+ * {@link EmbeddedResource} web root, the identity content is the resource's own shared buffer. A
+ * brotli variant is kept when the web root contains a precompressed {@code .br} sibling, as the JDK has no brotli
+ * encoder; a {@code .gz} sibling likewise replaces the gzip variant. Every variant has its own strong ETag, derived
+ * from the SHA-256 of the identity bytes.
+ */
+public final class StaticAssets {
+	private static final Logger LOG = LoggerFactory.getLogger(StaticAssets.class);
+	private static final String WELCOME_FILE = "index.html";
+
+	private final Map<String, Asset> assets;
+
+	public StaticAssets(Map<String, ByteBuffer> files, Function<String, String> contentTypes) {
+		ImmutableMap.Builder<String, Asset> builder = ImmutableMap.builder();
+		files.forEach((path, content) -> {
+			if (path.endsWith(".br") || path.endsWith(".gz")) return;
+			builder.put(path, new Asset(content, contentTypes.apply(path), files.get(path + ".gz"), files.get(path + ".br")));
+		});
+		this.assets = builder.build();
+	}
+
+	public static StaticAssets load(Resource root) throws IOException {
+		long startTime = System.nanoTime();
+		ImmutableMap.Builder<String, ByteBuffer> files = ImmutableMap.builder();
+		collect(root, "/", files);
+		MimeTypes mimeTypes = new MimeTypes();
+		StaticAssets staticAssets = new StaticAssets(files.build(), path -> contentType(mimeTypes, path));
+		LOG.info("Loaded {} static assets ({} bytes, {} compressed) in {}ms", staticAssets.assets.size(),
+				staticAssets.assets.values().stream().mapToLong(a -> a.identityVariant.length()).sum(),
+				staticAssets.assets.values().stream().mapToLong(a -> a.smallest().length()).sum(),
+				(System.nanoTime() - startTime) / 1000000);
+		return staticAssets;
+	}
+
+	/**
+	 * Finds the asset for a request path, mapping directories to their index page.
+	 *
+	 * @return asset, or null if there is no such asset
+	 */
+	@Nullable
+	public Asset lookup(String path) {
+		if (path.isEmpty() || path.endsWith("/")) {
+			return assets.get(path.isEmpty() ? "/" + WELCOME_FILE : path + WELCOME_FILE);
+		}
+		return assets.get(path);
+	}
+
+	public int size() {
+		return assets.size();
+	}
+
+	private static void collect(Resource resource, String path, ImmutableMap.Builder<String, ByteBuffer> files) throws IOException {
+		String[] names = resource.list();
+		if (names != null && names.length > 0) {
+			for (String name : names) {
+				String childName = name.endsWith("/") ? name.substring(0, name.length() - 1) : name;
+				collect(resource.addPath("/" + childName), path + childName + "/", files);
+			}
+		}
+		else if (resource.exists() && !resource.isDirectory()) {
+			files.put(path.substring(0, path.length() - 1), content(resource));
+		}
+	}
+
+	private static ByteBuffer content(Resource resource) throws IOException {
+		if (resource instanceof EmbeddedResource) {
+			ByteBuffer content = ((EmbeddedResource) resource).getDirectBuffer();
+			if (content != null) return content;
+		}
+		try (InputStream input = resource.getInputStream()) {
+			return ByteBuffer.wrap(ByteStreams.toByteArray(input));
+		}
+	}
+
+	private static String contentType(MimeTypes mimeTypes, String path) {
+		String type = mimeTypes.getMimeByExtension(path);
+		if (type == null) return "application/octet-stream";
+		if (type.startsWith("text/") || type.equals("application/javascript") || type.equals("application/json")) {
+			return type + ";charset=utf-8";
+		}
+		return type;
+	}
+
+	/** One asset, with its compressed variants */
+	public static final class Asset {
+		private final Variant identityVariant;
+		@Nullable private final Variant gzipVariant;
+		@Nullable private final Variant brotliVariant;
+
+		Asset(ByteBuffer identity, String contentType, @Nullable ByteBuffer gzip, @Nullable ByteBuffer brotli) {
+			String hash = BaseEncoding.base64Url().omitPadding().encode(sha256(identity));
+			this.identityVariant = new Variant(identity, contentType, null, "\"" + hash + "\"");
+			ByteBuffer gzipped = gzip != null ? gzip : gzip(identity);
+			this.gzipVariant = gzipped.remaining() < identity.remaining()
+					? new Variant(gzipped, contentType, "gzip", "\"" + hash + "-gz\"") : null;
+			this.brotliVariant = brotli != null && brotli.remaining() < identity.remaining()
+					? new Variant(brotli, contentType, "br", "\"" + hash + "-br\"") : null;
+		}
+
+		/** Whether a compressed variant exists, so that responses vary on {@code Accept-Encoding} */
+		public boolean compressed() {
+			return gzipVariant != null || brotliVariant != null;
+		}
+
+		/**
+		 * Picks the smallest variant that the client accepts.
+		 *
+		 * @param acceptEncoding value of the request's {@code Accept-Encoding} header, if any
+		 */
+		public Variant select(@Nullable String acceptEncoding) {
+			if (acceptEncoding == null || !compressed()) return identityVariant;
+			if (brotliVariant != null && accepts(acceptEncoding, "br")) return brotliVariant;
+			if (gzipVariant != null && accepts(acceptEncoding, "gzip")) return gzipVariant;
+			return identityVariant;
+		}
+
+		private Variant smallest() {
+			if (brotliVariant != null) return brotliVariant;
+			if (gzipVariant != null) return gzipVariant;
+			return identityVariant;
+		}
+	}
+
+	/** One encoding of an asset */
+	public static final class Variant {
+		private final ByteBuffer content;
+		private final String contentType;
+		@Nullable private final String contentEncoding;
+		private final String etag;
+
+		Variant(ByteBuffer content, String contentType, @Nullable String contentEncoding, String etag) {
+			if (content.isDirect()) {
+				this.content = content.slice().asReadOnlyBuffer();
+			}
+			else {
+				ByteBuffer buffer = ByteBuffer.allocateDirect(content.remaining());
+				buffer.put(content.duplicate()).flip();
+				this.content = buffer.asReadOnlyBuffer();
+			}
+			this.contentType = contentType;
+			this.contentEncoding = contentEncoding;
+			this.etag = etag;
+		}
+
+		/** Content to send; each call returns an independent view of the shared buffer */
+		public ByteBuffer content() {
+			return content.duplicate();
+		}
+
+		public int length() {
+			return content.capacity();
+		}
+
+		public String contentType() {
+			return contentType;
+		}
+
+		@Nullable
+		public String contentEncoding() {
+			return contentEncoding;
+		}
+
+		public String etag() {
+			return etag;
+		}
+
+		/**
+		 * Whether an {@code If-None-Match} header matches this variant, using weak comparison as required for
+		 * that header.
+		 */
+		public boolean matches(@Nullable String ifNoneMatch) {
+			if (ifNoneMatch == null) return false;
+			for (String candidate : Splitter.on(',').trimResults().omitEmptyStrings().split(ifNoneMatch)) {
+				if (candidate.equals("*")) return true;
+				if (candidate.startsWith("W/")) candidate = candidate.substring(2);
+				if (candidate.equals(etag)) return true;
+			}
+			return false;
+		}
+	}
+
+	static boolean accepts(String acceptEncoding, String coding) {
+		boolean wildcard = false;
+		for (String element : Splitter.on(',').trimResults().omitEmptyStrings().split(acceptEncoding)) {
+			int semicolon = element.indexOf(';');
+			String name = (semicolon < 0 ? element : element.substring(0, semicolon)).trim();
+			boolean acceptable = semicolon < 0 || qvalue(element.substring(semicolon + 1)) > 0;
+			if (name.equalsIgnoreCase(coding)) return acceptable;
+			if (name.equals("*")) wildcard = acceptable;
+		}
+		return wildcard;
+	}
+
+	private static double qvalue(String parameters) {
+		for (String parameter : Splitter.on(';').trimResults().split(parameters)) {
+			if (parameter.startsWith("q=") || parameter.startsWith("Q=")) {
+				try {
+					return Double.parseDouble(parameter.substring(2));
+				} catch (NumberFormatException e) {
+					return 0;
+				}
+			}
+		}
+		return 1;
+	}
+
+	private static byte[] sha256(ByteBuffer content) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(content.duplicate());
+			return digest.digest();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 not available", e);
+		}
+	}
+
+	private static ByteBuffer gzip(ByteBuffer content) {
+		byte[] bytes = new byte[content.remaining()];
+		content.duplicate().get(bytes);
+		ByteArrayOutputStream output = new ByteArrayOutputStream(bytes.length / 2 + 64);
+		try (GZIPOutputStream gzip = new GZIPOutputStream(output) {
+			{
+				def.setLevel(Deflater.BEST_COMPRESSION);
+			}
+		}) {
+			gzip.write(bytes);
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to compress in memory", e);
+		}
+		return ByteBuffer.wrap(output.toByteArray());
+	}
+}
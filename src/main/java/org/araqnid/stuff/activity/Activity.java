@@ -1,5 +1,6 @@
 package org.araqnid.stuff.activity;
 
+import java.time.Instant;
 import java.util.UUID;
 import javax.annotation.Nullable;
 
@@ -7,10 +8,43 @@ public class Activity implements Completable {
 	public final UUID id;
 	public final ActivityNode root;
 	public final ActivityEventSink sink;
+	final NodeIdAllocator nodeIds;
+	final ActivityTiming timing;
+	@Nullable final Instant anchor;
+	final long anchorTicks;
+	@Nullable final ResourceAccounting accounting;
+	@Nullable volatile Thread owner;
+	@Nullable volatile ActivityNode current;
+	/** Set, while holding this activity's lock, before the root node reports its end */
+	boolean ended;
 
 	public Activity(UUID id, String type, Object attributes, ActivityEventSink sink) {
+		this(id, type, attributes, sink, NodeIdAllocator.DEFAULT, ActivityTiming.DEFAULT);
+	}
+
+	public Activity(UUID id,
+			String type,
+			Object attributes,
+			ActivityEventSink sink,
+			NodeIdAllocator nodeIds,
+			ActivityTiming timing) {
+		this(id, type, attributes, sink, nodeIds, timing, ResourceAccounting.DISABLED);
+	}
+
+	public Activity(UUID id,
+			String type,
+			Object attributes,
+			ActivityEventSink sink,
+			NodeIdAllocator nodeIds,
+			ActivityTiming timing,
+			ResourceAccounting accounting) {
 		this.id = id;
 		this.sink = sink;
+		this.nodeIds = nodeIds;
+		this.timing = timing;
+		this.anchor = timing.isMonotonic() ? timing.now() : null;
+		this.anchorTicks = timing.ticks();
+		this.accounting = accounting.sample() ? accounting : null;
 		this.root = new ActivityNode(this, null, type, attributes);
 	}
 
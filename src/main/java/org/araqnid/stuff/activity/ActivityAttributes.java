@@ -0,0 +1,208 @@
+package org.araqnid.stuff.activity;
+
+import java.io.IOException;
+import java.util.Arrays;
+import javax.annotation.Nullable;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+/**
+ * Flat, ordered set of activity attributes with string, int, long and boolean values, kept in a few arrays rather than
+ * a map of boxed values.
+ * <p>
+ * Sinks write these directly, without going through bean introspection; any other object is still accepted as
+ * attributes and serialized by Jackson as before. Attributes are built up on one thread and must not be changed
+ * after being passed to a sink.
+ */
+@JsonSerialize(using = ActivityAttributes.Serializer.class)
+public final class ActivityAttributes {
+	private static final byte STRING = 0;
+	private static final byte INT = 1;
+	private static final byte LONG = 2;
+	private static final byte BOOLEAN = 3;
+
+	private String[] strings; // key and string value, interleaved
+	private long[] numbers;
+	private byte[] kinds;
+	private int size;
+
+	public ActivityAttributes() {
+		this(4);
+	}
+
+	public ActivityAttributes(int capacity) {
+		this.strings = new String[capacity * 2];
+		this.numbers = new long[capacity];
+		this.kinds = new byte[capacity];
+	}
+
+	public ActivityAttributes with(String key, @Nullable String value) {
+		int index = add(key, STRING);
+		strings[index * 2 + 1] = value;
+		return this;
+	}
+
+	public ActivityAttributes with(String key, int value) {
+		int index = add(key, INT);
+		numbers[index] = value;
+		return this;
+	}
+
+	public ActivityAttributes with(String key, long value) {
+		int index = add(key, LONG);
+		numbers[index] = value;
+		return this;
+	}
+
+	public ActivityAttributes with(String key, boolean value) {
+		int index = add(key, BOOLEAN);
+		numbers[index] = value ? 1 : 0;
+		return this;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/** Value of the first attribute with the given key, boxed, or null if there is none */
+	@Nullable
+	public Object get(String key) {
+		for (int i = 0; i < size; i++) {
+			if (strings[i * 2].equals(key)) return value(i);
+		}
+		return null;
+	}
+
+	public void writeTo(JsonGenerator generator) throws IOException {
+		generator.writeStartObject();
+		for (int i = 0; i < size; i++) {
+			generator.writeFieldName(strings[i * 2]);
+			switch (kinds[i]) {
+			case STRING:
+				String value = strings[i * 2 + 1];
+				if (value != null) generator.writeString(value);
+				else generator.writeNull();
+				break;
+			case INT:
+			case LONG:
+				generator.writeNumber(numbers[i]);
+				break;
+			case BOOLEAN:
+				generator.writeBoolean(numbers[i] != 0);
+				break;
+			}
+		}
+		generator.writeEndObject();
+	}
+
+	void writeTo(JsonEventBuffer buffer) {
+		buffer.write('{');
+		for (int i = 0; i < size; i++) {
+			if (i > 0) buffer.write(',');
+			buffer.string(strings[i * 2]).write(':');
+			switch (kinds[i]) {
+			case STRING:
+				String value = strings[i * 2 + 1];
+				if (value != null) buffer.string(value);
+				else buffer.nullValue();
+				break;
+			case INT:
+			case LONG:
+				buffer.number(numbers[i]);
+				break;
+			case BOOLEAN:
+				buffer.bool(numbers[i] != 0);
+				break;
+			}
+		}
+		buffer.write('}');
+	}
+
+	public String toJson() {
+		JsonStringEncoder encoder = JsonStringEncoder.getInstance();
+		StringBuilder builder = new StringBuilder(16 * size + 2).append('{');
+		for (int i = 0; i < size; i++) {
+			if (i > 0) builder.append(',');
+			builder.append('"').append(encoder.quoteAsString(strings[i * 2])).append("\":");
+			if (kinds[i] == STRING) {
+				String value = strings[i * 2 + 1];
+				if (value != null) builder.append('"').append(encoder.quoteAsString(value)).append('"');
+				else builder.append("null");
+			}
+			else {
+				builder.append(value(i));
+			}
+		}
+		return builder.append('}').toString();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder().append('{');
+		for (int i = 0; i < size; i++) {
+			if (i > 0) builder.append(", ");
+			builder.append(strings[i * 2]).append('=').append(value(i));
+		}
+		return builder.append('}').toString();
+	}
+
+	/**
+	 * Copies these attributes into a new instance, leaving out the given keys, with room for some more.
+	 */
+	ActivityAttributes copyWithout(int extraCapacity, String... excludedKeys) {
+		ActivityAttributes copy = new ActivityAttributes(size + extraCapacity);
+		for (int i = 0; i < size; i++) {
+			if (Arrays.asList(excludedKeys).contains(strings[i * 2])) continue;
+			int index = copy.add(strings[i * 2], kinds[i]);
+			copy.strings[index * 2 + 1] = strings[i * 2 + 1];
+			copy.numbers[index] = numbers[i];
+		}
+		return copy;
+	}
+
+	String key(int index) {
+		return strings[index * 2];
+	}
+
+	@Nullable
+	Object value(int index) {
+		switch (kinds[index]) {
+		case INT:
+			return (int) numbers[index];
+		case LONG:
+			return numbers[index];
+		case BOOLEAN:
+			return numbers[index] != 0;
+		default:
+			return strings[index * 2 + 1];
+		}
+	}
+
+	private int add(String key, byte kind) {
+		if (size == kinds.length) {
+			int capacity = Math.max(4, size * 2);
+			strings = Arrays.copyOf(strings, capacity * 2);
+			numbers = Arrays.copyOf(numbers, capacity);
+			kinds = Arrays.copyOf(kinds, capacity);
+		}
+		int index = size++;
+		strings[index * 2] = key;
+		kinds[index] = kind;
+		return index;
+	}
+
+	public static final class Serializer extends StdSerializer<ActivityAttributes> {
+		public Serializer() {
+			super(ActivityAttributes.class);
+		}
+
+		@Override
+		public void serialize(ActivityAttributes value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+			value.writeTo(gen);
+		}
+	}
+}
@@ -13,5 +13,17 @@ public interface ActivityEventSink {
 						   Instant started,
 						   @Nullable Object attributes);
 
-	void activityNodeEnd(UUID activityId, long nodeId, boolean success, Duration duration, @Nullable Object attributes);
+	void activityNodeEnd(UUID activityId, long nodeId, boolean success, long durationNanos, @Nullable Object attributes);
+
+	default void activityNodeEnd(UUID activityId, long nodeId, boolean success, Duration duration, @Nullable Object attributes) {
+		activityNodeEnd(activityId, nodeId, success, duration.toNanos(), attributes);
+	}
+
+	/**
+	 * Node end as raised by the node itself, for sinks that want its type or start attributes without holding on to
+	 * them from the start event.
+	 */
+	default void activityNodeEnd(ActivityNode node, boolean success, long durationNanos, @Nullable Object attributes) {
+		activityNodeEnd(node.activity.id, node.id, success, durationNanos, attributes);
+	}
 }
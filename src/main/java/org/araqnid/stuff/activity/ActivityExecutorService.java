@@ -0,0 +1,105 @@
+package org.araqnid.stuff.activity;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Runs each task as a child node of the submitting thread's current activity node, recording how long it waited in
+ * the queue.
+ * <p>
+ * Bind this around a pool to keep work fanned out from a request attributed to it:
+ * <pre>
+ * &#64;Provides &#64;Singleton
+ * public ExecutorService workers() {
+ *     return new ActivityExecutorService(Executors.newFixedThreadPool(8), "Worker");
+ * }
+ * </pre>
+ */
+public class ActivityExecutorService implements ExecutorService {
+	private final ExecutorService delegate;
+	protected final String nodeType;
+
+	public ActivityExecutorService(ExecutorService delegate, String nodeType) {
+		this.delegate = delegate;
+		this.nodeType = nodeType;
+	}
+
+	@Override
+	public void execute(Runnable command) {
+		delegate.execute(ActivityTask.wrap(command, nodeType));
+	}
+
+	@Override
+	public <T> Future<T> submit(Callable<T> task) {
+		return delegate.submit(ActivityTask.wrap(task, nodeType));
+	}
+
+	@Override
+	public <T> Future<T> submit(Runnable task, T result) {
+		return delegate.submit(ActivityTask.wrap(task, nodeType), result);
+	}
+
+	@Override
+	public Future<?> submit(Runnable task) {
+		return delegate.submit(ActivityTask.wrap(task, nodeType));
+	}
+
+	@Override
+	public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks) throws InterruptedException {
+		return delegate.invokeAll(wrap(tasks));
+	}
+
+	@Override
+	public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit)
+			throws InterruptedException {
+		return delegate.invokeAll(wrap(tasks), timeout, unit);
+	}
+
+	@Override
+	public <T> T invokeAny(Collection<? extends Callable<T>> tasks) throws InterruptedException, ExecutionException {
+		return delegate.invokeAny(wrap(tasks));
+	}
+
+	@Override
+	public <T> T invokeAny(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit)
+			throws InterruptedException, ExecutionException, TimeoutException {
+		return delegate.invokeAny(wrap(tasks), timeout, unit);
+	}
+
+	@Override
+	public void shutdown() {
+		delegate.shutdown();
+	}
+
+	@Override
+	public List<Runnable> shutdownNow() {
+		return delegate.shutdownNow();
+	}
+
+	@Override
+	public boolean isShutdown() {
+		return delegate.isShutdown();
+	}
+
+	@Override
+	public boolean isTerminated() {
+		return delegate.isTerminated();
+	}
+
+	@Override
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		return delegate.awaitTermination(timeout, unit);
+	}
+
+	private <T> List<Callable<T>> wrap(Collection<? extends Callable<T>> tasks) {
+		return tasks.stream().map(task -> ActivityTask.wrap(task, nodeType)).collect(toList());
+	}
+}
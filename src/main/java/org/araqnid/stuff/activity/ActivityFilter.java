@@ -16,15 +16,46 @@ import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import com.google.common.collect.ImmutableMap;
-
+/**
+ * Runs each request as an activity, reported in the "X-Activity" response header as the activity ID and root node ID
+ * separated by a space.
+ * <p>
+ * A request carrying an "X-Activity" header in the same form, such as one made through
+ * {@link ActivityHttpClientInterceptor}, continues the caller's activity: its ID is reused, and the caller's node ID
+ * is recorded as the root node's "remote_parent" attribute. The header may have the caller's instance ID as a third
+ * part, recorded as "remote_instance", as node IDs are only unique within a process.
+ * <p>
+ * The same tracking is available outside a filter chain through {@link #track}.
+ */
 @Singleton
 public class ActivityFilter implements Filter {
+	public static final String ACTIVITY_HEADER = "X-Activity";
+
+	/** Handling of a request, run inside its activity */
+	public interface RequestChain {
+		void proceed() throws IOException, ServletException;
+	}
+
 	private final ActivityEventSink activityEventSink;
+	private final NodeIdAllocator nodeIdAllocator;
+	private final ActivityIdGenerator activityIdGenerator;
+	private final ActivityTiming activityTiming;
+	private final ActivityRegistry activityRegistry;
+	private final ResourceAccounting resourceAccounting;
 
 	@Inject
-	public ActivityFilter(ActivityEventSink activityEventSink) {
+	public ActivityFilter(ActivityEventSink activityEventSink,
+			NodeIdAllocator nodeIdAllocator,
+			ActivityIdGenerator activityIdGenerator,
+			ActivityTiming activityTiming,
+			ActivityRegistry activityRegistry,
+			ResourceAccounting resourceAccounting) {
 		this.activityEventSink = activityEventSink;
+		this.nodeIdAllocator = nodeIdAllocator;
+		this.activityIdGenerator = activityIdGenerator;
+		this.activityTiming = activityTiming;
+		this.activityRegistry = activityRegistry;
+		this.resourceAccounting = resourceAccounting;
 	}
 
 	@Override
@@ -37,15 +68,53 @@ public class ActivityFilter implements Filter {
 
 	private void doFilterHttp(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
 			throws IOException, ServletException {
-		UUID activityId = UUID.randomUUID();
-		Activity activity = new Activity(activityId, "HttpRequest",
-				ImmutableMap.of("method", request.getMethod(), "path", request.getServletPath()), activityEventSink);
-		response.setHeader("X-Activity", activityId.toString() + " " + activity.root.id);
+		track(request, response, request.getServletPath(), () -> chain.doFilter(request, response));
+	}
+
+	/**
+	 * Runs a request as an activity.
+	 *
+	 * @param path request path to record, relative to the context
+	 */
+	public void track(HttpServletRequest request, HttpServletResponse response, String path, RequestChain chain)
+			throws IOException, ServletException {
+		UUID activityId = null;
+		long remoteParentId = ActivityNode.NO_PARENT;
+		String remoteInstanceId = null;
+		String inbound = request.getHeader(ACTIVITY_HEADER);
+		if (inbound != null) {
+			int space = inbound.indexOf(' ');
+			int secondSpace = space < 0 ? -1 : inbound.indexOf(' ', space + 1);
+			try {
+				activityId = UUID.fromString(space < 0 ? inbound : inbound.substring(0, space));
+				if (space >= 0) {
+					remoteParentId = Long.parseLong(secondSpace < 0 ? inbound.substring(space + 1)
+							: inbound.substring(space + 1, secondSpace));
+				}
+				if (secondSpace >= 0) {
+					remoteInstanceId = UUID.fromString(inbound.substring(secondSpace + 1)).toString();
+				}
+			} catch (IllegalArgumentException e) {
+				activityId = null;
+				remoteParentId = ActivityNode.NO_PARENT;
+				remoteInstanceId = null;
+			}
+		}
+		if (activityId == null) activityId = activityIdGenerator.next();
+		ActivityAttributes attributes = new ActivityAttributes(4)
+				.with("method", request.getMethod())
+				.with("path", path);
+		if (remoteParentId != ActivityNode.NO_PARENT) attributes.with("remote_parent", remoteParentId);
+		if (remoteInstanceId != null) attributes.with("remote_instance", remoteInstanceId);
+		Activity activity = new Activity(activityId, "HttpRequest", attributes, activityEventSink, nodeIdAllocator,
+				activityTiming, resourceAccounting);
+		response.setHeader(ACTIVITY_HEADER, activityId.toString() + " " + activity.root.id);
 		boolean success = false;
+		activityRegistry.register(activity);
 		ThreadActivity.attach(activity.root);
 		activity.begin();
 		try {
-			chain.doFilter(request, response);
+			chain.proceed();
 			success = true;
 		} finally {
 			if (request.isAsyncStarted()) {
@@ -71,14 +140,23 @@ public class ActivityFilter implements Filter {
 
 					@Override
 					public void onComplete(AsyncEvent event) throws IOException {
-						activity.complete(success,
-								ImmutableMap.of("status", response.getStatus(), "async_completion", result));
+						try {
+							activity.complete(success,
+									new ActivityAttributes(2).with("status", response.getStatus())
+											.with("async_completion", result));
+						} finally {
+							activityRegistry.unregister(activity);
+						}
 					}
 				});
 				ThreadActivity.detach(activity);
 			}
 			else {
-				activity.complete(success, ImmutableMap.of("status", response.getStatus()));
+				try {
+					activity.complete(success, new ActivityAttributes(1).with("status", response.getStatus()));
+				} finally {
+					activityRegistry.unregister(activity);
+				}
 			}
 		}
 	}
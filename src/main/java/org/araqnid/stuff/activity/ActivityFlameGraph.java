@@ -0,0 +1,264 @@
+package org.araqnid.stuff.activity;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Folds completed activity trees into a prefix tree of node type paths, keeping total time, self time and a count
+ * for each path.
+ * <p>
+ * Nodes are folded as they end, using the parent links from their start events; the start events of an activity are
+ * kept until its root node ends. Open nodes are kept per root rather than per activity id, as an activity continued
+ * from an inbound request can have several roots open at once. Self time is a node's duration less the durations of its children, so it is
+ * understated for nodes whose children ran concurrently. As well as the totals since startup (or the last reset),
+ * a tree is kept for each of the last {@value #WINDOWS} minutes.
+ * <p>
+ * This is meant to be fed from the consumer side of {@link AsyncActivityEventSink}, so folding happens off the
+ * request threads; methods are synchronized so that snapshots can be taken from other threads.
+ */
+@Singleton
+public class ActivityFlameGraph implements ActivityEventSink {
+	static final int WINDOWS = 15;
+	private static final long WINDOW_MILLIS = TimeUnit.MINUTES.toMillis(1);
+	private static final int MAX_OPEN_ACTIVITIES = 10000;
+	private static final long MAX_ACTIVITY_AGE_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+	private final Clock clock;
+	private final Map<Long, OpenActivity> activities = new HashMap<>();
+	private final Map<Long, OpenNode> nodes = new HashMap<>();
+	private Frame total = new Frame("");
+	private final Frame[] windows = new Frame[WINDOWS];
+	private final long[] windowEpochs = new long[WINDOWS];
+
+	@Inject
+	public ActivityFlameGraph(Clock clock) {
+		this.clock = clock;
+		reset();
+	}
+
+	@Override
+	public synchronized void activityNodeStart(UUID activityId,
+			long nodeId,
+			long nodeParentId,
+			String type,
+			Instant started,
+			@Nullable Object attributes) {
+		OpenActivity activity;
+		OpenNode parent;
+		if (nodeParentId == ActivityNode.NO_PARENT) {
+			if (activities.size() >= MAX_OPEN_ACTIVITIES && !evictStale()) return;
+			activity = new OpenActivity(clock.millis());
+			activities.put(nodeId, activity);
+			parent = null;
+		}
+		else {
+			parent = nodes.get(nodeParentId);
+			if (parent == null) return;
+			activity = parent.activity;
+		}
+		nodes.put(nodeId, new OpenNode(activity, parent, type));
+		activity.nodeIds.add(nodeId);
+	}
+
+	@Override
+	public synchronized void activityNodeEnd(UUID activityId,
+			long nodeId,
+			boolean success,
+			long durationNanos,
+			@Nullable Object attributes) {
+		OpenNode node = nodes.remove(nodeId);
+		if (node == null) return;
+		long selfNanos = Math.max(0, durationNanos - node.childNanos);
+		if (node.parent != null) {
+			node.parent.childNanos += durationNanos;
+		}
+		String[] path = node.path();
+		record(total, path, durationNanos, selfNanos);
+		record(window(clock.millis()), path, durationNanos, selfNanos);
+		if (node.parent == null) {
+			close(activities.remove(nodeId));
+		}
+	}
+
+	/**
+	 * Copy of the folded tree.
+	 *
+	 * @param windowMinutes number of most recent minutes to include, or zero for everything since the last reset
+	 * @return synthetic root frame, with an empty name, whose children are the root node types
+	 */
+	public synchronized Frame snapshot(int windowMinutes) {
+		if (windowMinutes <= 0) return total.copy();
+		long epoch = clock.millis() / WINDOW_MILLIS;
+		Frame merged = new Frame("");
+		for (int i = 0; i < Math.min(windowMinutes, WINDOWS); i++) {
+			int index = (int) ((epoch - i) % WINDOWS);
+			if (windowEpochs[index] == epoch - i) {
+				merged.add(windows[index]);
+			}
+		}
+		return merged;
+	}
+
+	public synchronized void reset() {
+		total = new Frame("");
+		for (int i = 0; i < WINDOWS; i++) {
+			windows[i] = new Frame("");
+			windowEpochs[i] = -1;
+		}
+	}
+
+	private Frame window(long nowMillis) {
+		long epoch = nowMillis / WINDOW_MILLIS;
+		int index = (int) (epoch % WINDOWS);
+		if (windowEpochs[index] != epoch) {
+			windows[index] = new Frame("");
+			windowEpochs[index] = epoch;
+		}
+		return windows[index];
+	}
+
+	private static void record(Frame root, String[] path, long totalNanos, long selfNanos) {
+		Frame frame = root;
+		for (String type : path) {
+			frame = frame.child(type);
+		}
+		frame.count++;
+		frame.totalNanos += totalNanos;
+		frame.selfNanos += selfNanos;
+	}
+
+	private boolean evictStale() {
+		long cutoff = clock.millis() - MAX_ACTIVITY_AGE_MILLIS;
+		activities.values().removeIf(activity -> {
+			if (activity.created >= cutoff) return false;
+			close(activity);
+			return true;
+		});
+		return activities.size() < MAX_OPEN_ACTIVITIES;
+	}
+
+	private void close(OpenActivity activity) {
+		for (Long nodeId : activity.nodeIds) {
+			nodes.remove(nodeId);
+		}
+	}
+
+	private static final class OpenActivity {
+		final long created;
+		final List<Long> nodeIds = new ArrayList<>();
+
+		OpenActivity(long created) {
+			this.created = created;
+		}
+	}
+
+	private static final class OpenNode {
+		final OpenActivity activity;
+		@Nullable final OpenNode parent;
+		final String type;
+		final int depth;
+		long childNanos;
+
+		OpenNode(OpenActivity activity, @Nullable OpenNode parent, String type) {
+			this.activity = activity;
+			this.parent = parent;
+			this.type = type;
+			this.depth = parent == null ? 1 : parent.depth + 1;
+		}
+
+		String[] path() {
+			String[] path = new String[depth];
+			OpenNode node = this;
+			for (int i = depth - 1; i >= 0; i--) {
+				path[i] = node.type;
+				node = node.parent;
+			}
+			return path;
+		}
+	}
+
+	/** One node type path in the folded tree */
+	public static final class Frame {
+		private final String name;
+		private final Map<String, Frame> children = new TreeMap<>();
+		private long count;
+		private long totalNanos;
+		private long selfNanos;
+
+		Frame(String name) {
+			this.name = name;
+		}
+
+		public String name() {
+			return name;
+		}
+
+		public long count() {
+			return count;
+		}
+
+		public long totalNanos() {
+			return totalNanos;
+		}
+
+		public long selfNanos() {
+			return selfNanos;
+		}
+
+		public Iterable<Frame> children() {
+			return children.values();
+		}
+
+		/**
+		 * Visits every frame below this one that has self time, with its path of types joined by semicolons, as in
+		 * the "collapsed stack" format taken by flame graph tools.
+		 */
+		public void collapsed(BiConsumer<String, Frame> consumer) {
+			for (Frame child : children.values()) {
+				child.collapsed(child.name, consumer);
+			}
+		}
+
+		private void collapsed(String path, BiConsumer<String, Frame> consumer) {
+			if (selfNanos > 0) consumer.accept(path, this);
+			for (Frame child : children.values()) {
+				child.collapsed(path + ";" + child.name, consumer);
+			}
+		}
+
+		Frame child(String type) {
+			Frame child = children.get(type);
+			if (child == null) {
+				child = new Frame(type);
+				children.put(type, child);
+			}
+			return child;
+		}
+
+		void add(Frame other) {
+			count += other.count;
+			totalNanos += other.totalNanos;
+			selfNanos += other.selfNanos;
+			for (Frame otherChild : other.children.values()) {
+				child(otherChild.name).add(otherChild);
+			}
+		}
+
+		Frame copy() {
+			Frame copy = new Frame(name);
+			copy.add(this);
+			return copy;
+		}
+	}
+}
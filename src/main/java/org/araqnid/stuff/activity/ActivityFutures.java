@@ -0,0 +1,25 @@
+package org.araqnid.stuff.activity;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * {@link CompletableFuture} factories that run their work as a child node of the calling thread's current activity
+ * node.
+ * <p>
+ * The node is captured when these are called, so dependent stages should be given an {@link ActivityExecutorService}
+ * instead: those capture the node on whichever thread completed the previous stage.
+ */
+public final class ActivityFutures {
+	public static <T> CompletableFuture<T> supplyAsync(String type, Supplier<T> supplier, Executor executor) {
+		return CompletableFuture.supplyAsync(ActivityTask.wrapSupplier(supplier, type), executor);
+	}
+
+	public static CompletableFuture<Void> runAsync(String type, Runnable runnable, Executor executor) {
+		return CompletableFuture.runAsync(ActivityTask.wrap(runnable, type), executor);
+	}
+
+	private ActivityFutures() {
+	}
+}
@@ -0,0 +1,109 @@
+package org.araqnid.stuff.activity;
+
+import java.io.IOException;
+import java.util.UUID;
+import javax.annotation.Nullable;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * Times each outbound request made on a thread with a current activity as an "HttpClient" child node, and passes
+ * the activity on by sending the activity ID, that node's ID and this instance's ID in an "X-Activity" header, as
+ * understood by {@link ActivityFilter}.
+ * <p>
+ * The node completes when the response headers arrive. Otherwise it completes unsuccessfully when the request is
+ * retried, or when execution fails by any exception; that is caught around the client's execute method, so clients
+ * are only available through {@link #instrument(HttpClientBuilder, UUID)}.
+ */
+public final class ActivityHttpClientInterceptor implements HttpRequestInterceptor, HttpResponseInterceptor {
+	static final String NODE_TYPE = "HttpClient";
+	private static final String CONTEXT_ATTRIBUTE = ActivityHttpClientInterceptor.class.getName();
+
+	private final UUID instanceId;
+
+	ActivityHttpClientInterceptor(UUID instanceId) {
+		this.instanceId = instanceId;
+	}
+
+	public static CloseableHttpClient instrument(HttpClientBuilder builder, UUID instanceId) {
+		ActivityHttpClientInterceptor interceptor = new ActivityHttpClientInterceptor(instanceId);
+		return new InstrumentedHttpClient(builder.addInterceptorLast((HttpRequestInterceptor) interceptor)
+				.addInterceptorFirst((HttpResponseInterceptor) interceptor)
+				.build());
+	}
+
+	@Override
+	public void process(HttpRequest request, HttpContext context) {
+		complete(context, false, new ActivityAttributes(1).with("retried", true));
+		ActivityNode parent = ThreadActivity.current().orElse(null);
+		if (parent == null) return;
+		ActivityNode node = parent.beginDetached(NODE_TYPE,
+				new ActivityAttributes(2).with("method", request.getRequestLine().getMethod())
+						.with("uri", request.getRequestLine().getUri()));
+		context.setAttribute(CONTEXT_ATTRIBUTE, node);
+		request.setHeader(ActivityFilter.ACTIVITY_HEADER, node.activity.id + " " + node.id + " " + instanceId);
+	}
+
+	@Override
+	public void process(HttpResponse response, HttpContext context) throws IOException {
+		complete(context, true, new ActivityAttributes(1).with("status", response.getStatusLine().getStatusCode()));
+	}
+
+	private static void complete(HttpContext context, boolean success, @Nullable Object attributes) {
+		ActivityNode node = (ActivityNode) context.removeAttribute(CONTEXT_ATTRIBUTE);
+		if (node != null) node.complete(success, attributes);
+	}
+
+	@SuppressWarnings("deprecation")
+	private static final class InstrumentedHttpClient extends CloseableHttpClient {
+		private final CloseableHttpClient delegate;
+
+		InstrumentedHttpClient(CloseableHttpClient delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		protected CloseableHttpResponse doExecute(HttpHost target, HttpRequest request, HttpContext context)
+				throws IOException {
+			HttpContext executionContext = context != null ? context : new BasicHttpContext();
+			Throwable failure = null;
+			try {
+				return delegate.execute(target, request, executionContext);
+			} catch (IOException | RuntimeException | Error e) {
+				failure = e;
+				throw e;
+			} finally {
+				complete(executionContext, false,
+						failure != null ? new ActivityAttributes(1).with("exception", failure.toString()) : null);
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			delegate.close();
+		}
+
+		@Override
+		@Deprecated
+		public HttpParams getParams() {
+			return delegate.getParams();
+		}
+
+		@Override
+		@Deprecated
+		public ClientConnectionManager getConnectionManager() {
+			return delegate.getConnectionManager();
+		}
+	}
+}
@@ -0,0 +1,31 @@
+package org.araqnid.stuff.activity;
+
+import java.time.Clock;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Source of activity IDs.
+ */
+public interface ActivityIdGenerator {
+	UUID next();
+
+	/**
+	 * Version 7 (Unix time-ordered) UUIDs: the first 48 bits are the millisecond timestamp from the clock, and the
+	 * remaining 74 non-fixed bits come from the calling thread's random generator. IDs therefore sort by creation
+	 * time to the millisecond, and generating them takes no locks.
+	 */
+	static ActivityIdGenerator timeOrdered(Clock clock) {
+		return () -> {
+			ThreadLocalRandom random = ThreadLocalRandom.current();
+			long msb = (clock.millis() << 16) | 0x7000L | (random.nextInt() & 0x0fffL);
+			long lsb = (random.nextLong() & 0x3fffffffffffffffL) | 0x8000000000000000L;
+			return new UUID(msb, lsb);
+		};
+	}
+
+	/** Version 4 UUIDs from the shared {@link java.security.SecureRandom} behind {@link UUID#randomUUID()} */
+	static ActivityIdGenerator secureRandom() {
+		return UUID::randomUUID;
+	}
+}
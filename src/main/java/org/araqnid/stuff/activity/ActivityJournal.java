@@ -0,0 +1,252 @@
+package org.araqnid.stuff.activity;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import javax.annotation.Nullable;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Appends activity events as compact binary records to fixed-size memory-mapped segment files.
+ * <p>
+ * A new segment is started when the current one is full or older than the maximum age, and the oldest segments
+ * are deleted once there are more than the retention limit. Segments can be read back with
+ * {@link ActivityJournalReader}, see there for the record layout. Node types longer than 65535 bytes of UTF-8 are
+ * truncated to fit the record's type length field.
+ */
+public class ActivityJournal implements ActivityEventSink, Closeable {
+	private static final Logger LOG = LoggerFactory.getLogger(ActivityJournal.class);
+	static final int MAGIC = 0x414a524e; // "AJRN"
+	static final int VERSION = 1;
+	static final int SEGMENT_HEADER_SIZE = 32;
+	static final int RECORD_HEADER_SIZE = 40;
+	static final int START_EXTRA_SIZE = 12;
+	static final int MAX_TYPE_LENGTH = 0xffff;
+	static final byte START = 1;
+	static final byte END = 2;
+	static final String SEGMENT_PREFIX = "activity-";
+	static final String SEGMENT_SUFFIX = ".journal";
+
+	private final Path directory;
+	private final int segmentSize;
+	private final long maxSegmentAgeMillis;
+	private final int maxSegments;
+	private final ObjectMapper mapper;
+	private final Clock clock;
+	private final JsonEventBuffer attributesBuffer = new JsonEventBuffer(1024);
+	private JsonGenerator generator;
+	private long nextSegmentSequence;
+	private MappedByteBuffer segment;
+	private long segmentCreated;
+	private long discarded;
+
+	public ActivityJournal(Path directory,
+			int segmentSize,
+			Duration maxSegmentAge,
+			int maxSegments,
+			ObjectMapper mapper,
+			Clock clock) throws IOException {
+		Preconditions.checkArgument(segmentSize >= 4096, "segment size too small: %s", segmentSize);
+		Preconditions.checkArgument(maxSegments > 0, "must retain at least one segment");
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		this.maxSegmentAgeMillis = maxSegmentAge.toMillis();
+		this.maxSegments = maxSegments;
+		this.mapper = mapper;
+		this.clock = clock;
+		Files.createDirectories(directory);
+		List<Path> existing = segments(directory);
+		this.nextSegmentSequence = existing.isEmpty() ? 0 : segmentSequence(existing.get(existing.size() - 1)) + 1;
+	}
+
+	@Override
+	public synchronized void activityNodeStart(UUID activityId,
+			long nodeId,
+			long nodeParentId,
+			String type,
+			Instant started,
+			@Nullable Object attributes) {
+		byte[] typeBytes = truncateType(type.getBytes(StandardCharsets.UTF_8));
+		int attributesLength = encodeAttributes(attributes);
+		int bodyLength = RECORD_HEADER_SIZE + START_EXTRA_SIZE + typeBytes.length;
+		if (!reserve(bodyLength, attributesLength)) return;
+		int position = segment.position();
+		if (!fits(bodyLength + attributesLength)) attributesLength = 0;
+		segment.position(position + 4);
+		header(START, false, typeBytes.length, attributesLength, activityId, nodeId, nodeParentId);
+		segment.putLong(started.getEpochSecond());
+		segment.putInt(started.getNano());
+		segment.put(typeBytes);
+		finishRecord(position, attributesLength);
+	}
+
+	@Override
+	public synchronized void activityNodeEnd(UUID activityId, long nodeId, boolean success, long durationNanos, @Nullable Object attributes) {
+		int attributesLength = encodeAttributes(attributes);
+		if (!reserve(RECORD_HEADER_SIZE, attributesLength)) return;
+		int position = segment.position();
+		if (!fits(RECORD_HEADER_SIZE + attributesLength)) attributesLength = 0;
+		segment.position(position + 4);
+		header(END, success, 0, attributesLength, activityId, nodeId, durationNanos);
+		finishRecord(position, attributesLength);
+	}
+
+	public synchronized long getDiscardedCount() {
+		return discarded;
+	}
+
+	@Override
+	public synchronized void close() {
+		if (segment != null) {
+			segment.force();
+			segment = null;
+		}
+	}
+
+	/** Cuts a type longer than its length field can hold back to the last whole UTF-8 sequence that fits */
+	static byte[] truncateType(byte[] typeBytes) {
+		if (typeBytes.length <= MAX_TYPE_LENGTH) return typeBytes;
+		int length = MAX_TYPE_LENGTH;
+		while ((typeBytes[length] & 0xc0) == 0x80) {
+			--length;
+		}
+		return Arrays.copyOf(typeBytes, length);
+	}
+
+	private void header(byte kind, boolean success, int typeLength, int attributesLength, UUID activityId, long nodeId,
+			long extra) {
+		segment.put(kind);
+		segment.put((byte) (success ? 1 : 0));
+		segment.putShort((short) typeLength);
+		segment.putInt(attributesLength);
+		segment.putLong(activityId.getMostSignificantBits());
+		segment.putLong(activityId.getLeastSignificantBits());
+		segment.putLong(nodeId);
+		segment.putLong(extra);
+	}
+
+	private void finishRecord(int position, int attributesLength) {
+		if (attributesLength > 0) {
+			segment.put(attributesBuffer.contents());
+		}
+		int bodyLength = segment.position() - position - 4;
+		segment.position(align(segment.position()));
+		segment.putInt(position, bodyLength);
+	}
+
+	private boolean reserve(int bodyLength, int attributesLength) {
+		try {
+			if (segment != null && clock.millis() - segmentCreated >= maxSegmentAgeMillis) {
+				roll();
+			}
+			if (segment == null || (!fits(bodyLength + attributesLength) && segment.position() > SEGMENT_HEADER_SIZE)) {
+				roll();
+			}
+		} catch (IOException e) {
+			LOG.warn("Unable to start new activity journal segment", e);
+			segment = null;
+		}
+		if (segment == null || !fits(bodyLength)) {
+			++discarded;
+			return false;
+		}
+		return true;
+	}
+
+	private boolean fits(int bodyLength) {
+		// leave room for the zero length that terminates the segment
+		return align(segment.position() + 4 + bodyLength) + 4 <= segmentSize;
+	}
+
+	private void roll() throws IOException {
+		if (segment != null) {
+			segment.force();
+			segment = null;
+		}
+		long sequence = nextSegmentSequence++;
+		Path path = directory.resolve(segmentName(sequence));
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+				StandardOpenOption.WRITE)) {
+			segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+		}
+		segment.order(ByteOrder.BIG_ENDIAN);
+		segmentCreated = clock.millis();
+		segment.putInt(MAGIC);
+		segment.putInt(VERSION);
+		segment.putLong(sequence);
+		segment.putLong(segmentCreated);
+		segment.putInt(segmentSize);
+		segment.position(SEGMENT_HEADER_SIZE);
+		enforceRetention();
+	}
+
+	private void enforceRetention() throws IOException {
+		List<Path> existing = segments(directory);
+		for (int i = 0; i < existing.size() - maxSegments; i++) {
+			Files.deleteIfExists(existing.get(i));
+		}
+	}
+
+	private int encodeAttributes(@Nullable Object attributes) {
+		attributesBuffer.reset();
+		if (attributes == null) return 0;
+		try {
+			if (generator == null) {
+				generator = mapper.getFactory().createGenerator(attributesBuffer);
+				generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+				generator.setRootValueSeparator(null);
+			}
+			mapper.writeValue(generator, attributes);
+			generator.flush();
+			return attributesBuffer.size();
+		} catch (IOException | RuntimeException e) {
+			LOG.warn("Failed to serialise activity attributes", e);
+			generator = null;
+			attributesBuffer.reset();
+			return 0;
+		}
+	}
+
+	static int align(int position) {
+		return (position + 7) & ~7;
+	}
+
+	static String segmentName(long sequence) {
+		return String.format("%s%016x%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX);
+	}
+
+	static long segmentSequence(Path path) {
+		String name = path.getFileName().toString();
+		return Long.parseUnsignedLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()), 16);
+	}
+
+	static List<Path> segments(Path directory) throws IOException {
+		List<Path> segments = new ArrayList<>();
+		if (!Files.isDirectory(directory)) return segments;
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+			stream.forEach(segments::add);
+		}
+		Collections.sort(segments);
+		return segments;
+	}
+}
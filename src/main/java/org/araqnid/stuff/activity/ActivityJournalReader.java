@@ -0,0 +1,245 @@
+package org.araqnid.stuff.activity;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+import javax.annotation.Nullable;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Reads the segments written by {@link ActivityJournal}.
+ * <p>
+ * Each segment has a 32-byte header (magic, version, sequence, creation time, size) followed by records aligned to
+ * 8 bytes. Each record is an int body length (zero marks the end of the data written so far) followed by the body:
+ * <pre>
+ * byte  kind (1 = start, 2 = end)
+ * byte  success (end only)
+ * short type length (start only)
+ * int   attributes length
+ * long  activity id (most significant bits)
+ * long  activity id (least significant bits)
+ * long  node id
+ * long  parent node id (start) or duration in nanoseconds (end)
+ * long  started epoch second (start only)
+ * int   started nanosecond adjustment (start only)
+ * ...   type as UTF-8 (start only)
+ * ...   attributes as JSON
+ * </pre>
+ * Records are presented through a single reusable {@link Record} view over the mapped segment, so nothing is copied
+ * unless the caller asks for a decoded value.
+ */
+public class ActivityJournalReader {
+	private final Path directory;
+
+	public ActivityJournalReader(Path directory) {
+		this.directory = directory;
+	}
+
+	public List<Path> segments() throws IOException {
+		return ActivityJournal.segments(directory);
+	}
+
+	/** Cursor positioned before the first record of the oldest retained segment */
+	public Cursor replay() {
+		return new Cursor();
+	}
+
+	/** Cursor positioned after the last record written so far */
+	public Cursor tail() throws IOException {
+		List<Path> segments = segments();
+		Cursor cursor = new Cursor();
+		if (!segments.isEmpty()) {
+			cursor.open(ActivityJournal.segmentSequence(segments.get(segments.size() - 1)));
+			while (cursor.advanceWithinSegment()) {
+			}
+		}
+		return cursor;
+	}
+
+	public void replay(Consumer<? super Record> consumer) throws IOException {
+		Cursor cursor = replay();
+		while (cursor.next()) {
+			consumer.accept(cursor.record());
+		}
+	}
+
+	public final class Cursor {
+		private final Record record = new Record();
+		private long sequence = -1;
+		private MappedByteBuffer segment;
+		private int position;
+
+		private Cursor() {
+		}
+
+		/**
+		 * Moves to the next record, following on to newer segments as they appear.
+		 *
+		 * @return false if no more records have been written yet
+		 */
+		public boolean next() throws IOException {
+			while (true) {
+				if (segment != null && advanceWithinSegment()) return true;
+				long following = followingSegment();
+				if (following < 0) return false;
+				// the journal finishes writing a segment before it creates the next one, so anything appended to this
+				// segment since the last look is there to be read before moving on
+				if (segment != null && advanceWithinSegment()) return true;
+				open(following);
+			}
+		}
+
+		public Record record() {
+			return record;
+		}
+
+		boolean advanceWithinSegment() {
+			int bodyLength = position + 4 <= segment.limit() ? segment.getInt(position) : 0;
+			if (bodyLength <= 0) return false;
+			record.segment = segment;
+			record.offset = position + 4;
+			position = ActivityJournal.align(position + 4 + bodyLength);
+			return true;
+		}
+
+		/** Sequence of the oldest segment after the current one, or -1 if there is none yet */
+		private long followingSegment() throws IOException {
+			for (Path path : segments()) {
+				long candidate = ActivityJournal.segmentSequence(path);
+				if (candidate > sequence) return candidate;
+			}
+			return -1;
+		}
+
+		boolean open(long sequence) throws IOException {
+			Path path = directory.resolve(ActivityJournal.segmentName(sequence));
+			MappedByteBuffer mapped;
+			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+				mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			} catch (NoSuchFileException e) {
+				return false;
+			}
+			mapped.order(ByteOrder.BIG_ENDIAN);
+			if (mapped.limit() < ActivityJournal.SEGMENT_HEADER_SIZE || mapped.getInt(0) != ActivityJournal.MAGIC
+					|| mapped.getInt(4) != ActivityJournal.VERSION) {
+				throw new IOException("Not an activity journal segment: " + path);
+			}
+			this.segment = mapped;
+			this.sequence = sequence;
+			this.position = ActivityJournal.SEGMENT_HEADER_SIZE;
+			return true;
+		}
+	}
+
+	public static final class Record {
+		private ByteBuffer segment;
+		private int offset;
+
+		private Record() {
+		}
+
+		public boolean isStart() {
+			return segment.get(offset) == ActivityJournal.START;
+		}
+
+		public boolean isEnd() {
+			return segment.get(offset) == ActivityJournal.END;
+		}
+
+		public boolean success() {
+			return segment.get(offset + 1) != 0;
+		}
+
+		public long activityIdMostSignificantBits() {
+			return segment.getLong(offset + 8);
+		}
+
+		public long activityIdLeastSignificantBits() {
+			return segment.getLong(offset + 16);
+		}
+
+		public UUID activityId() {
+			return new UUID(activityIdMostSignificantBits(), activityIdLeastSignificantBits());
+		}
+
+		public long nodeId() {
+			return segment.getLong(offset + 24);
+		}
+
+		public long nodeParentId() {
+			return isStart() ? segment.getLong(offset + 32) : ActivityNode.NO_PARENT;
+		}
+
+		public long durationNanos() {
+			return isEnd() ? segment.getLong(offset + 32) : 0;
+		}
+
+		public Duration duration() {
+			return Duration.ofNanos(durationNanos());
+		}
+
+		@Nullable
+		public Instant started() {
+			if (!isStart()) return null;
+			return Instant.ofEpochSecond(segment.getLong(offset + 40), segment.getInt(offset + 48));
+		}
+
+		@Nullable
+		public String type() {
+			if (!isStart()) return null;
+			ByteBuffer slice = slice(offset + ActivityJournal.RECORD_HEADER_SIZE + ActivityJournal.START_EXTRA_SIZE,
+					typeLength());
+			return StandardCharsets.UTF_8.decode(slice).toString();
+		}
+
+		/** Attributes as UTF-8 JSON, as a read-only view of the segment: empty if there were none */
+		public ByteBuffer attributes() {
+			int start = offset + ActivityJournal.RECORD_HEADER_SIZE;
+			if (isStart()) start += ActivityJournal.START_EXTRA_SIZE + typeLength();
+			return slice(start, segment.getInt(offset + 4));
+		}
+
+		@Nullable
+		public String attributesJson() {
+			ByteBuffer attributes = attributes();
+			return attributes.hasRemaining() ? StandardCharsets.UTF_8.decode(attributes).toString() : null;
+		}
+
+		private int typeLength() {
+			return segment.getShort(offset + 2) & 0xffff;
+		}
+
+		private ByteBuffer slice(int start, int length) {
+			ByteBuffer view = segment.duplicate();
+			view.limit(start + length);
+			view.position(start);
+			return view.slice().asReadOnlyBuffer();
+		}
+
+		@Override
+		public String toString() {
+			MoreObjects.ToStringHelper helper = MoreObjects.toStringHelper(this)
+					.add("activityId", activityId())
+					.add("nodeId", nodeId());
+			if (isStart()) {
+				helper.add("nodeParentId", nodeParentId()).add("type", type()).add("started", started());
+			}
+			else {
+				helper.add("success", success()).add("duration", duration());
+			}
+			return helper.add("attributes", attributesJson()).toString();
+		}
+	}
+}
@@ -0,0 +1,162 @@
+package org.araqnid.stuff.activity;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Aggregates node durations into latency histograms by node type, and by method and path for HTTP request roots.
+ * <p>
+ * Each series keeps a histogram since startup and one per minute for the last {@value #WINDOWS} minutes. Series are
+ * looked up from the ending node's type and start attributes, so nothing is kept for open nodes, and an existing
+ * series is found without building its key.
+ * <p>
+ * Node types are fixed by the code, so every type gets a series. Request paths come from clients, so only the first
+ * {@value #MAX_REQUEST_SERIES} method and path combinations get one; later requests are still counted under their
+ * node type.
+ */
+@Singleton
+public class ActivityLatencyStatistics implements ActivityEventSink {
+	static final int WINDOWS = 15;
+	private static final long WINDOW_MILLIS = TimeUnit.MINUTES.toMillis(1);
+	private static final int MAX_REQUEST_SERIES = 256;
+
+	private final Clock clock;
+	private final ConcurrentMap<String, Series> series = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, Series> typeSeries = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, ConcurrentMap<Object, ConcurrentMap<Object, Series>>> requestSeries = new ConcurrentHashMap<>();
+	private final AtomicInteger requestSeriesCount = new AtomicInteger();
+
+	@Inject
+	public ActivityLatencyStatistics(Clock clock) {
+		this.clock = clock;
+	}
+
+	@Override
+	public void activityNodeStart(UUID activityId,
+			long nodeId,
+			long nodeParentId,
+			String type,
+			Instant started,
+			@Nullable Object attributes) {
+	}
+
+	/** Ignored: durations are recorded from the node itself, as its type is not in the end event */
+	@Override
+	public void activityNodeEnd(UUID activityId, long nodeId, boolean success, long durationNanos, @Nullable Object attributes) {
+	}
+
+	@Override
+	public void activityNodeEnd(ActivityNode node, boolean success, long durationNanos, @Nullable Object attributes) {
+		long now = clock.millis();
+		typeSeries(node.type).record(now, durationNanos);
+		if (node.parent == null) {
+			Series byRequest = requestSeries(node.type, node.nodeAttributes);
+			if (byRequest != null) byRequest.record(now, durationNanos);
+		}
+	}
+
+	public SortedMap<String, LatencyHistogram.Snapshot> snapshot(int windowMinutes) {
+		long now = clock.millis();
+		SortedMap<String, LatencyHistogram.Snapshot> result = new TreeMap<>();
+		for (Map.Entry<String, Series> e : series.entrySet()) {
+			result.put(e.getKey(), windowMinutes > 0 ? e.getValue().window(now, windowMinutes) : e.getValue().total.snapshot());
+		}
+		return result;
+	}
+
+	/** Snapshot of a single series, or null if there is no such series */
+	@Nullable
+	public LatencyHistogram.Snapshot snapshot(String key, int windowMinutes) {
+		Series s = series.get(key);
+		if (s == null) return null;
+		return windowMinutes > 0 ? s.window(clock.millis(), windowMinutes) : s.total.snapshot();
+	}
+
+	private Series typeSeries(String type) {
+		Series existing = typeSeries.get(type);
+		if (existing != null) return existing;
+		return typeSeries.computeIfAbsent(type, this::newSeries);
+	}
+
+	@Nullable
+	private Series requestSeries(String type, @Nullable Object attributes) {
+		Object method;
+		Object path;
+		if (attributes instanceof ActivityAttributes) {
+			method = ((ActivityAttributes) attributes).get("method");
+			path = ((ActivityAttributes) attributes).get("path");
+		}
+		else if (attributes instanceof Map) {
+			method = ((Map<?, ?>) attributes).get("method");
+			path = ((Map<?, ?>) attributes).get("path");
+		}
+		else {
+			return null;
+		}
+		if (method == null || path == null) return null;
+		ConcurrentMap<Object, ConcurrentMap<Object, Series>> byMethod = requestSeries.get(type);
+		ConcurrentMap<Object, Series> byPath = byMethod != null ? byMethod.get(method) : null;
+		Series existing = byPath != null ? byPath.get(path) : null;
+		if (existing != null) return existing;
+		if (requestSeriesCount.get() >= MAX_REQUEST_SERIES) return null;
+		return requestSeries.computeIfAbsent(type, k -> new ConcurrentHashMap<>())
+				.computeIfAbsent(method, k -> new ConcurrentHashMap<>())
+				.computeIfAbsent(path, k -> {
+					requestSeriesCount.incrementAndGet();
+					return newSeries(type + " " + method + " " + path);
+				});
+	}
+
+	private Series newSeries(String key) {
+		return series.computeIfAbsent(key, k -> new Series());
+	}
+
+	private static final class Series {
+		final LatencyHistogram total = new LatencyHistogram();
+		final LatencyHistogram[] windows = new LatencyHistogram[WINDOWS];
+		final AtomicLong[] windowEpochs = new AtomicLong[WINDOWS];
+
+		Series() {
+			for (int i = 0; i < WINDOWS; i++) {
+				windows[i] = new LatencyHistogram();
+				windowEpochs[i] = new AtomicLong(-1);
+			}
+		}
+
+		void record(long nowMillis, long nanos) {
+			total.record(nanos);
+			long epoch = nowMillis / WINDOW_MILLIS;
+			int index = (int) (epoch % WINDOWS);
+			AtomicLong windowEpoch = windowEpochs[index];
+			long current = windowEpoch.get();
+			if (current < epoch && windowEpoch.compareAndSet(current, epoch)) {
+				windows[index].reset();
+			}
+			windows[index].record(nanos);
+		}
+
+		LatencyHistogram.Snapshot window(long nowMillis, int minutes) {
+			long epoch = nowMillis / WINDOW_MILLIS;
+			LatencyHistogram.Snapshot snapshot = new LatencyHistogram.Snapshot();
+			for (int i = 0; i < Math.min(minutes, WINDOWS); i++) {
+				int index = (int) ((epoch - i) % WINDOWS);
+				if (windowEpochs[index].get() == epoch - i) {
+					snapshot.add(windows[index]);
+				}
+			}
+			return snapshot;
+		}
+	}
+}
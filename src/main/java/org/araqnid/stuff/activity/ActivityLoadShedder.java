@@ -0,0 +1,156 @@
+package org.araqnid.stuff.activity;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.AbstractScheduledService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decides how much activity logging to shed, from how full the event queue is and how slow requests are.
+ * <p>
+ * Each check moves one level towards {@link Level#SAMPLE_ROOTS} while the queue is above its high mark or request
+ * latency is above the threshold. It moves one level back towards {@link Level#FULL} only after several checks in a
+ * row with the queue below its low mark and latency under half the threshold. Sinks wrapped with
+ * {@link SheddingActivityEventSink} apply the current level and count what they shed here.
+ */
+public class ActivityLoadShedder extends AbstractScheduledService {
+	private static final Logger LOG = LoggerFactory.getLogger(ActivityLoadShedder.class);
+
+	public enum Level {
+		/** Everything is passed on */
+		FULL,
+		/** Only root nodes are passed on */
+		ROOTS_ONLY,
+		/** Only root nodes are passed on, without attributes */
+		NO_ATTRIBUTES,
+		/** Only a sample of root nodes are passed on, without attributes */
+		SAMPLE_ROOTS
+	}
+
+	private final DoubleSupplier queueFill;
+	private final LongSupplier latencyNanos;
+	private final double queueHighMark;
+	private final double queueLowMark;
+	private final long latencyThresholdNanos;
+	private final int recoveryChecks;
+	private final int rootSampleRate;
+	private final Duration interval;
+	private final LongAdder shedChildren = new LongAdder();
+	private final LongAdder shedAttributes = new LongAdder();
+	private final LongAdder shedRoots = new LongAdder();
+	private volatile Level level = Level.FULL;
+	private int calmChecks;
+
+	/**
+	 * @param queueFill supplies the fraction of the event queue in use, between 0 and 1
+	 * @param latencyNanos supplies a recent high percentile of request latency
+	 */
+	public ActivityLoadShedder(DoubleSupplier queueFill,
+			LongSupplier latencyNanos,
+			double queueHighMark,
+			double queueLowMark,
+			Duration latencyThreshold,
+			int recoveryChecks,
+			int rootSampleRate,
+			Duration interval) {
+		Preconditions.checkArgument(queueLowMark < queueHighMark, "low mark must be below high mark");
+		Preconditions.checkArgument(rootSampleRate > 0, "sample rate must be positive: %s", rootSampleRate);
+		this.queueFill = queueFill;
+		this.latencyNanos = latencyNanos;
+		this.queueHighMark = queueHighMark;
+		this.queueLowMark = queueLowMark;
+		this.latencyThresholdNanos = latencyThreshold.toNanos();
+		this.recoveryChecks = recoveryChecks;
+		this.rootSampleRate = rootSampleRate;
+		this.interval = interval;
+	}
+
+	public Level level() {
+		return level;
+	}
+
+	public long getShedChildCount() {
+		return shedChildren.sum();
+	}
+
+	/** Number of events passed on with their attributes removed */
+	public long getShedAttributesCount() {
+		return shedAttributes.sum();
+	}
+
+	public long getShedRootCount() {
+		return shedRoots.sum();
+	}
+
+	@Override
+	protected void runOneIteration() {
+		try {
+			check(queueFill.getAsDouble(), latencyNanos.getAsLong());
+		} catch (RuntimeException e) {
+			LOG.warn("Failed to check activity logging pressure", e);
+		}
+	}
+
+	void check(double fill, long latency) {
+		Level current = level;
+		if (fill >= queueHighMark || latency >= latencyThresholdNanos) {
+			calmChecks = 0;
+			if (current != Level.SAMPLE_ROOTS) {
+				changeLevel(Level.values()[current.ordinal() + 1], fill, latency);
+			}
+		}
+		else if (fill <= queueLowMark && latency < latencyThresholdNanos / 2) {
+			if (current != Level.FULL && ++calmChecks >= recoveryChecks) {
+				calmChecks = 0;
+				changeLevel(Level.values()[current.ordinal() - 1], fill, latency);
+			}
+		}
+		else {
+			calmChecks = 0;
+		}
+	}
+
+	boolean sampled(UUID activityId) {
+		return (activityId.getLeastSignificantBits() & Long.MAX_VALUE) % rootSampleRate == 0;
+	}
+
+	void childShed() {
+		shedChildren.increment();
+	}
+
+	void attributesShed() {
+		shedAttributes.increment();
+	}
+
+	void rootShed() {
+		shedRoots.increment();
+	}
+
+	private void changeLevel(Level newLevel, double fill, long latency) {
+		String message = "Activity logging changed from {} to {} (queue {}% full, latency {}ms);"
+				+ " shed so far: {} child nodes, {} roots, attributes of {} events";
+		Object[] args = { level, newLevel, Math.round(fill * 100), TimeUnit.NANOSECONDS.toMillis(latency),
+				shedChildren.sum(), shedRoots.sum(), shedAttributes.sum() };
+		if (newLevel.compareTo(level) > 0) LOG.warn(message, args);
+		else LOG.info(message, args);
+		level = newLevel;
+	}
+
+	@Override
+	protected Scheduler scheduler() {
+		long millis = interval.toMillis();
+		return Scheduler.newFixedDelaySchedule(millis, millis, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	protected String serviceName() {
+		return "activity-load-shedder";
+	}
+}
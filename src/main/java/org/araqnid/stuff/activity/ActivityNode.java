@@ -1,29 +1,37 @@
 package org.araqnid.stuff.activity;
 
-import java.time.Duration;
 import java.time.Instant;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicLong;
 import javax.annotation.Nullable;
 
-import com.google.common.base.Stopwatch;
-
 public class ActivityNode implements Completable {
 	public static final long NO_PARENT = 0L;
-	private static final AtomicLong EVENT_ID_SOURCE = new AtomicLong();
-	public final long id = EVENT_ID_SOURCE.incrementAndGet();
+	public final long id;
 	@Nullable public final ActivityNode parent;
 	public final String type;
 	public final Activity activity;
-	public final Instant started = Instant.now();
-	public final Stopwatch stopwatch = Stopwatch.createStarted();
 	@Nullable public final Object nodeAttributes;
+	final long startTicks;
+	@Nullable private final Instant started;
+	private long accountingThreadId = -1;
+	private long startCpuTime;
+	private long startAllocatedBytes;
 
 	public ActivityNode(Activity activity, @Nullable ActivityNode parent, String type, @Nullable Object nodeAttributes) {
 		this.activity = activity;
+		this.id = activity.nodeIds.next();
 		this.parent = parent;
 		this.type = type;
 		this.nodeAttributes = nodeAttributes;
+		this.startTicks = activity.timing.ticks();
+		this.started = activity.anchor == null ? activity.timing.now() : null;
+	}
+
+	public Instant started() {
+		return started != null ? started : activity.anchor.plusNanos(startTicks - activity.anchorTicks);
+	}
+
+	public long elapsedNanos() {
+		return activity.timing.ticks() - startTicks;
 	}
 
 	public ActivityNode begin(String type) {
@@ -44,16 +52,43 @@ public class ActivityNode implements Completable {
 		return new Completable.Rec<>(begin(type, attributes));
 	}
 
+	/** Opens a child node without making it the thread's current node */
+	ActivityNode beginDetached(String type, @Nullable Object attributes) {
+		ActivityNode node = new ActivityNode(activity, this, type, attributes);
+		node.start();
+		return node;
+	}
+
 	void begin() {
-		activity.sink.activityNodeStart(activity.id, id, parent != null ? parent.id : NO_PARENT, type, started,
-				nodeAttributes);
+		start();
 		ThreadActivity.transition(parent, this);
 	}
 
+	private void start() {
+		if (activity.accounting != null) {
+			accountingThreadId = Thread.currentThread().getId();
+			startCpuTime = ResourceAccounting.cpuTime();
+			startAllocatedBytes = ResourceAccounting.allocatedBytes(accountingThreadId);
+		}
+		activity.sink.activityNodeStart(activity.id, id, parent != null ? parent.id : NO_PARENT, type, started(),
+				nodeAttributes);
+	}
+
 	@Override
 	public void complete(boolean success, @Nullable Object completionAttributes) {
-		activity.sink.activityNodeEnd(activity.id, id, success,
-				Duration.ofNanos(stopwatch.elapsed(TimeUnit.NANOSECONDS)), completionAttributes);
+		long durationNanos = elapsedNanos();
+		if (activity.accounting != null && startCpuTime >= 0 && accountingThreadId == Thread.currentThread().getId()) {
+			long cpuNanos = ResourceAccounting.cpuTime() - startCpuTime;
+			long allocatedBytes = startAllocatedBytes < 0 ? -1
+					: ResourceAccounting.allocatedBytes(accountingThreadId) - startAllocatedBytes;
+			completionAttributes = activity.accounting.record(type, cpuNanos, allocatedBytes, completionAttributes);
+		}
+		if (parent == null) {
+			synchronized (activity) {
+				activity.ended = true;
+			}
+		}
+		activity.sink.activityNodeEnd(this, success, durationNanos, completionAttributes);
 		ThreadActivity.transition(this, parent);
 	}
 }
@@ -0,0 +1,86 @@
+package org.araqnid.stuff.activity;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Activities currently in progress, with the node each one's owning thread is working in.
+ * <p>
+ * Registering and unregistering an activity is one concurrent set update, and {@link ThreadActivity} keeps the
+ * current node up to date with a volatile write on each transition made by the owning thread, so there is no lock
+ * shared between requests and taking a snapshot does not block them.
+ */
+@Singleton
+public class ActivityRegistry {
+	private final Set<Activity> open = ConcurrentHashMap.newKeySet();
+
+	@Inject
+	public ActivityRegistry() {
+	}
+
+	/** Registers an activity as owned by the calling thread */
+	public void register(Activity activity) {
+		activity.owner = Thread.currentThread();
+		activity.current = activity.root;
+		open.add(activity);
+	}
+
+	public void unregister(Activity activity) {
+		open.remove(activity);
+	}
+
+	Set<Activity> activities() {
+		return open;
+	}
+
+	public int size() {
+		return open.size();
+	}
+
+	/** Open activities, oldest first */
+	public List<Entry> snapshot() {
+		List<Entry> entries = new ArrayList<>(open.size());
+		for (Activity activity : open) {
+			entries.add(new Entry(activity));
+		}
+		entries.sort(Comparator.comparingLong((Entry e) -> e.ageNanos).reversed());
+		return entries;
+	}
+
+	public static final class Entry {
+		public final UUID activityId;
+		public final String type;
+		@Nullable public final Object attributes;
+		public final Instant started;
+		public final long ageNanos;
+		/** Name of the thread working on the activity, or null if it is not currently attached to one */
+		@Nullable public final String threadName;
+		/** Types of the open nodes from the root down to the one currently being worked in */
+		public final List<String> nodes;
+
+		Entry(Activity activity) {
+			this.activityId = activity.id;
+			this.type = activity.root.type;
+			this.attributes = activity.root.nodeAttributes;
+			this.started = activity.root.started();
+			this.ageNanos = activity.root.elapsedNanos();
+			Thread owner = activity.owner;
+			this.threadName = owner != null ? owner.getName() : null;
+			List<String> nodes = new ArrayList<>();
+			for (ActivityNode node = activity.current; node != null; node = node.parent) {
+				nodes.add(node.type);
+			}
+			Collections.reverse(nodes);
+			this.nodes = nodes;
+		}
+	}
+}
@@ -0,0 +1,45 @@
+package org.araqnid.stuff.activity;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scheduled variant of {@link ActivityExecutorService}. Queue wait is measured from when each run was due, so a
+ * scheduled delay does not count as waiting.
+ * <p>
+ * Each run of a periodic task is a separate child node of the node that scheduled it.
+ */
+public class ActivityScheduledExecutorService extends ActivityExecutorService implements ScheduledExecutorService {
+	private final ScheduledExecutorService delegate;
+
+	public ActivityScheduledExecutorService(ScheduledExecutorService delegate, String nodeType) {
+		super(delegate, nodeType);
+		this.delegate = delegate;
+	}
+
+	@Override
+	public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+		return delegate.schedule(ActivityTask.wrap(command, nodeType, unit.toNanos(delay)), delay, unit);
+	}
+
+	@Override
+	public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+		return delegate.schedule(ActivityTask.wrap(callable, nodeType, unit.toNanos(delay)), delay, unit);
+	}
+
+	@Override
+	public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+		return delegate.scheduleAtFixedRate(
+				ActivityTask.wrapFixedRate(command, nodeType, unit.toNanos(initialDelay), unit.toNanos(period)),
+				initialDelay, period, unit);
+	}
+
+	@Override
+	public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+		return delegate.scheduleWithFixedDelay(
+				ActivityTask.wrapFixedDelay(command, nodeType, unit.toNanos(initialDelay), unit.toNanos(delay)),
+				initialDelay, delay, unit);
+	}
+}
@@ -0,0 +1,22 @@
+package org.araqnid.stuff.activity;
+
+import java.time.Instant;
+import java.util.UUID;
+import javax.annotation.Nullable;
+
+/**
+ * Event sink that can also record a completed node as a single span, carrying both its start and end details.
+ *
+ * @see SpanActivityEventSink
+ */
+public interface ActivitySpanSink extends ActivityEventSink {
+	void activityNodeSpan(UUID activityId,
+			long nodeId,
+			long nodeParentId,
+			String type,
+			Instant started,
+			boolean success,
+			long durationNanos,
+			@Nullable Object startAttributes,
+			@Nullable Object endAttributes);
+}
@@ -0,0 +1,108 @@
+package org.araqnid.stuff.activity;
+
+import java.util.concurrent.Callable;
+import java.util.function.Supplier;
+
+/**
+ * Wraps work handed to another thread so that it runs as a child node of the submitting thread's current activity
+ * node, with the time it spent waiting to be run recorded as the child's "queueWaitNanos" attribute.
+ * <p>
+ * Work submitted from a thread with no current activity is returned unwrapped. Work run on a thread that already has
+ * an activity attached (such as by a caller-runs policy) is not reattached.
+ */
+final class ActivityTask {
+	static Runnable wrap(Runnable task, String type) {
+		return wrap(task, type, 0L);
+	}
+
+	static Runnable wrap(Runnable task, String type, long delayNanos) {
+		ActivityNode parent = ThreadActivity.current().orElse(null);
+		if (parent == null) return task;
+		long due = parent.activity.timing.ticks() + delayNanos;
+		return () -> run(parent, type, due, task);
+	}
+
+	static <T> Callable<T> wrap(Callable<T> task, String type) {
+		return wrap(task, type, 0L);
+	}
+
+	static <T> Callable<T> wrap(Callable<T> task, String type, long delayNanos) {
+		ActivityNode parent = ThreadActivity.current().orElse(null);
+		if (parent == null) return task;
+		long due = parent.activity.timing.ticks() + delayNanos;
+		return () -> call(parent, type, due, task);
+	}
+
+	static Runnable wrapFixedRate(Runnable task, String type, long initialDelayNanos, long periodNanos) {
+		ActivityNode parent = ThreadActivity.current().orElse(null);
+		if (parent == null) return task;
+		return new Runnable() {
+			private long due = parent.activity.timing.ticks() + initialDelayNanos;
+
+			@Override
+			public void run() {
+				try {
+					ActivityTask.run(parent, type, due, task);
+				} finally {
+					due += periodNanos;
+				}
+			}
+		};
+	}
+
+	static Runnable wrapFixedDelay(Runnable task, String type, long initialDelayNanos, long delayNanos) {
+		ActivityNode parent = ThreadActivity.current().orElse(null);
+		if (parent == null) return task;
+		return new Runnable() {
+			private long due = parent.activity.timing.ticks() + initialDelayNanos;
+
+			@Override
+			public void run() {
+				try {
+					ActivityTask.run(parent, type, due, task);
+				} finally {
+					due = parent.activity.timing.ticks() + delayNanos;
+				}
+			}
+		};
+	}
+
+	static <T> Supplier<T> wrapSupplier(Supplier<T> task, String type) {
+		ActivityNode parent = ThreadActivity.current().orElse(null);
+		if (parent == null) return task;
+		long due = parent.activity.timing.ticks();
+		return () -> get(parent, type, due, task);
+	}
+
+	static void run(ActivityNode parent, String type, long due, Runnable task) {
+		get(parent, type, due, () -> {
+			task.run();
+			return null;
+		});
+	}
+
+	static <T> T get(ActivityNode parent, String type, long due, Supplier<T> task) {
+		try {
+			return call(parent, type, due, task::get);
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	static <T> T call(ActivityNode parent, String type, long due, Callable<T> task) throws Exception {
+		long queueWaitNanos = Math.max(0L, parent.activity.timing.ticks() - due);
+		boolean detached = !ThreadActivity.current().isPresent();
+		try (ThreadActivity.Scoper scope = detached ? ThreadActivity.reattach(parent) : null;
+				Completable.Rec<ActivityNode> rec = parent.recordActivity(type,
+						new ActivityAttributes(1).with("queueWaitNanos", queueWaitNanos))) {
+			T result = task.call();
+			rec.markSuccess();
+			return result;
+		}
+	}
+
+	private ActivityTask() {
+	}
+}
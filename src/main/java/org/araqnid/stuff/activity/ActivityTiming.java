@@ -0,0 +1,53 @@
+package org.araqnid.stuff.activity;
+
+import java.time.Clock;
+import java.time.Instant;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+
+/**
+ * How activity nodes record when they started.
+ * <p>
+ * Durations are always measured with the ticker. In per-node mode, every node also reads the clock for its start
+ * time. In monotonic mode only the activity reads the clock, and each node's start time is derived from that anchor
+ * and the ticker, so creating a node reads the ticker once and allocates nothing for timing.
+ */
+public final class ActivityTiming {
+	public static final ActivityTiming DEFAULT = perNode(Clock.systemUTC());
+
+	private final Clock clock;
+	private final Ticker ticker;
+	private final boolean monotonic;
+
+	private ActivityTiming(Clock clock, Ticker ticker, boolean monotonic) {
+		this.clock = clock;
+		this.ticker = ticker;
+		this.monotonic = monotonic;
+	}
+
+	public static ActivityTiming perNode(Clock clock) {
+		return new ActivityTiming(clock, Ticker.systemTicker(), false);
+	}
+
+	public static ActivityTiming monotonic(Clock clock) {
+		return monotonic(clock, Ticker.systemTicker());
+	}
+
+	@VisibleForTesting
+	static ActivityTiming monotonic(Clock clock, Ticker ticker) {
+		return new ActivityTiming(clock, ticker, true);
+	}
+
+	public boolean isMonotonic() {
+		return monotonic;
+	}
+
+	long ticks() {
+		return ticker.read();
+	}
+
+	Instant now() {
+		return clock.instant();
+	}
+}
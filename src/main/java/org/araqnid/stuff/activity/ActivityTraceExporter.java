@@ -0,0 +1,436 @@
+package org.araqnid.stuff.activity;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import javax.annotation.Nullable;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes completed activity nodes to rolling local files that standard trace viewers and tools can read directly,
+ * without a collector.
+ * <p>
+ * {@link Format#CHROME} files use the Chrome trace-event JSON array format, with each node as a complete ("X") event
+ * and one track per activity, and open in chrome://tracing or Perfetto. The array is only terminated when the file
+ * is rolled or closed, but those viewers accept a file that is still being written. {@link Format#OTLP} files hold
+ * one OTLP/JSON ExportTraceServiceRequest per line, as written by the OpenTelemetry collector's file exporter, with
+ * the activity ID as the trace ID. Node IDs are only unique within a process, so span IDs are node IDs mixed with the
+ * instance ID, and a remote parent is mapped with the caller's instance ID when the caller sent it.
+ * <p>
+ * Start events are held until their node ends. Encoded events are collected in a buffer and written to the current
+ * file once it passes the flush threshold, or when this sink is flushed. A new file is started when the current one
+ * is larger or older than the limits, and the oldest files are deleted once there are more than the retention limit.
+ */
+public class ActivityTraceExporter implements ActivityEventSink, Flushable, Closeable {
+	private static final Logger LOG = LoggerFactory.getLogger(ActivityTraceExporter.class);
+	private static final int FLUSH_THRESHOLD = 65536;
+	private static final int MAX_OPEN_NODES = 100000;
+	private static final int OTLP_SPAN_KIND_INTERNAL = 1;
+	private static final int OTLP_STATUS_OK = 1;
+	private static final int OTLP_STATUS_ERROR = 2;
+
+	public enum Format {
+		CHROME("trace-", ".json"),
+		OTLP("spans-", ".jsonl");
+
+		final String prefix;
+		final String suffix;
+
+		Format(String prefix, String suffix) {
+			this.prefix = prefix;
+			this.suffix = suffix;
+		}
+	}
+
+	private static final byte[] CHROME_HEADER = ascii("[{\"name\":\"process_name\",\"ph\":\"M\",\"pid\":1,\"args\":{\"name\":");
+	private static final byte[] CHROME_NAME = ascii(",\n{\"name\":");
+	private static final byte[] CHROME_COMPLETE = ascii(",\"cat\":\"activity\",\"ph\":\"X\",\"pid\":1,\"tid\":");
+	private static final byte[] CHROME_TS = ascii(",\"ts\":");
+	private static final byte[] CHROME_DUR = ascii(",\"dur\":");
+	private static final byte[] CHROME_ARGS = ascii(",\"args\":{\"activityId\":");
+	private static final byte[] CHROME_THREAD_NAME = ascii(",\n{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":");
+	private static final byte[] CHROME_THREAD_NAME_ARGS = ascii(",\"args\":{\"name\":");
+	private static final byte[] CHROME_FOOTER = ascii("\n]\n");
+	private static final byte[] OTLP_BATCH_START = ascii("{\"resourceSpans\":[{\"resource\":{\"attributes\":[");
+	private static final byte[] OTLP_SCOPE = ascii("]},\"scopeSpans\":[{\"scope\":{\"name\":\"org.araqnid.stuff.activity\"},\"spans\":[");
+	private static final byte[] OTLP_BATCH_END = ascii("]}]}]}\n");
+	private static final byte[] OTLP_TRACE_ID = ascii("{\"traceId\":");
+	private static final byte[] OTLP_SPAN_ID = ascii(",\"spanId\":");
+	private static final byte[] OTLP_PARENT_SPAN_ID = ascii(",\"parentSpanId\":");
+	private static final byte[] OTLP_NAME = ascii(",\"name\":");
+	private static final byte[] OTLP_KIND = ascii(",\"kind\":");
+	private static final byte[] OTLP_START = ascii(",\"startTimeUnixNano\":\"");
+	private static final byte[] OTLP_END = ascii("\",\"endTimeUnixNano\":\"");
+	private static final byte[] OTLP_ATTRIBUTES = ascii("\",\"attributes\":[");
+	private static final byte[] OTLP_STATUS = ascii("],\"status\":{\"code\":");
+	private static final byte[] OTLP_KEY = ascii("{\"key\":");
+	private static final byte[] OTLP_STRING_VALUE = ascii(",\"value\":{\"stringValue\":");
+	private static final byte[] OTLP_INT_VALUE = ascii(",\"value\":{\"intValue\":\"");
+	private static final byte[] OTLP_INT_VALUE_END = ascii("\"}}");
+	private static final byte[] OTLP_BOOL_VALUE = ascii(",\"value\":{\"boolValue\":");
+	private static final byte[] NODE_ID = ascii(",\"nodeId\":");
+	private static final byte[] NODE_PARENT_ID = ascii(",\"nodeParentId\":");
+	private static final byte[] SUCCESS = ascii(",\"success\":");
+	private static final byte[] ATTRIBUTES = ascii(",\"attributes\":");
+	private static final byte[] END_ATTRIBUTES = ascii(",\"endAttributes\":");
+	private static final byte[] EVENT_END = ascii("}}");
+
+	private final Path directory;
+	private final Format format;
+	private final String serviceName;
+	private final UUID instanceId;
+	private final long maxFileSize;
+	private final long maxFileAgeMillis;
+	private final int maxFiles;
+	private final ObjectMapper mapper;
+	private final Clock clock;
+	private final JsonEventBuffer buffer = new JsonEventBuffer(FLUSH_THRESHOLD * 2);
+	private final Map<Long, OpenNode> openNodes = new LinkedHashMap<Long, OpenNode>() {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, OpenNode> eldest) {
+			return size() > MAX_OPEN_NODES;
+		}
+	};
+	private JsonGenerator generator;
+	private long nextFileSequence;
+	private FileChannel file;
+	private long fileCreated;
+	private long fileSize;
+	private int batchSpans;
+	private long discarded;
+
+	public ActivityTraceExporter(Path directory,
+			Format format,
+			String serviceName,
+			UUID instanceId,
+			long maxFileSize,
+			Duration maxFileAge,
+			int maxFiles,
+			ObjectMapper mapper,
+			Clock clock) throws IOException {
+		Preconditions.checkArgument(maxFiles > 0, "must retain at least one file");
+		this.directory = directory;
+		this.format = format;
+		this.serviceName = serviceName;
+		this.instanceId = instanceId;
+		this.maxFileSize = maxFileSize;
+		this.maxFileAgeMillis = maxFileAge.toMillis();
+		this.maxFiles = maxFiles;
+		this.mapper = mapper;
+		this.clock = clock;
+		Files.createDirectories(directory);
+		List<Path> existing = files(directory, format);
+		this.nextFileSequence = existing.isEmpty() ? 0 : fileSequence(existing.get(existing.size() - 1), format) + 1;
+	}
+
+	@Override
+	public synchronized void activityNodeStart(UUID activityId,
+			long nodeId,
+			long nodeParentId,
+			String type,
+			Instant started,
+			@Nullable Object attributes) {
+		OpenNode parent = openNodes.get(nodeParentId);
+		long rootNodeId = nodeParentId == ActivityNode.NO_PARENT ? nodeId : parent != null ? parent.rootNodeId : nodeParentId;
+		openNodes.put(nodeId, new OpenNode(nodeParentId, rootNodeId, type, started, attributes));
+	}
+
+	@Override
+	public synchronized void activityNodeEnd(UUID activityId,
+			long nodeId,
+			boolean success,
+			long durationNanos,
+			@Nullable Object attributes) {
+		OpenNode node = openNodes.remove(nodeId);
+		if (node == null) {
+			++discarded;
+			return;
+		}
+		switch (format) {
+		case CHROME:
+			chromeEvent(activityId, nodeId, node, success, durationNanos, attributes);
+			break;
+		case OTLP:
+			otlpSpan(activityId, nodeId, node, success, durationNanos, attributes);
+			break;
+		}
+		if (buffer.size() > FLUSH_THRESHOLD) {
+			try {
+				write();
+			} catch (IOException e) {
+				LOG.warn("Failed to write activity trace file", e);
+			}
+		}
+	}
+
+	/** Number of end events dropped because their start had not been seen */
+	public synchronized long getDiscardedCount() {
+		return discarded;
+	}
+
+	@Override
+	public synchronized void flush() throws IOException {
+		if (buffer.size() > 0) {
+			write();
+		}
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			closeFile();
+		}
+	}
+
+	private void chromeEvent(UUID activityId,
+			long nodeId,
+			OpenNode node,
+			boolean success,
+			long durationNanos,
+			@Nullable Object endAttributes) {
+		long startMicros = node.started.getEpochSecond() * 1_000_000L + node.started.getNano() / 1000;
+		buffer.raw(CHROME_NAME).string(node.type)
+				.raw(CHROME_COMPLETE).number(node.rootNodeId)
+				.raw(CHROME_TS).number(startMicros)
+				.raw(CHROME_DUR).number(durationNanos / 1000)
+				.raw(CHROME_ARGS).uuid(activityId)
+				.raw(NODE_ID).number(nodeId);
+		if (node.nodeParentId != ActivityNode.NO_PARENT) {
+			buffer.raw(NODE_PARENT_ID).number(node.nodeParentId);
+		}
+		buffer.raw(SUCCESS).bool(success);
+		if (node.attributes != null) {
+			buffer.raw(ATTRIBUTES);
+			attributesJson(node.attributes);
+		}
+		if (endAttributes != null) {
+			buffer.raw(END_ATTRIBUTES);
+			attributesJson(endAttributes);
+		}
+		buffer.raw(EVENT_END);
+		if (nodeId == node.rootNodeId) {
+			buffer.raw(CHROME_THREAD_NAME).number(nodeId)
+					.raw(CHROME_THREAD_NAME_ARGS).string(node.type + " " + activityId)
+					.raw(EVENT_END);
+		}
+	}
+
+	private void otlpSpan(UUID activityId,
+			long nodeId,
+			OpenNode node,
+			boolean success,
+			long durationNanos,
+			@Nullable Object endAttributes) {
+		if (batchSpans++ == 0) {
+			buffer.raw(OTLP_BATCH_START);
+			otlpAttribute(true, "service.name", serviceName);
+			otlpAttribute(false, "service.instance.id", instanceId.toString());
+			buffer.raw(OTLP_SCOPE);
+		}
+		else {
+			buffer.write(',');
+		}
+		long startNanos = node.started.getEpochSecond() * 1_000_000_000L + node.started.getNano();
+		buffer.raw(OTLP_TRACE_ID).hex(activityId)
+				.raw(OTLP_SPAN_ID).hex(spanId(instanceId, nodeId));
+		long parentSpanId = node.nodeParentId != ActivityNode.NO_PARENT ? spanId(instanceId, node.nodeParentId) : 0;
+		if (node.nodeParentId == ActivityNode.NO_PARENT && node.attributes instanceof ActivityAttributes) {
+			Object remoteParent = ((ActivityAttributes) node.attributes).get("remote_parent");
+			Object remoteInstance = ((ActivityAttributes) node.attributes).get("remote_instance");
+			if (remoteParent instanceof Long) {
+				parentSpanId = remoteInstance instanceof String
+						? spanId(UUID.fromString((String) remoteInstance), (Long) remoteParent) : (Long) remoteParent;
+			}
+		}
+		if (parentSpanId != 0) {
+			buffer.raw(OTLP_PARENT_SPAN_ID).hex(parentSpanId);
+		}
+		buffer.raw(OTLP_NAME).string(node.type)
+				.raw(OTLP_KIND).number(OTLP_SPAN_KIND_INTERNAL)
+				.raw(OTLP_START).number(startNanos)
+				.raw(OTLP_END).number(startNanos + durationNanos)
+				.raw(OTLP_ATTRIBUTES);
+		boolean first = otlpAttributes(true, "attributes", node.attributes);
+		otlpAttributes(first, "end_attributes", endAttributes);
+		buffer.raw(OTLP_STATUS).number(success ? OTLP_STATUS_OK : OTLP_STATUS_ERROR).raw(EVENT_END);
+	}
+
+	private boolean otlpAttributes(boolean first, String name, @Nullable Object attributes) {
+		if (attributes == null) return first;
+		if (!(attributes instanceof ActivityAttributes)) {
+			try {
+				otlpAttribute(first, name, mapper.writeValueAsString(attributes));
+				return false;
+			} catch (IOException | RuntimeException e) {
+				LOG.warn("Failed to serialise activity attributes", e);
+				return first;
+			}
+		}
+		ActivityAttributes activityAttributes = (ActivityAttributes) attributes;
+		for (int i = 0; i < activityAttributes.size(); i++) {
+			Object value = activityAttributes.value(i);
+			if (value == null) continue;
+			if (!first) buffer.write(',');
+			first = false;
+			buffer.raw(OTLP_KEY).string(activityAttributes.key(i));
+			if (value instanceof Boolean) {
+				buffer.raw(OTLP_BOOL_VALUE).bool((Boolean) value).raw(EVENT_END);
+			}
+			else if (value instanceof Number) {
+				buffer.raw(OTLP_INT_VALUE).number(((Number) value).longValue()).raw(OTLP_INT_VALUE_END);
+			}
+			else {
+				buffer.raw(OTLP_STRING_VALUE).string(value.toString()).raw(EVENT_END);
+			}
+		}
+		return first;
+	}
+
+	private void otlpAttribute(boolean first, String key, String value) {
+		if (!first) buffer.write(',');
+		buffer.raw(OTLP_KEY).string(key).raw(OTLP_STRING_VALUE).string(value).raw(EVENT_END);
+	}
+
+	private void attributesJson(Object attributes) {
+		if (attributes instanceof ActivityAttributes) {
+			((ActivityAttributes) attributes).writeTo(buffer);
+			return;
+		}
+		int mark = buffer.size();
+		try {
+			if (generator == null) {
+				generator = mapper.getFactory().createGenerator(buffer);
+				generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+				generator.setRootValueSeparator(null);
+			}
+			mapper.writeValue(generator, attributes);
+			generator.flush();
+		} catch (IOException | RuntimeException e) {
+			LOG.warn("Failed to serialise activity attributes", e);
+			generator = null;
+			buffer.truncate(mark);
+			buffer.nullValue();
+		}
+	}
+
+	private void write() throws IOException {
+		try {
+			if (batchSpans > 0) {
+				buffer.raw(OTLP_BATCH_END);
+				batchSpans = 0;
+			}
+			if (file == null || fileSize >= maxFileSize || clock.millis() - fileCreated >= maxFileAgeMillis) {
+				roll();
+			}
+			fileSize += writeFully(buffer.contents());
+		} finally {
+			buffer.reset();
+		}
+	}
+
+	private void roll() throws IOException {
+		closeFile();
+		long sequence = nextFileSequence++;
+		file = FileChannel.open(directory.resolve(fileName(sequence, format)), StandardOpenOption.CREATE_NEW,
+				StandardOpenOption.WRITE);
+		fileCreated = clock.millis();
+		fileSize = 0;
+		if (format == Format.CHROME) {
+			JsonEventBuffer header = new JsonEventBuffer(256)
+					.raw(CHROME_HEADER).string(serviceName + " " + instanceId)
+					.raw(EVENT_END);
+			fileSize += writeFully(header.contents());
+		}
+		List<Path> existing = files(directory, format);
+		for (int i = 0; i < existing.size() - maxFiles; i++) {
+			Files.deleteIfExists(existing.get(i));
+		}
+	}
+
+	private void closeFile() throws IOException {
+		if (file == null) return;
+		try {
+			if (format == Format.CHROME) {
+				writeFully(ByteBuffer.wrap(CHROME_FOOTER));
+			}
+		} finally {
+			file.close();
+			file = null;
+		}
+	}
+
+	private int writeFully(ByteBuffer contents) throws IOException {
+		int length = contents.remaining();
+		while (contents.hasRemaining()) {
+			file.write(contents);
+		}
+		return length;
+	}
+
+	/** Span ID of a node in the given process: distinct from the node's ID in any other process, and never zero */
+	static long spanId(UUID instanceId, long nodeId) {
+		return nodeId ^ (instanceId.getMostSignificantBits() ^ instanceId.getLeastSignificantBits() | Long.MIN_VALUE);
+	}
+
+	static String fileName(long sequence, Format format) {
+		return String.format("%s%016x%s", format.prefix, sequence, format.suffix);
+	}
+
+	static long fileSequence(Path path, Format format) {
+		String name = path.getFileName().toString();
+		return Long.parseUnsignedLong(name.substring(format.prefix.length(), name.length() - format.suffix.length()), 16);
+	}
+
+	static List<Path> files(Path directory, Format format) throws IOException {
+		List<Path> files = new ArrayList<>();
+		if (!Files.isDirectory(directory)) return files;
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, format.prefix + "*" + format.suffix)) {
+			stream.forEach(files::add);
+		}
+		Collections.sort(files);
+		return files;
+	}
+
+	private static final class OpenNode {
+		final long nodeParentId;
+		final long rootNodeId;
+		final String type;
+		final Instant started;
+		@Nullable final Object attributes;
+
+		OpenNode(long nodeParentId, long rootNodeId, String type, Instant started, @Nullable Object attributes) {
+			this.nodeParentId = nodeParentId;
+			this.rootNodeId = rootNodeId;
+			this.type = type;
+			this.started = started;
+			this.attributes = attributes;
+		}
+	}
+
+	private static byte[] ascii(String str) {
+		return str.getBytes(StandardCharsets.US_ASCII);
+	}
+}
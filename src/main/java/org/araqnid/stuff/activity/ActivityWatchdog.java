@@ -0,0 +1,104 @@
+package org.araqnid.stuff.activity;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.util.concurrent.AbstractScheduledService;
+import com.google.common.util.concurrent.RateLimiter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Periodically looks for activities that have been running for longer than a threshold, and samples the stack of
+ * the thread working on each one a few times, on successive scans.
+ * <p>
+ * Each sample is reported through the activity's event sink as a zero-length "StuckThread" child of the node the
+ * thread was in, with the thread name, activity age and stack frames (one per line) as attributes. Stack captures
+ * across all activities are rate-limited, as each one briefly stops the target thread. A sample is only reported if
+ * the activity is still registered and its root has not ended, checked while holding the activity's lock, which the
+ * root also takes before reporting its end; so a sample never follows the end of its root.
+ */
+public class ActivityWatchdog extends AbstractScheduledService {
+	private static final Logger LOG = LoggerFactory.getLogger(ActivityWatchdog.class);
+	static final String NODE_TYPE = "StuckThread";
+
+	private final ActivityRegistry registry;
+	private final long thresholdNanos;
+	private final Duration interval;
+	private final int maxSamples;
+	private final RateLimiter captureRate;
+	private final Map<Activity, Integer> sampled = new HashMap<>();
+
+	public ActivityWatchdog(ActivityRegistry registry,
+			Duration threshold,
+			Duration interval,
+			int maxSamples,
+			double capturesPerSecond) {
+		this.registry = registry;
+		this.thresholdNanos = threshold.toNanos();
+		this.interval = interval;
+		this.maxSamples = maxSamples;
+		this.captureRate = RateLimiter.create(capturesPerSecond);
+	}
+
+	@Override
+	protected void runOneIteration() {
+		try {
+			scan();
+		} catch (RuntimeException e) {
+			LOG.warn("Failed to scan in-flight activities", e);
+		}
+	}
+
+	void scan() {
+		sampled.keySet().retainAll(registry.activities());
+		for (Activity activity : registry.activities()) {
+			long ageNanos = activity.root.elapsedNanos();
+			if (ageNanos < thresholdNanos) continue;
+			int samples = sampled.getOrDefault(activity, 0);
+			if (samples >= maxSamples) continue;
+			Thread owner = activity.owner;
+			ActivityNode current = activity.current;
+			if (owner == null || current == null || !captureRate.tryAcquire()) continue;
+			StackTraceElement[] stack = owner.getStackTrace();
+			synchronized (activity) {
+				if (activity.ended || activity.owner != owner || !registry.activities().contains(activity)) continue;
+				sampled.put(activity, samples + 1);
+				report(activity, current, owner, ageNanos, samples + 1, stack);
+			}
+		}
+	}
+
+	private static void report(Activity activity,
+			ActivityNode current,
+			Thread owner,
+			long ageNanos,
+			int sample,
+			StackTraceElement[] stack) {
+		StringBuilder frames = new StringBuilder();
+		for (StackTraceElement element : stack) {
+			if (frames.length() > 0) frames.append('\n');
+			frames.append(element);
+		}
+		long nodeId = activity.nodeIds.next();
+		activity.sink.activityNodeStart(activity.id, nodeId, current.id, NODE_TYPE, activity.timing.now(),
+				new ActivityAttributes(4).with("thread", owner.getName())
+						.with("age_millis", TimeUnit.NANOSECONDS.toMillis(ageNanos))
+						.with("sample", sample)
+						.with("stack", frames.toString()));
+		activity.sink.activityNodeEnd(activity.id, nodeId, true, 0L, null);
+	}
+
+	@Override
+	protected Scheduler scheduler() {
+		long millis = interval.toMillis();
+		return Scheduler.newFixedDelaySchedule(millis, millis, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	protected String serviceName() {
+		return "activity-watchdog";
+	}
+}
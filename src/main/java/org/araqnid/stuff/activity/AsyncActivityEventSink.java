@@ -0,0 +1,283 @@
+package org.araqnid.stuff.activity;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import javax.annotation.Nullable;
+
+import com.google.common.base.Preconditions;
+import com.google.common.math.IntMath;
+import com.google.common.util.concurrent.AbstractExecutionThreadService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decouples activity event delivery from the thread that produced the event.
+ * <p>
+ * Events are copied into a preallocated ring of slots by any number of producer threads, and delivered to the
+ * underlying sink in batches by a single consumer thread, which runs while this service is running. If the
+ * underlying sink is {@link Flushable} it is flushed at the end of each batch and about once a second while idle,
+ * and if it is {@link AutoCloseable} it is closed when this service stops.
+ */
+public class AsyncActivityEventSink extends AbstractExecutionThreadService implements ActivityEventSink {
+	private static final Logger LOG = LoggerFactory.getLogger(AsyncActivityEventSink.class);
+	private static final int MAX_BATCH = 256;
+	private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+	private static final long BLOCKED_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+	private static final long DROP_REPORT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+	private static final long IDLE_FLUSH_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+	public enum OverflowPolicy {
+		/** Wait for the consumer to make space */
+		BLOCK,
+		/** Discard the event and count it */
+		DROP,
+		/** Wait for space for a sample of activities (chosen by activity ID), discard events for the others */
+		SAMPLE
+	}
+
+	private final String name;
+	private final ActivityEventSink delegate;
+	private final OverflowPolicy overflowPolicy;
+	private final int sampleRate;
+	private final Slot[] slots;
+	private final int mask;
+	private final AtomicLong nextClaim = new AtomicLong();
+	private final AtomicLong consumed = new AtomicLong();
+	private final LongAdder dropped = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+	private long lastReportedDrops;
+	private long lastDropReport = System.nanoTime();
+	private long lastFlush = System.nanoTime();
+
+	public AsyncActivityEventSink(ActivityEventSink delegate, int capacity, OverflowPolicy overflowPolicy, int sampleRate) {
+		this("activity-events", delegate, capacity, overflowPolicy, sampleRate);
+	}
+
+	public AsyncActivityEventSink(String name,
+			ActivityEventSink delegate,
+			int capacity,
+			OverflowPolicy overflowPolicy,
+			int sampleRate) {
+		Preconditions.checkArgument(capacity > 0, "capacity must be positive: %s", capacity);
+		Preconditions.checkArgument(sampleRate > 0, "sample rate must be positive: %s", sampleRate);
+		this.name = name;
+		this.delegate = delegate;
+		this.overflowPolicy = overflowPolicy;
+		this.sampleRate = sampleRate;
+		int size = IntMath.ceilingPowerOfTwo(capacity);
+		this.slots = new Slot[size];
+		for (int i = 0; i < size; i++) {
+			slots[i] = new Slot(i - size);
+		}
+		this.mask = size - 1;
+	}
+
+	@Override
+	public void activityNodeStart(UUID activityId,
+			long nodeId,
+			long nodeParentId,
+			String type,
+			Instant started,
+			@Nullable Object attributes) {
+		long sequence = claim(activityId);
+		if (sequence < 0) return;
+		Slot slot = slots[(int) sequence & mask];
+		slot.kind = Slot.START;
+		slot.activityId = activityId;
+		slot.nodeId = nodeId;
+		slot.nodeParentId = nodeParentId;
+		slot.type = type;
+		slot.started = started;
+		slot.attributes = attributes;
+		slot.published = sequence;
+	}
+
+	@Override
+	public void activityNodeEnd(UUID activityId, long nodeId, boolean success, long durationNanos, @Nullable Object attributes) {
+		long sequence = claim(activityId);
+		if (sequence < 0) return;
+		Slot slot = slots[(int) sequence & mask];
+		slot.kind = Slot.END;
+		slot.activityId = activityId;
+		slot.nodeId = nodeId;
+		slot.success = success;
+		slot.durationNanos = durationNanos;
+		slot.attributes = attributes;
+		slot.published = sequence;
+	}
+
+	public int getCapacity() {
+		return slots.length;
+	}
+
+	public long getQueueDepth() {
+		return Math.max(0, nextClaim.get() - consumed.get());
+	}
+
+	public long getDeliveredCount() {
+		return consumed.get();
+	}
+
+	public long getDroppedCount() {
+		return dropped.sum();
+	}
+
+	public long getFailedCount() {
+		return failed.sum();
+	}
+
+	public OverflowPolicy getOverflowPolicy() {
+		return overflowPolicy;
+	}
+
+	private long claim(UUID activityId) {
+		while (true) {
+			long sequence = nextClaim.get();
+			if (sequence - consumed.get() >= slots.length) {
+				if (!waitForSpace(activityId, sequence)) {
+					dropped.increment();
+					return -1;
+				}
+			}
+			else if (nextClaim.compareAndSet(sequence, sequence + 1)) {
+				return sequence;
+			}
+		}
+	}
+
+	private boolean waitForSpace(UUID activityId, long sequence) {
+		switch (overflowPolicy) {
+		case DROP:
+			return false;
+		case SAMPLE:
+			if ((activityId.getLeastSignificantBits() & Long.MAX_VALUE) % sampleRate != 0) return false;
+			break;
+		case BLOCK:
+			break;
+		}
+		if (!isRunning()) return false;
+		while (sequence - consumed.get() >= slots.length) {
+			if (!isRunning()) return false;
+			LockSupport.parkNanos(BLOCKED_PARK_NANOS);
+		}
+		return true;
+	}
+
+	@Override
+	protected void run() throws Exception {
+		while (isRunning()) {
+			if (drainBatch() == 0) {
+				if (System.nanoTime() - lastFlush >= IDLE_FLUSH_INTERVAL_NANOS) {
+					flushDelegate();
+				}
+				LockSupport.parkNanos(IDLE_PARK_NANOS);
+			}
+			reportDrops(false);
+		}
+	}
+
+	@Override
+	protected void shutDown() throws Exception {
+		while (drainBatch() > 0) {
+		}
+		reportDrops(true);
+		if (delegate instanceof AutoCloseable) {
+			((AutoCloseable) delegate).close();
+		}
+	}
+
+	private int drainBatch() {
+		long sequence = consumed.get();
+		int count = 0;
+		while (count < MAX_BATCH) {
+			Slot slot = slots[(int) sequence & mask];
+			if (slot.published != sequence) break;
+			deliver(slot);
+			++sequence;
+			++count;
+			consumed.lazySet(sequence);
+		}
+		if (count > 0) {
+			flushDelegate();
+		}
+		return count;
+	}
+
+	private void flushDelegate() {
+		lastFlush = System.nanoTime();
+		if (!(delegate instanceof Flushable)) return;
+		try {
+			((Flushable) delegate).flush();
+		} catch (IOException | RuntimeException e) {
+			failed.increment();
+			LOG.warn("Failed to flush activity events", e);
+		}
+	}
+
+	private void deliver(Slot slot) {
+		try {
+			if (slot.kind == Slot.START) {
+				delegate.activityNodeStart(slot.activityId, slot.nodeId, slot.nodeParentId, slot.type, slot.started,
+						slot.attributes);
+			}
+			else {
+				delegate.activityNodeEnd(slot.activityId, slot.nodeId, slot.success, slot.durationNanos, slot.attributes);
+			}
+		} catch (RuntimeException e) {
+			failed.increment();
+			LOG.warn("Failed to deliver activity event", e);
+		} finally {
+			slot.clear();
+		}
+	}
+
+	private void reportDrops(boolean force) {
+		long now = System.nanoTime();
+		if (!force && now - lastDropReport < DROP_REPORT_INTERVAL_NANOS) return;
+		long drops = dropped.sum();
+		if (drops != lastReportedDrops) {
+			LOG.warn("{}: dropped {} activity events ({} in total)", name, drops - lastReportedDrops, drops);
+			lastReportedDrops = drops;
+		}
+		lastDropReport = now;
+	}
+
+	@Override
+	protected String serviceName() {
+		return name;
+	}
+
+	private static final class Slot {
+		static final byte START = 1;
+		static final byte END = 2;
+
+		volatile long published;
+		byte kind;
+		UUID activityId;
+		long nodeId;
+		long nodeParentId;
+		String type;
+		Instant started;
+		boolean success;
+		long durationNanos;
+		Object attributes;
+
+		Slot(long published) {
+			this.published = published;
+		}
+
+		void clear() {
+			activityId = null;
+			type = null;
+			started = null;
+			durationNanos = 0;
+			attributes = null;
+		}
+	}
+}
@@ -0,0 +1,237 @@
+package org.araqnid.stuff.activity;
+
+import java.io.Closeable;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.UUID;
+import javax.annotation.Nullable;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes activity events and spans as JSON lines, encoding the fixed fields directly into a reusable per-thread buffer
+ * and only using Jackson for the free-form attributes.
+ * <p>
+ * Every line has "@type" ("start", "end" or "span"), "instanceId", "activityId", "nodeId" and "attributes". Start and
+ * span lines add "nodeParentId" (left out for root nodes), "node_type" and "started"; end and span lines add "success"
+ * and "duration"; span lines add "endAttributes" when there are any. IDs, instants and durations are written as
+ * strings, in the form of their {@code toString()}. {@link LogActivityJsonEvents} writes the same fields in the same
+ * form when given the mapper bound in {@code AppModule}, except that it includes a zero "nodeParentId" for root nodes.
+ * <p>
+ * Complete lines are written to the channel once a thread's buffer exceeds the flush threshold, or when
+ * {@link #flush()} or {@link #close()} is called from that thread. A threshold of zero writes each event as it is
+ * produced. Closing also closes the channel, except for standard output.
+ * <p>
+ * As buffers are per thread, lines held by any thread other than the one that flushes and closes are never written.
+ * Unless the threshold is zero, events must therefore all come from one thread, such as the consumer of an
+ * {@link AsyncActivityEventSink}.
+ */
+public class ChannelActivityJsonEvents implements ActivitySpanSink, Flushable, Closeable {
+	private static final Logger LOG = LoggerFactory.getLogger(ChannelActivityJsonEvents.class);
+	private static final byte[] START_PREFIX = ascii("{\"@type\":\"start\",\"instanceId\":");
+	private static final byte[] END_PREFIX = ascii("{\"@type\":\"end\",\"instanceId\":");
+	private static final byte[] SPAN_PREFIX = ascii("{\"@type\":\"span\",\"instanceId\":");
+	private static final byte[] ACTIVITY_ID = ascii(",\"activityId\":");
+	private static final byte[] NODE_ID = ascii(",\"nodeId\":");
+	private static final byte[] NODE_PARENT_ID = ascii(",\"nodeParentId\":");
+	private static final byte[] NODE_TYPE = ascii(",\"node_type\":");
+	private static final byte[] STARTED = ascii(",\"started\":");
+	private static final byte[] SUCCESS = ascii(",\"success\":");
+	private static final byte[] DURATION = ascii(",\"duration\":");
+	private static final byte[] ATTRIBUTES = ascii(",\"attributes\":");
+	private static final byte[] END_ATTRIBUTES = ascii(",\"endAttributes\":");
+	private static final byte[] LINE_END = ascii("}\n");
+
+	private final ObjectMapper mapper;
+	private final UUID instanceId;
+	private final WritableByteChannel channel;
+	private final int flushThreshold;
+	private final boolean closeChannel;
+	private final ThreadLocal<Encoder> encoders = ThreadLocal.withInitial(Encoder::new);
+
+	public ChannelActivityJsonEvents(ObjectMapper mapper, UUID instanceId, WritableByteChannel channel, int flushThreshold) {
+		this(mapper, instanceId, channel, flushThreshold, true);
+	}
+
+	private ChannelActivityJsonEvents(ObjectMapper mapper,
+			UUID instanceId,
+			WritableByteChannel channel,
+			int flushThreshold,
+			boolean closeChannel) {
+		this.mapper = mapper;
+		this.instanceId = instanceId;
+		this.channel = channel;
+		this.flushThreshold = flushThreshold;
+		this.closeChannel = closeChannel;
+	}
+
+	public static ChannelActivityJsonEvents toStandardOutput(ObjectMapper mapper, UUID instanceId, int flushThreshold) {
+		return new ChannelActivityJsonEvents(mapper, instanceId, new FileOutputStream(FileDescriptor.out).getChannel(),
+				flushThreshold, false);
+	}
+
+	public static ChannelActivityJsonEvents toFile(ObjectMapper mapper, UUID instanceId, Path path, int flushThreshold)
+			throws IOException {
+		return new ChannelActivityJsonEvents(mapper, instanceId, FileChannel.open(path, StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.APPEND), flushThreshold);
+	}
+
+	@Override
+	public void activityNodeStart(UUID activityId,
+			long nodeId,
+			long nodeParentId,
+			String type,
+			Instant started,
+			@Nullable Object attributes) {
+		Encoder encoder = encoders.get();
+		JsonEventBuffer buffer = encoder.buffer;
+		buffer.raw(START_PREFIX).uuid(instanceId)
+				.raw(ACTIVITY_ID).uuid(activityId)
+				.raw(NODE_ID).number(nodeId);
+		if (nodeParentId != ActivityNode.NO_PARENT) {
+			buffer.raw(NODE_PARENT_ID).number(nodeParentId);
+		}
+		buffer.raw(NODE_TYPE).string(type)
+				.raw(STARTED).instant(started)
+				.raw(ATTRIBUTES);
+		encoder.attributes(attributes);
+		buffer.raw(LINE_END);
+		lineComplete(encoder);
+	}
+
+	@Override
+	public void activityNodeEnd(UUID activityId, long nodeId, boolean success, long durationNanos, @Nullable Object attributes) {
+		Encoder encoder = encoders.get();
+		encoder.buffer.raw(END_PREFIX).uuid(instanceId)
+				.raw(ACTIVITY_ID).uuid(activityId)
+				.raw(NODE_ID).number(nodeId)
+				.raw(SUCCESS).bool(success)
+				.raw(DURATION).durationNanos(durationNanos)
+				.raw(ATTRIBUTES);
+		encoder.attributes(attributes);
+		encoder.buffer.raw(LINE_END);
+		lineComplete(encoder);
+	}
+
+	@Override
+	public void activityNodeSpan(UUID activityId,
+			long nodeId,
+			long nodeParentId,
+			String type,
+			Instant started,
+			boolean success,
+			long durationNanos,
+			@Nullable Object startAttributes,
+			@Nullable Object endAttributes) {
+		Encoder encoder = encoders.get();
+		JsonEventBuffer buffer = encoder.buffer;
+		buffer.raw(SPAN_PREFIX).uuid(instanceId)
+				.raw(ACTIVITY_ID).uuid(activityId)
+				.raw(NODE_ID).number(nodeId);
+		if (nodeParentId != ActivityNode.NO_PARENT) {
+			buffer.raw(NODE_PARENT_ID).number(nodeParentId);
+		}
+		buffer.raw(NODE_TYPE).string(type)
+				.raw(STARTED).instant(started)
+				.raw(SUCCESS).bool(success)
+				.raw(DURATION).durationNanos(durationNanos)
+				.raw(ATTRIBUTES);
+		encoder.attributes(startAttributes);
+		if (endAttributes != null) {
+			buffer.raw(END_ATTRIBUTES);
+			encoder.attributes(endAttributes);
+		}
+		buffer.raw(LINE_END);
+		lineComplete(encoder);
+	}
+
+	@Override
+	public void flush() throws IOException {
+		Encoder encoder = encoders.get();
+		if (encoder.buffer.size() > 0) {
+			write(encoder.buffer);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			if (closeChannel) {
+				synchronized (channel) {
+					channel.close();
+				}
+			}
+		}
+	}
+
+	private void lineComplete(Encoder encoder) {
+		if (encoder.buffer.size() <= flushThreshold) return;
+		try {
+			write(encoder.buffer);
+		} catch (IOException e) {
+			LOG.warn("Failed to write activity events", e);
+		}
+	}
+
+	private void write(JsonEventBuffer buffer) throws IOException {
+		try {
+			ByteBuffer contents = buffer.contents();
+			synchronized (channel) {
+				while (contents.hasRemaining()) {
+					channel.write(contents);
+				}
+			}
+		} finally {
+			buffer.reset();
+		}
+	}
+
+	private final class Encoder {
+		final JsonEventBuffer buffer = new JsonEventBuffer(Math.max(1024, flushThreshold * 2));
+		JsonGenerator generator;
+
+		void attributes(@Nullable Object attributes) {
+			if (attributes == null) {
+				buffer.nullValue();
+				return;
+			}
+			if (attributes instanceof ActivityAttributes) {
+				((ActivityAttributes) attributes).writeTo(buffer);
+				return;
+			}
+			int mark = buffer.size();
+			try {
+				if (generator == null) {
+					generator = mapper.getFactory().createGenerator(buffer);
+					generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+					generator.setRootValueSeparator(null);
+				}
+				mapper.writeValue(generator, attributes);
+				generator.flush();
+			} catch (IOException | RuntimeException e) {
+				LOG.warn("Failed to serialise activity attributes", e);
+				generator = null;
+				buffer.truncate(mark);
+				buffer.nullValue();
+			}
+		}
+	}
+
+	private static byte[] ascii(String str) {
+		return str.getBytes(StandardCharsets.US_ASCII);
+	}
+}
@@ -0,0 +1,123 @@
+package org.araqnid.stuff.activity;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.UUID;
+import javax.annotation.Nullable;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.AbstractIdleService;
+
+/**
+ * Delivers activity events to several named destinations, each through its own {@link AsyncActivityEventSink}.
+ * <p>
+ * Every destination has its own bounded ring and consumer thread, so a slow or failing destination only fills its
+ * own queue and loses its own events, and the producing thread only pays for a slot claim per destination. The
+ * destination sinks are started and stopped along with this service.
+ */
+public class FanOutActivityEventSink extends AbstractIdleService implements ActivityEventSink {
+	private final Map<String, AsyncActivityEventSink> destinations;
+	private final AsyncActivityEventSink[] queues;
+
+	public FanOutActivityEventSink(Map<String, ? extends ActivityEventSink> destinations,
+			int capacity,
+			AsyncActivityEventSink.OverflowPolicy overflowPolicy,
+			int sampleRate) {
+		ImmutableMap.Builder<String, AsyncActivityEventSink> builder = ImmutableMap.builder();
+		destinations.forEach((name, sink) -> builder.put(name, new AsyncActivityEventSink("activity-events-" + name,
+				sink, capacity, overflowPolicy, sampleRate)));
+		this.destinations = builder.build();
+		this.queues = this.destinations.values().toArray(new AsyncActivityEventSink[0]);
+	}
+
+	@Override
+	public void activityNodeStart(UUID activityId,
+			long nodeId,
+			long nodeParentId,
+			String type,
+			Instant started,
+			@Nullable Object attributes) {
+		for (AsyncActivityEventSink queue : queues) {
+			queue.activityNodeStart(activityId, nodeId, nodeParentId, type, started, attributes);
+		}
+	}
+
+	@Override
+	public void activityNodeEnd(UUID activityId, long nodeId, boolean success, long durationNanos, @Nullable Object attributes) {
+		for (AsyncActivityEventSink queue : queues) {
+			queue.activityNodeEnd(activityId, nodeId, success, durationNanos, attributes);
+		}
+	}
+
+	public SortedMap<String, DestinationStatus> status() {
+		SortedMap<String, DestinationStatus> result = new TreeMap<>();
+		destinations.forEach((name, queue) -> result.put(name, new DestinationStatus(queue)));
+		return result;
+	}
+
+	@Override
+	protected void startUp() throws Exception {
+		for (AsyncActivityEventSink queue : queues) {
+			queue.startAsync();
+		}
+		for (AsyncActivityEventSink queue : queues) {
+			queue.awaitRunning();
+		}
+	}
+
+	@Override
+	protected void shutDown() throws Exception {
+		for (AsyncActivityEventSink queue : queues) {
+			queue.stopAsync();
+		}
+		for (AsyncActivityEventSink queue : queues) {
+			queue.awaitTerminated();
+		}
+	}
+
+	@Override
+	protected String serviceName() {
+		return "activity-events";
+	}
+
+	/** Counters for one destination, as read at one point in time */
+	public static final class DestinationStatus {
+		private final int capacity;
+		private final long lag;
+		private final long delivered;
+		private final long dropped;
+		private final long failed;
+
+		DestinationStatus(AsyncActivityEventSink queue) {
+			this.capacity = queue.getCapacity();
+			this.lag = queue.getQueueDepth();
+			this.delivered = queue.getDeliveredCount();
+			this.dropped = queue.getDroppedCount();
+			this.failed = queue.getFailedCount();
+		}
+
+		public int capacity() {
+			return capacity;
+		}
+
+		/** Number of events queued but not yet delivered */
+		public long lag() {
+			return lag;
+		}
+
+		public long delivered() {
+			return delivered;
+		}
+
+		public long dropped() {
+			return dropped;
+		}
+
+		/** Number of deliveries or flushes that threw */
+		public long failed() {
+			return failed;
+		}
+	}
+}
@@ -0,0 +1,308 @@
+package org.araqnid.stuff.activity;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Growable byte buffer with JSON token writers for the fixed parts of activity event records, reused across events
+ * to avoid per-event allocation.
+ */
+final class JsonEventBuffer extends OutputStream {
+	private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+	private static final long MAX_FORMATTED_EPOCH_SECOND = 253402300799L; // 9999-12-31T23:59:59Z
+	private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+	private byte[] bytes;
+	private int size;
+	private ByteBuffer view;
+	private final byte[] digits = new byte[20];
+
+	JsonEventBuffer(int initialCapacity) {
+		this.bytes = new byte[initialCapacity];
+		this.view = ByteBuffer.wrap(bytes);
+	}
+
+	int size() {
+		return size;
+	}
+
+	void reset() {
+		size = 0;
+	}
+
+	void truncate(int newSize) {
+		size = newSize;
+	}
+
+	ByteBuffer contents() {
+		view.clear();
+		view.limit(size);
+		return view;
+	}
+
+	@Override
+	public void write(int b) {
+		ensureCapacity(1);
+		bytes[size++] = (byte) b;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) {
+		ensureCapacity(len);
+		System.arraycopy(b, off, bytes, size, len);
+		size += len;
+	}
+
+	JsonEventBuffer raw(byte[] literal) {
+		write(literal, 0, literal.length);
+		return this;
+	}
+
+	JsonEventBuffer number(long value) {
+		if (value == Long.MIN_VALUE) {
+			return raw(Long.toString(value).getBytes(StandardCharsets.US_ASCII));
+		}
+		ensureCapacity(20);
+		if (value < 0) {
+			bytes[size++] = '-';
+			value = -value;
+		}
+		int n = 0;
+		do {
+			digits[n++] = (byte) ('0' + (value % 10));
+			value /= 10;
+		} while (value != 0);
+		while (n > 0) {
+			bytes[size++] = digits[--n];
+		}
+		return this;
+	}
+
+	JsonEventBuffer bool(boolean value) {
+		return raw(value ? TRUE : FALSE);
+	}
+
+	JsonEventBuffer nullValue() {
+		return raw(NULL);
+	}
+
+	JsonEventBuffer string(String value) {
+		int length = value.length();
+		ensureCapacity(length + 2);
+		bytes[size++] = '"';
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			if (c >= 0x20 && c < 0x80 && c != '"' && c != '\\') {
+				ensureCapacity(1);
+				bytes[size++] = (byte) c;
+			}
+			else if (c == '"' || c == '\\') {
+				ensureCapacity(2);
+				bytes[size++] = '\\';
+				bytes[size++] = (byte) c;
+			}
+			else if (c < 0x20) {
+				ensureCapacity(6);
+				bytes[size++] = '\\';
+				bytes[size++] = 'u';
+				bytes[size++] = '0';
+				bytes[size++] = '0';
+				bytes[size++] = HEX[c >> 4];
+				bytes[size++] = HEX[c & 0xf];
+			}
+			else if (c < 0x800) {
+				ensureCapacity(2);
+				bytes[size++] = (byte) (0xc0 | (c >> 6));
+				bytes[size++] = (byte) (0x80 | (c & 0x3f));
+			}
+			else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, value.charAt(++i));
+				ensureCapacity(4);
+				bytes[size++] = (byte) (0xf0 | (codePoint >> 18));
+				bytes[size++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+				bytes[size++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+				bytes[size++] = (byte) (0x80 | (codePoint & 0x3f));
+			}
+			else if (Character.isSurrogate(c)) {
+				ensureCapacity(1);
+				bytes[size++] = '?';
+			}
+			else {
+				ensureCapacity(3);
+				bytes[size++] = (byte) (0xe0 | (c >> 12));
+				bytes[size++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+				bytes[size++] = (byte) (0x80 | (c & 0x3f));
+			}
+		}
+		ensureCapacity(1);
+		bytes[size++] = '"';
+		return this;
+	}
+
+	JsonEventBuffer uuid(UUID value) {
+		ensureCapacity(38);
+		bytes[size++] = '"';
+		long msb = value.getMostSignificantBits();
+		long lsb = value.getLeastSignificantBits();
+		hex(msb >>> 32, 8);
+		bytes[size++] = '-';
+		hex(msb >>> 16, 4);
+		bytes[size++] = '-';
+		hex(msb, 4);
+		bytes[size++] = '-';
+		hex(lsb >>> 48, 4);
+		bytes[size++] = '-';
+		hex(lsb, 12);
+		bytes[size++] = '"';
+		return this;
+	}
+
+	/** Writes a value as a quoted string of 16 lower-case hex digits */
+	JsonEventBuffer hex(long value) {
+		ensureCapacity(18);
+		bytes[size++] = '"';
+		hex(value, 16);
+		bytes[size++] = '"';
+		return this;
+	}
+
+	/** Writes a UUID as a quoted string of 32 lower-case hex digits, without separators */
+	JsonEventBuffer hex(UUID value) {
+		ensureCapacity(34);
+		bytes[size++] = '"';
+		hex(value.getMostSignificantBits(), 16);
+		hex(value.getLeastSignificantBits(), 16);
+		bytes[size++] = '"';
+		return this;
+	}
+
+	JsonEventBuffer instant(Instant value) {
+		return instant(value.getEpochSecond(), value.getNano());
+	}
+
+	JsonEventBuffer instant(long epochSecond, int nanos) {
+		if (epochSecond < 0 || epochSecond > MAX_FORMATTED_EPOCH_SECOND) {
+			return string(Instant.ofEpochSecond(epochSecond, nanos).toString());
+		}
+		long days = epochSecond / 86400;
+		int secondOfDay = (int) (epochSecond % 86400);
+		// civil-from-days, valid for the non-negative epoch days accepted above
+		long z = days + 719468;
+		long era = z / 146097;
+		long dayOfEra = z - era * 146097;
+		long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+		long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+		long mp = (5 * dayOfYear + 2) / 153;
+		int day = (int) (dayOfYear - (153 * mp + 2) / 5 + 1);
+		int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+		int year = (int) (yearOfEra + era * 400 + (month <= 2 ? 1 : 0));
+		ensureCapacity(32);
+		bytes[size++] = '"';
+		padded(year, 4);
+		bytes[size++] = '-';
+		padded(month, 2);
+		bytes[size++] = '-';
+		padded(day, 2);
+		bytes[size++] = 'T';
+		padded(secondOfDay / 3600, 2);
+		bytes[size++] = ':';
+		padded((secondOfDay / 60) % 60, 2);
+		bytes[size++] = ':';
+		padded(secondOfDay % 60, 2);
+		if (nanos > 0) {
+			bytes[size++] = '.';
+			if (nanos % 1_000_000 == 0) {
+				padded(nanos / 1_000_000, 3);
+			}
+			else if (nanos % 1000 == 0) {
+				padded(nanos / 1000, 6);
+			}
+			else {
+				padded(nanos, 9);
+			}
+		}
+		bytes[size++] = 'Z';
+		bytes[size++] = '"';
+		return this;
+	}
+
+	JsonEventBuffer duration(Duration value) {
+		if (value.isNegative()) {
+			return string(value.toString());
+		}
+		return durationNanos(value.getSeconds(), value.getNano());
+	}
+
+	JsonEventBuffer durationNanos(long nanos) {
+		if (nanos < 0) {
+			return string(Duration.ofNanos(nanos).toString());
+		}
+		return durationNanos(nanos / NANOS_PER_SECOND, (int) (nanos % NANOS_PER_SECOND));
+	}
+
+	private JsonEventBuffer durationNanos(long seconds, int nanos) {
+		ensureCapacity(2);
+		bytes[size++] = '"';
+		bytes[size++] = 'P';
+		write('T');
+		long hours = seconds / 3600;
+		int minutes = (int) ((seconds % 3600) / 60);
+		int secs = (int) (seconds % 60);
+		if (hours != 0) {
+			number(hours);
+			write('H');
+		}
+		if (minutes != 0) {
+			number(minutes);
+			write('M');
+		}
+		if (secs != 0 || nanos != 0 || (hours == 0 && minutes == 0)) {
+			number(secs);
+			if (nanos != 0) {
+				int fraction = nanos;
+				int width = 9;
+				while (fraction % 10 == 0) {
+					fraction /= 10;
+					--width;
+				}
+				ensureCapacity(10);
+				bytes[size++] = '.';
+				padded(fraction, width);
+			}
+			write('S');
+		}
+		write('"');
+		return this;
+	}
+
+	private void hex(long value, int nybbles) {
+		for (int i = nybbles - 1; i >= 0; i--) {
+			bytes[size + i] = HEX[(int) (value & 0xf)];
+			value >>>= 4;
+		}
+		size += nybbles;
+	}
+
+	private void padded(int value, int width) {
+		for (int i = width - 1; i >= 0; i--) {
+			bytes[size + i] = (byte) ('0' + (value % 10));
+			value /= 10;
+		}
+		size += width;
+	}
+
+	private void ensureCapacity(int extra) {
+		if (size + extra <= bytes.length) return;
+		bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+		view = ByteBuffer.wrap(bytes);
+	}
+
+	private static final byte[] TRUE = "true".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] FALSE = "false".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+}
@@ -0,0 +1,109 @@
+package org.araqnid.stuff.activity;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Log-linear histogram of nanosecond durations, recording with a handful of atomic increments and no locks.
+ * <p>
+ * Each power-of-two range is split into {@value #SUB_BUCKETS} linear buckets, so reported values are within about
+ * 6% of the recorded ones. Durations below {@value #MIN_VALUE}ns share the lowest bucket, and durations above
+ * about 18 minutes share the highest.
+ */
+public final class LatencyHistogram {
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int MIN_EXPONENT = 10;
+	private static final int MAX_EXPONENT = 40;
+	private static final long MIN_VALUE = 1L << MIN_EXPONENT;
+	private static final int BUCKETS = (MAX_EXPONENT - MIN_EXPONENT + 1) * SUB_BUCKETS + 1;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLongArray totals = new AtomicLongArray(3); // count, sum, max
+
+	public void record(long nanos) {
+		if (nanos < 0) nanos = 0;
+		counts.getAndIncrement(bucketIndex(nanos));
+		totals.getAndIncrement(0);
+		totals.getAndAdd(1, nanos);
+		long max = totals.get(2);
+		while (nanos > max && !totals.compareAndSet(2, max, nanos)) {
+			max = totals.get(2);
+		}
+	}
+
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++) {
+			counts.set(i, 0);
+		}
+		for (int i = 0; i < 3; i++) {
+			totals.set(i, 0);
+		}
+	}
+
+	public Snapshot snapshot() {
+		Snapshot snapshot = new Snapshot();
+		snapshot.add(this);
+		return snapshot;
+	}
+
+	static int bucketIndex(long nanos) {
+		if (nanos < MIN_VALUE) return 0;
+		int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+		if (exponent > MAX_EXPONENT) return BUCKETS - 1;
+		int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return 1 + (exponent - MIN_EXPONENT) * SUB_BUCKETS + subBucket;
+	}
+
+	static long bucketUpperBound(int index) {
+		if (index == 0) return MIN_VALUE - 1;
+		int exponent = MIN_EXPONENT + (index - 1) / SUB_BUCKETS;
+		int subBucket = (index - 1) % SUB_BUCKETS;
+		long base = 1L << exponent;
+		return base + ((subBucket + 1) * (base >>> SUB_BUCKET_BITS)) - 1;
+	}
+
+	/** Point-in-time copy of one or more histograms, which can be merged into */
+	public static final class Snapshot {
+		private final long[] counts = new long[BUCKETS];
+		private long count;
+		private long sum;
+		private long max;
+
+		public Snapshot add(LatencyHistogram histogram) {
+			for (int i = 0; i < BUCKETS; i++) {
+				counts[i] += histogram.counts.get(i);
+			}
+			count += histogram.totals.get(0);
+			sum += histogram.totals.get(1);
+			max = Math.max(max, histogram.totals.get(2));
+			return this;
+		}
+
+		public long count() {
+			return count;
+		}
+
+		public long maxNanos() {
+			return max;
+		}
+
+		public double meanNanos() {
+			return count == 0 ? 0 : (double) sum / count;
+		}
+
+		public long percentileNanos(double percentile) {
+			long total = 0;
+			for (long bucketCount : counts) {
+				total += bucketCount;
+			}
+			if (total == 0) return 0;
+			long rank = (long) Math.ceil(total * percentile / 100.0);
+			long seen = 0;
+			for (int i = 0; i < BUCKETS; i++) {
+				seen += counts[i];
+				if (seen >= rank) return Math.min(bucketUpperBound(i), max);
+			}
+			return max;
+		}
+	}
+}
@@ -27,15 +27,18 @@ public class LogActivityEvents implements ActivityEventSink {
 			String type,
 			Instant started,
 			@Nullable Object attributes) {
+		if (!LOG.isInfoEnabled()) return;
 		LOG.info("start {} {} {} {} {} {}", activityId, nodeId, nodeParentId, type, started, toJson(attributes));
 	}
 
 	@Override
-	public void activityNodeEnd(UUID activityId, long nodeId, boolean success, Duration duration, @Nullable Object attributes) {
-		LOG.info("end   {} {} {} {} {}", activityId, nodeId, success ? "OK" : "BAD", duration, toJson(attributes));
+	public void activityNodeEnd(UUID activityId, long nodeId, boolean success, long durationNanos, @Nullable Object attributes) {
+		if (!LOG.isInfoEnabled()) return;
+		LOG.info("end   {} {} {} {} {}", activityId, nodeId, success ? "OK" : "BAD", Duration.ofNanos(durationNanos), toJson(attributes));
 	}
 
 	private String toJson(@Nullable Object attributes) {
+		if (attributes instanceof ActivityAttributes) return ((ActivityAttributes) attributes).toJson();
 		try {
 			return mapper.writeValueAsString(attributes);
 		} catch (JsonProcessingException e) {
@@ -20,17 +20,19 @@ import org.araqnid.stuff.config.ServerIdentity;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class LogActivityJsonEvents implements ActivityEventSink {
+public class LogActivityJsonEvents implements ActivitySpanSink {
 	private static final Logger LOG = LoggerFactory.getLogger(LogActivityJsonEvents.class);
 	private final UUID instanceId;
 	private final ObjectWriter startWriter;
 	private final ObjectWriter endWriter;
+	private final ObjectWriter spanWriter;
 
 	@Inject
 	public LogActivityJsonEvents(ObjectMapper mapper, @ServerIdentity UUID instanceId) {
 		this.instanceId = instanceId;
 		this.startWriter = mapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
 		this.endWriter = mapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+		this.spanWriter = mapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
 	}
 
 	@Override
@@ -51,9 +53,9 @@ public class LogActivityJsonEvents implements ActivityEventSink {
 	}
 
 	@Override
-	public void activityNodeEnd(UUID activityId, long nodeId, boolean success, Duration duration, @Nullable Object attributes) {
-		ActivityNodeEndEvent event = new ActivityNodeEndEvent(instanceId, activityId, nodeId, success, duration,
-				attributes);
+	public void activityNodeEnd(UUID activityId, long nodeId, boolean success, long durationNanos, @Nullable Object attributes) {
+		ActivityNodeEndEvent event = new ActivityNodeEndEvent(instanceId, activityId, nodeId, success,
+				Duration.ofNanos(durationNanos), attributes);
 		try {
 			endWriter.writeValue(System.out, event);
 			System.out.println("");
@@ -62,8 +64,29 @@ public class LogActivityJsonEvents implements ActivityEventSink {
 		}
 	}
 
+	@Override
+	public void activityNodeSpan(UUID activityId,
+			long nodeId,
+			long nodeParentId,
+			String type,
+			Instant started,
+			boolean success,
+			long durationNanos,
+			@Nullable Object startAttributes,
+			@Nullable Object endAttributes) {
+		ActivityNodeSpanEvent event = new ActivityNodeSpanEvent(instanceId, activityId, nodeId, nodeParentId, type,
+				started, success, Duration.ofNanos(durationNanos), startAttributes, endAttributes);
+		try {
+			spanWriter.writeValue(System.out, event);
+			System.out.println("");
+		} catch (IOException e) {
+			LOG.warn("Failed to write activity span event", e);
+		}
+	}
+
 	@JsonTypeInfo(use = JsonTypeInfo.Id.NAME)
-	@JsonSubTypes({ @JsonSubTypes.Type(ActivityNodeStartEvent.class), @JsonSubTypes.Type(ActivityNodeEndEvent.class) })
+	@JsonSubTypes({ @JsonSubTypes.Type(ActivityNodeStartEvent.class), @JsonSubTypes.Type(ActivityNodeEndEvent.class),
+			@JsonSubTypes.Type(ActivityNodeSpanEvent.class) })
 	public interface ActivityNodeEvent {
 	}
 
@@ -119,4 +142,43 @@ public class LogActivityJsonEvents implements ActivityEventSink {
 			this.attributes = attributes;
 		}
 	}
+
+	@JsonTypeName("span")
+	public static final class ActivityNodeSpanEvent implements ActivityNodeEvent {
+		public final UUID instanceId;
+		public final UUID activityId;
+		public final long nodeId;
+		@JsonInclude(Include.NON_EMPTY)
+		public final long nodeParentId;
+		@JsonProperty("node_type")
+		public final String type;
+		public final Instant started;
+		public final boolean success;
+		public final Duration duration;
+		public final Object attributes;
+		@JsonInclude(Include.NON_NULL)
+		public final Object endAttributes;
+
+		public ActivityNodeSpanEvent(UUID instanceId,
+				UUID activityId,
+				long nodeId,
+				long nodeParentId,
+				String type,
+				Instant started,
+				boolean success,
+				Duration duration,
+				@Nullable Object attributes,
+				@Nullable Object endAttributes) {
+			this.instanceId = instanceId;
+			this.activityId = activityId;
+			this.nodeId = nodeId;
+			this.nodeParentId = nodeParentId;
+			this.type = type;
+			this.started = started;
+			this.success = success;
+			this.duration = duration;
+			this.attributes = attributes;
+			this.endAttributes = endAttributes;
+		}
+	}
 }
@@ -0,0 +1,60 @@
+package org.araqnid.stuff.activity;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Source of activity node IDs.
+ * <p>
+ * All allocators draw from the same underlying counter, so IDs are unique within this process whichever allocators
+ * are in use, and never equal to {@link ActivityNode#NO_PARENT}. Only the sequential allocator hands out IDs in
+ * creation order.
+ */
+public interface NodeIdAllocator {
+	NodeIdAllocator DEFAULT = threadBlocks(1024);
+
+	long next();
+
+	/** Increments the shared counter for every ID: simple, but contended when nodes are created on many cores */
+	static NodeIdAllocator sequential() {
+		return Source.COUNTER::incrementAndGet;
+	}
+
+	/** Reserves blocks of IDs from the shared counter for each thread, so only one in blockSize allocations contends */
+	static NodeIdAllocator threadBlocks(int blockSize) {
+		return new ThreadBlocks(blockSize);
+	}
+
+	final class Source {
+		static final AtomicLong COUNTER = new AtomicLong(ActivityNode.NO_PARENT);
+
+		private Source() {
+		}
+	}
+
+	final class ThreadBlocks implements NodeIdAllocator {
+		private final int blockSize;
+		private final ThreadLocal<Block> blocks = ThreadLocal.withInitial(Block::new);
+
+		private ThreadBlocks(int blockSize) {
+			Preconditions.checkArgument(blockSize > 0, "block size must be positive: %s", blockSize);
+			this.blockSize = blockSize;
+		}
+
+		@Override
+		public long next() {
+			Block block = blocks.get();
+			if (block.next == block.limit) {
+				block.next = Source.COUNTER.getAndAdd(blockSize) + 1;
+				block.limit = block.next + blockSize;
+			}
+			return block.next++;
+		}
+
+		private static final class Block {
+			long next;
+			long limit;
+		}
+	}
+}
@@ -0,0 +1,115 @@
+package org.araqnid.stuff.activity;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.Nullable;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Measures the CPU time used and bytes allocated by the thread running each node of a sample of activities.
+ * <p>
+ * For a sampled activity, each node reads the thread's CPU time and allocation counter when it begins and when it
+ * completes, and if both happened on the same thread the differences are added as "cpu_nanos" and "allocated_bytes"
+ * to a copy of the attributes the node completed with, replacing any values already under those keys. Completion
+ * attributes must be {@link ActivityAttributes}, a map, or null for this; attributes of any other type are passed on
+ * unchanged, without the figures. Figures for a node include those of children that ran on the same thread. Totals are also kept by node
+ * type.
+ * <p>
+ * Allocation is only measured on JVMs providing {@code com.sun.management.ThreadMXBean}, and reported as -1
+ * otherwise. Nodes run on virtual threads are not measured, as the JVM reports no CPU time for them.
+ */
+public final class ResourceAccounting {
+	public static final ResourceAccounting DISABLED = new ResourceAccounting(0.0);
+
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+	private static final boolean CPU_TIME_SUPPORTED = THREADS.isCurrentThreadCpuTimeSupported();
+	@Nullable private static final com.sun.management.ThreadMXBean ALLOCATION = allocationBean();
+
+	private final double sampleRatio;
+	private final ConcurrentMap<String, Totals> byType = new ConcurrentHashMap<>();
+
+	public ResourceAccounting(double sampleRatio) {
+		Preconditions.checkArgument(sampleRatio >= 0 && sampleRatio <= 1, "sample ratio must be between 0 and 1: %s", sampleRatio);
+		this.sampleRatio = sampleRatio;
+	}
+
+	boolean sample() {
+		return sampleRatio > 0 && CPU_TIME_SUPPORTED && (sampleRatio >= 1 || ThreadLocalRandom.current().nextDouble() < sampleRatio);
+	}
+
+	static long cpuTime() {
+		return THREADS.getCurrentThreadCpuTime();
+	}
+
+	static long allocatedBytes(long threadId) {
+		return ALLOCATION != null ? ALLOCATION.getThreadAllocatedBytes(threadId) : -1;
+	}
+
+	@Nullable
+	Object record(String type, long cpuNanos, long allocatedBytes, @Nullable Object attributes) {
+		Totals totals = byType.get(type);
+		if (totals == null) totals = byType.computeIfAbsent(type, k -> new Totals());
+		totals.count.increment();
+		totals.cpuNanos.add(cpuNanos);
+		if (allocatedBytes >= 0) totals.allocatedBytes.add(allocatedBytes);
+		if (attributes == null) {
+			return new ActivityAttributes(2).with("cpu_nanos", cpuNanos).with("allocated_bytes", allocatedBytes);
+		}
+		if (attributes instanceof ActivityAttributes) {
+			return ((ActivityAttributes) attributes).copyWithout(2, "cpu_nanos", "allocated_bytes")
+					.with("cpu_nanos", cpuNanos)
+					.with("allocated_bytes", allocatedBytes);
+		}
+		if (attributes instanceof Map) {
+			Map<Object, Object> withUsage = new LinkedHashMap<>((Map<?, ?>) attributes);
+			withUsage.put("cpu_nanos", cpuNanos);
+			withUsage.put("allocated_bytes", allocatedBytes);
+			return withUsage;
+		}
+		return attributes;
+	}
+
+	public SortedMap<String, Totals> snapshot() {
+		return new TreeMap<>(byType);
+	}
+
+	@Nullable
+	private static com.sun.management.ThreadMXBean allocationBean() {
+		try {
+			if (THREADS instanceof com.sun.management.ThreadMXBean) {
+				com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) THREADS;
+				if (bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled()) return bean;
+			}
+		} catch (LinkageError e) {
+			// not a HotSpot-derived JVM
+		}
+		return null;
+	}
+
+	public static final class Totals {
+		private final LongAdder count = new LongAdder();
+		private final LongAdder cpuNanos = new LongAdder();
+		private final LongAdder allocatedBytes = new LongAdder();
+
+		public long count() {
+			return count.sum();
+		}
+
+		public long cpuNanos() {
+			return cpuNanos.sum();
+		}
+
+		public long allocatedBytes() {
+			return allocatedBytes.sum();
+		}
+	}
+}
@@ -0,0 +1,120 @@
+package org.araqnid.stuff.activity;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * Passes on events according to the current level of an {@link ActivityLoadShedder}, counting what it sheds there.
+ * <p>
+ * The decision for a node is made at its start event: if the start is shed, so is its end and the whole subtree
+ * under it, even if the level drops again meanwhile. Attributes are removed from events while the level is
+ * {@link ActivityLoadShedder.Level#NO_ATTRIBUTES} or above.
+ * <p>
+ * Shed node IDs are forgotten when their end event arrives, but end events are most likely to be dropped upstream
+ * exactly when shedding, so they are also kept in two generations: a new one is started once the current one holds
+ * {@value #MAX_SHED_NODES} nodes or is a minute old, and the one before it is discarded. A node that outlives that
+ * is passed on again without its shed parent.
+ */
+public class SheddingActivityEventSink implements ActivityEventSink, Flushable, AutoCloseable {
+	static final int MAX_SHED_NODES = 100000;
+	private static final long GENERATION_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+	private final ActivityEventSink delegate;
+	private final ActivityLoadShedder shedder;
+	private volatile Set<Long> shedNodes = ConcurrentHashMap.newKeySet();
+	private volatile Set<Long> previousShedNodes = ConcurrentHashMap.newKeySet();
+	private volatile long generationStarted = System.nanoTime();
+
+	public SheddingActivityEventSink(ActivityEventSink delegate, ActivityLoadShedder shedder) {
+		this.delegate = delegate;
+		this.shedder = shedder;
+	}
+
+	@Override
+	public void activityNodeStart(UUID activityId,
+			long nodeId,
+			long nodeParentId,
+			String type,
+			Instant started,
+			@Nullable Object attributes) {
+		ActivityLoadShedder.Level level = shedder.level();
+		if (nodeParentId != ActivityNode.NO_PARENT) {
+			if (level != ActivityLoadShedder.Level.FULL || isShed(nodeParentId)) {
+				shed(nodeId);
+				shedder.childShed();
+				return;
+			}
+		}
+		else if (level == ActivityLoadShedder.Level.SAMPLE_ROOTS && !shedder.sampled(activityId)) {
+			shed(nodeId);
+			shedder.rootShed();
+			return;
+		}
+		delegate.activityNodeStart(activityId, nodeId, nodeParentId, type, started, shedAttributes(level, attributes));
+	}
+
+	@Override
+	public void activityNodeEnd(UUID activityId, long nodeId, boolean success, long durationNanos, @Nullable Object attributes) {
+		if (unshed(nodeId)) return;
+		delegate.activityNodeEnd(activityId, nodeId, success, durationNanos, shedAttributes(shedder.level(), attributes));
+	}
+
+	@Override
+	public void flush() throws IOException {
+		if (delegate instanceof Flushable) {
+			((Flushable) delegate).flush();
+		}
+	}
+
+	@Override
+	public void close() throws Exception {
+		if (delegate instanceof AutoCloseable) {
+			((AutoCloseable) delegate).close();
+		}
+	}
+
+	int shedNodeCount() {
+		return shedNodes.size() + previousShedNodes.size();
+	}
+
+	private void shed(long nodeId) {
+		Set<Long> current = shedNodes;
+		if (current.size() >= MAX_SHED_NODES || System.nanoTime() - generationStarted >= GENERATION_NANOS) {
+			current = nextGeneration(current);
+		}
+		current.add(nodeId);
+	}
+
+	private synchronized Set<Long> nextGeneration(Set<Long> full) {
+		if (shedNodes != full) return shedNodes;
+		previousShedNodes = full;
+		shedNodes = ConcurrentHashMap.newKeySet();
+		generationStarted = System.nanoTime();
+		return shedNodes;
+	}
+
+	private boolean isShed(long nodeId) {
+		Set<Long> current = shedNodes;
+		Set<Long> previous = previousShedNodes;
+		return (!current.isEmpty() && current.contains(nodeId)) || (!previous.isEmpty() && previous.contains(nodeId));
+	}
+
+	private boolean unshed(long nodeId) {
+		Set<Long> current = shedNodes;
+		Set<Long> previous = previousShedNodes;
+		return (!current.isEmpty() && current.remove(nodeId)) || (!previous.isEmpty() && previous.remove(nodeId));
+	}
+
+	@Nullable
+	private Object shedAttributes(ActivityLoadShedder.Level level, @Nullable Object attributes) {
+		if (attributes == null || level.compareTo(ActivityLoadShedder.Level.NO_ATTRIBUTES) < 0) return attributes;
+		shedder.attributesShed();
+		return null;
+	}
+}
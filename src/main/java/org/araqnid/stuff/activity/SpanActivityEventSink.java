@@ -0,0 +1,148 @@
+package org.araqnid.stuff.activity;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import javax.annotation.Nullable;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+
+/**
+ * Holds back the start event of each node until it ends, and then writes a single span record for it instead of
+ * separate start and end records.
+ * <p>
+ * A node that is still open once the threshold has passed has its start event written on its own, so long-running
+ * and stuck nodes stay visible; its end is then written as a plain end event. The threshold is checked as events
+ * arrive and whenever this sink is flushed. Methods are synchronized: this is meant to sit behind
+ * {@link AsyncActivityEventSink}, where only the consumer thread calls it.
+ */
+public class SpanActivityEventSink implements ActivityEventSink, Flushable, AutoCloseable {
+	private final ActivitySpanSink delegate;
+	private final long openThresholdNanos;
+	private final Ticker ticker;
+	private final LinkedHashMap<Long, PendingStart> pending = new LinkedHashMap<>();
+	private long spans;
+	private long splitSpans;
+
+	public SpanActivityEventSink(ActivitySpanSink delegate, Duration openThreshold) {
+		this(delegate, openThreshold, Ticker.systemTicker());
+	}
+
+	@VisibleForTesting
+	SpanActivityEventSink(ActivitySpanSink delegate, Duration openThreshold, Ticker ticker) {
+		this.delegate = delegate;
+		this.openThresholdNanos = openThreshold.toNanos();
+		this.ticker = ticker;
+	}
+
+	@Override
+	public synchronized void activityNodeStart(UUID activityId,
+			long nodeId,
+			long nodeParentId,
+			String type,
+			Instant started,
+			@Nullable Object attributes) {
+		long now = ticker.read();
+		flushOverdue(now);
+		pending.put(nodeId, new PendingStart(activityId, nodeParentId, type, started, attributes, now));
+	}
+
+	@Override
+	public synchronized void activityNodeEnd(UUID activityId,
+			long nodeId,
+			boolean success,
+			long durationNanos,
+			@Nullable Object attributes) {
+		PendingStart start = pending.remove(nodeId);
+		if (start == null) {
+			++splitSpans;
+			delegate.activityNodeEnd(activityId, nodeId, success, durationNanos, attributes);
+		}
+		else {
+			++spans;
+			delegate.activityNodeSpan(activityId, nodeId, start.nodeParentId, start.type, start.started, success,
+					durationNanos, start.attributes, attributes);
+		}
+		flushOverdue(ticker.read());
+	}
+
+	/** Number of nodes written as a single span record */
+	public synchronized long getSpanCount() {
+		return spans;
+	}
+
+	/** Number of nodes whose end was written separately, because their start had already been written or was never seen */
+	public synchronized long getSplitSpanCount() {
+		return splitSpans;
+	}
+
+	public synchronized int getPendingCount() {
+		return pending.size();
+	}
+
+	@Override
+	public void flush() throws IOException {
+		synchronized (this) {
+			flushOverdue(ticker.read());
+		}
+		if (delegate instanceof Flushable) {
+			((Flushable) delegate).flush();
+		}
+	}
+
+	@Override
+	public void close() throws Exception {
+		synchronized (this) {
+			for (Map.Entry<Long, PendingStart> e : pending.entrySet()) {
+				e.getValue().writeTo(delegate, e.getKey());
+			}
+			pending.clear();
+		}
+		if (delegate instanceof AutoCloseable) {
+			((AutoCloseable) delegate).close();
+		}
+	}
+
+	private void flushOverdue(long now) {
+		// insertion order is arrival order, so only the head of the map can be overdue if anything is
+		for (Iterator<Map.Entry<Long, PendingStart>> iter = pending.entrySet().iterator(); iter.hasNext(); ) {
+			Map.Entry<Long, PendingStart> e = iter.next();
+			if (now - e.getValue().receivedTicks < openThresholdNanos) return;
+			iter.remove();
+			e.getValue().writeTo(delegate, e.getKey());
+		}
+	}
+
+	private static final class PendingStart {
+		final UUID activityId;
+		final long nodeParentId;
+		final String type;
+		final Instant started;
+		@Nullable final Object attributes;
+		final long receivedTicks;
+
+		PendingStart(UUID activityId,
+				long nodeParentId,
+				String type,
+				Instant started,
+				@Nullable Object attributes,
+				long receivedTicks) {
+			this.activityId = activityId;
+			this.nodeParentId = nodeParentId;
+			this.type = type;
+			this.started = started;
+			this.attributes = attributes;
+			this.receivedTicks = receivedTicks;
+		}
+
+		void writeTo(ActivityEventSink sink, long nodeId) {
+			sink.activityNodeStart(activityId, nodeId, nodeParentId, type, started, attributes);
+		}
+	}
+}
@@ -0,0 +1,255 @@
+package org.araqnid.stuff.activity;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.Nullable;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Holds back the events of each activity until its root node completes, then passes on the whole tree only if
+ * some node failed, the root took longer than the latency threshold, or the activity was picked at random.
+ * <p>
+ * Memory is bounded both per activity (further events are discarded, and the tree is marked as truncated) and in
+ * total (activities that start while the limit is reached are not traced at all).
+ * <p>
+ * Events are buffered per root node rather than per activity id, as an activity continued from an inbound request
+ * can have several roots open at once (parallel calls from one caller, or a service calling itself). Each open node
+ * is mapped to the trace of its root, so node ids must be unique within the process.
+ */
+public class TailSamplingActivityEventSink implements ActivityEventSink, Flushable, AutoCloseable {
+	private final ActivityEventSink delegate;
+	private final long latencyThresholdNanos;
+	private final double sampleRate;
+	private final int maxEventsPerActivity;
+	private final int maxEventsTotal;
+	private final long maxActivityAgeNanos;
+	private final ConcurrentMap<Long, Trace> traces = new ConcurrentHashMap<>();
+	private final AtomicInteger bufferedEvents = new AtomicInteger();
+	private final LongAdder kept = new LongAdder();
+	private final LongAdder discarded = new LongAdder();
+	private final LongAdder overflowed = new LongAdder();
+
+	public TailSamplingActivityEventSink(ActivityEventSink delegate,
+			Duration latencyThreshold,
+			double sampleRate,
+			int maxEventsPerActivity,
+			int maxEventsTotal,
+			Duration maxActivityAge) {
+		Preconditions.checkArgument(sampleRate >= 0 && sampleRate <= 1, "sample rate must be between 0 and 1: %s", sampleRate);
+		Preconditions.checkArgument(maxEventsPerActivity >= 2, "must allow at least the root start and end events");
+		this.delegate = delegate;
+		this.latencyThresholdNanos = latencyThreshold.toNanos();
+		this.sampleRate = sampleRate;
+		this.maxEventsPerActivity = maxEventsPerActivity;
+		this.maxEventsTotal = maxEventsTotal;
+		this.maxActivityAgeNanos = maxActivityAge.toNanos();
+	}
+
+	@Override
+	public void activityNodeStart(UUID activityId,
+			long nodeId,
+			long nodeParentId,
+			String type,
+			Instant started,
+			@Nullable Object attributes) {
+		Trace trace;
+		if (nodeParentId == ActivityNode.NO_PARENT) {
+			if (!reserve()) {
+				overflowed.increment();
+				return;
+			}
+			trace = new Trace(activityId, nodeId);
+		}
+		else {
+			trace = traces.get(nodeParentId);
+			if (trace == null || !reserve()) return;
+		}
+		traces.put(nodeId, trace);
+		if (!trace.add(this, new Event(nodeId, nodeParentId, type, started, attributes))) {
+			traces.remove(nodeId, trace);
+		}
+	}
+
+	@Override
+	public void activityNodeEnd(UUID activityId, long nodeId, boolean success, long durationNanos, @Nullable Object attributes) {
+		Trace trace = traces.remove(nodeId);
+		if (trace == null) return;
+		boolean root = nodeId == trace.rootNodeId;
+		if (!root && !reserve()) return;
+		if (root) bufferedEvents.incrementAndGet();
+		trace.add(this, new Event(nodeId, success, durationNanos, attributes));
+		if (!root) return;
+		List<Event> events = trace.close();
+		bufferedEvents.addAndGet(-events.size());
+		for (Event event : events) {
+			if (!event.end) traces.remove(event.nodeId, trace);
+		}
+		if (trace.failed || durationNanos >= latencyThresholdNanos || ThreadLocalRandom.current().nextDouble() < sampleRate) {
+			kept.increment();
+			for (Event event : events) {
+				event.replay(trace.activityId, delegate);
+			}
+		}
+		else {
+			discarded.increment();
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		if (delegate instanceof Flushable) {
+			((Flushable) delegate).flush();
+		}
+	}
+
+	@Override
+	public void close() throws Exception {
+		if (delegate instanceof AutoCloseable) {
+			((AutoCloseable) delegate).close();
+		}
+	}
+
+	public long getKeptCount() {
+		return kept.sum();
+	}
+
+	public long getDiscardedCount() {
+		return discarded.sum();
+	}
+
+	public long getOverflowCount() {
+		return overflowed.sum();
+	}
+
+	public int getBufferedEventCount() {
+		return bufferedEvents.get();
+	}
+
+	private boolean reserve() {
+		if (bufferedEvents.incrementAndGet() <= maxEventsTotal) return true;
+		bufferedEvents.decrementAndGet();
+		evictStale();
+		if (bufferedEvents.incrementAndGet() <= maxEventsTotal) return true;
+		bufferedEvents.decrementAndGet();
+		return false;
+	}
+
+	private void evictStale() {
+		long now = System.nanoTime();
+		for (Iterator<Map.Entry<Long, Trace>> iter = traces.entrySet().iterator(); iter.hasNext(); ) {
+			Map.Entry<Long, Trace> entry = iter.next();
+			Trace trace = entry.getValue();
+			if (now - trace.created > maxActivityAgeNanos) {
+				iter.remove();
+				if (entry.getKey() == trace.rootNodeId) {
+					bufferedEvents.addAndGet(-trace.close().size());
+				}
+			}
+		}
+	}
+
+	private static final class Trace {
+		final UUID activityId;
+		final long rootNodeId;
+		final long created = System.nanoTime();
+		private List<Event> events = new ArrayList<>();
+		boolean failed;
+		boolean truncated;
+
+		Trace(UUID activityId, long rootNodeId) {
+			this.activityId = activityId;
+			this.rootNodeId = rootNodeId;
+		}
+
+		synchronized boolean add(TailSamplingActivityEventSink owner, Event event) {
+			if (events == null || (events.size() >= owner.maxEventsPerActivity - 1 && event.nodeId != rootNodeId)) {
+				owner.bufferedEvents.decrementAndGet();
+				truncated = true;
+				return false;
+			}
+			if (event.end && !event.success) failed = true;
+			events.add(event);
+			return true;
+		}
+
+		synchronized List<Event> close() {
+			List<Event> closed = events != null ? events : new ArrayList<>();
+			events = null;
+			if (truncated && !closed.isEmpty()) {
+				closed.get(closed.size() - 1).markTruncated();
+			}
+			return closed;
+		}
+	}
+
+	private static final class Event {
+		final boolean end;
+		final long nodeId;
+		final long nodeParentId;
+		final String type;
+		final Instant started;
+		final boolean success;
+		final long durationNanos;
+		@Nullable Object attributes;
+
+		Event(long nodeId, long nodeParentId, String type, Instant started, @Nullable Object attributes) {
+			this.end = false;
+			this.nodeId = nodeId;
+			this.nodeParentId = nodeParentId;
+			this.type = type;
+			this.started = started;
+			this.success = false;
+			this.durationNanos = 0;
+			this.attributes = attributes;
+		}
+
+		Event(long nodeId, boolean success, long durationNanos, @Nullable Object attributes) {
+			this.end = true;
+			this.nodeId = nodeId;
+			this.nodeParentId = ActivityNode.NO_PARENT;
+			this.type = null;
+			this.started = null;
+			this.success = success;
+			this.durationNanos = durationNanos;
+			this.attributes = attributes;
+		}
+
+		void markTruncated() {
+			if (end) {
+				attributes = new TruncatedTrace(attributes);
+			}
+		}
+
+		void replay(UUID activityId, ActivityEventSink sink) {
+			if (end) {
+				sink.activityNodeEnd(activityId, nodeId, success, durationNanos, attributes);
+			}
+			else {
+				sink.activityNodeStart(activityId, nodeId, nodeParentId, type, started, attributes);
+			}
+		}
+	}
+
+	/** Completion attributes of a root node whose trace was cut short */
+	public static final class TruncatedTrace {
+		public final boolean truncated = true;
+		@Nullable public final Object attributes;
+
+		TruncatedTrace(@Nullable Object attributes) {
+			this.attributes = attributes;
+		}
+	}
+}
@@ -0,0 +1,62 @@
+package org.araqnid.stuff.activity;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import javax.annotation.Nullable;
+
+import com.google.common.collect.ImmutableList;
+
+public class TeeActivityEventSink implements ActivityEventSink, Flushable, AutoCloseable {
+	private final List<ActivityEventSink> sinks;
+
+	public TeeActivityEventSink(List<? extends ActivityEventSink> sinks) {
+		this.sinks = ImmutableList.copyOf(sinks);
+	}
+
+	@Override
+	public void activityNodeStart(UUID activityId,
+			long nodeId,
+			long nodeParentId,
+			String type,
+			Instant started,
+			@Nullable Object attributes) {
+		for (ActivityEventSink sink : sinks) {
+			sink.activityNodeStart(activityId, nodeId, nodeParentId, type, started, attributes);
+		}
+	}
+
+	@Override
+	public void activityNodeEnd(UUID activityId, long nodeId, boolean success, long durationNanos, @Nullable Object attributes) {
+		for (ActivityEventSink sink : sinks) {
+			sink.activityNodeEnd(activityId, nodeId, success, durationNanos, attributes);
+		}
+	}
+
+	@Override
+	public void activityNodeEnd(ActivityNode node, boolean success, long durationNanos, @Nullable Object attributes) {
+		for (ActivityEventSink sink : sinks) {
+			sink.activityNodeEnd(node, success, durationNanos, attributes);
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		for (ActivityEventSink sink : sinks) {
+			if (sink instanceof Flushable) {
+				((Flushable) sink).flush();
+			}
+		}
+	}
+
+	@Override
+	public void close() throws Exception {
+		for (ActivityEventSink sink : sinks) {
+			if (sink instanceof AutoCloseable) {
+				((AutoCloseable) sink).close();
+			}
+		}
+	}
+}
@@ -12,6 +12,7 @@ public final class ThreadActivity {
 	public static void attach(ActivityNode node) {
 		Preconditions.checkState(STATE.get() == null);
 		STATE.set(node);
+		track(node);
 		MDC.put("activity", node.activity.id.toString());
 	}
 
@@ -21,6 +22,7 @@ public final class ThreadActivity {
 		if (currentNode.activity != activity)
 			throw new IllegalStateException("Activity in thread state did not match detach request");
 		STATE.remove();
+		release(activity);
 		MDC.remove("activity");
 	}
 
@@ -30,6 +32,7 @@ public final class ThreadActivity {
 		if (currentNode != node)
 			throw new IllegalStateException("Activity node in thread state did not match detach request");
 		STATE.remove();
+		release(node.activity);
 		MDC.remove("activity");
 	}
 
@@ -44,7 +47,18 @@ public final class ThreadActivity {
 	public static void transition(@Nullable ActivityNode from, @Nullable ActivityNode to) {
 		if (to == null)
 			detach(from);
-		else if (STATE.get() == from) STATE.set(to);
+		else if (STATE.get() == from) {
+			STATE.set(to);
+			track(to);
+		}
+	}
+
+	private static void track(ActivityNode node) {
+		if (node.activity.owner == Thread.currentThread()) node.activity.current = node;
+	}
+
+	private static void release(Activity activity) {
+		if (activity.owner == Thread.currentThread()) activity.owner = null;
 	}
 
 	public static Scoper reattach(ActivityNode node) {
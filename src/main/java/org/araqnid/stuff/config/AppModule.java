@@ -1,25 +1,57 @@
 package org.araqnid.stuff.config;
 
+import java.io.IOException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.nio.file.Paths;
 import java.time.Clock;
+import java.time.Duration;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import javax.inject.Provider;
 import javax.inject.Singleton;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.Service;
 import com.google.common.util.concurrent.ServiceManager;
 import com.google.inject.AbstractModule;
+import com.google.inject.Key;
 import com.google.inject.Provides;
+import com.google.inject.multibindings.MapBinder;
 import com.google.inject.multibindings.Multibinder;
+import com.google.inject.name.Named;
+import com.google.inject.name.Names;
 import org.araqnid.stuff.AppStartupBanner;
 import org.araqnid.stuff.AppVersion;
 import org.araqnid.stuff.activity.ActivityEventSink;
+import org.araqnid.stuff.activity.ActivityFlameGraph;
+import org.araqnid.stuff.activity.ActivityIdGenerator;
+import org.araqnid.stuff.activity.ActivityJournal;
+import org.araqnid.stuff.activity.ActivityLatencyStatistics;
+import org.araqnid.stuff.activity.ActivityLoadShedder;
+import org.araqnid.stuff.activity.ActivityRegistry;
 import org.araqnid.stuff.activity.ActivityScope;
+import org.araqnid.stuff.activity.ActivityTiming;
+import org.araqnid.stuff.activity.ActivityTraceExporter;
+import org.araqnid.stuff.activity.ActivityWatchdog;
+import org.araqnid.stuff.activity.AsyncActivityEventSink;
+import org.araqnid.stuff.activity.ChannelActivityJsonEvents;
+import org.araqnid.stuff.activity.FanOutActivityEventSink;
+import org.araqnid.stuff.activity.LatencyHistogram;
 import org.araqnid.stuff.activity.LogActivityEvents;
+import org.araqnid.stuff.activity.NodeIdAllocator;
+import org.araqnid.stuff.activity.ResourceAccounting;
+import org.araqnid.stuff.activity.SheddingActivityEventSink;
+import org.araqnid.stuff.activity.SpanActivityEventSink;
+import org.araqnid.stuff.activity.TailSamplingActivityEventSink;
+import org.araqnid.stuff.activity.TeeActivityEventSink;
 import org.araqnid.stuff.activity.ThreadActivity;
 
 public class AppModule extends AbstractModule {
@@ -36,16 +68,163 @@ public class AppModule extends AbstractModule {
 
 	@Override
 	protected void configure() {
-		install(new JettyModule(port(61000)));
+		install(new JettyModule(port(61000), getenv("HTTP_PIPELINE").orElse("servlet").equals("fused"), threadPoolSettings()));
 		bindConstant().annotatedWith(ServerIdentity.class).to(gethostname());
 		bind(UUID.class).annotatedWith(ServerIdentity.class).toInstance(UUID.randomUUID());
 		bind(Clock.class).toInstance(Clock.systemDefaultZone());
 		bind(ActivityScope.class).toInstance(ThreadActivity::get);
-		bind(ActivityEventSink.class).to(LogActivityEvents.class);
+		bind(NodeIdAllocator.class).toInstance(getenv("ACTIVITY_NODE_IDS").orElse("blocks").equals("sequential")
+				? NodeIdAllocator.sequential() : NodeIdAllocator.DEFAULT);
 
+		activityEventDestinations().addBinding("events").to(Key.get(ActivityEventSink.class, Names.named("events")));
+		activityEventDestinations().addBinding("flamegraph").to(ActivityFlameGraph.class);
+		if (getenv("ACTIVITY_JOURNAL_DIR").isPresent()) {
+			activityEventDestinations().addBinding("journal").to(Key.get(ActivityEventSink.class, Names.named("journal")));
+		}
+		services().addBinding().to(FanOutActivityEventSink.class);
+		if (getenv("ACTIVITY_WATCHDOG_THRESHOLD").isPresent()) {
+			services().addBinding().to(ActivityWatchdog.class);
+		}
+		if (getenv("ACTIVITY_SHED_LATENCY").isPresent()) {
+			services().addBinding().to(ActivityLoadShedder.class);
+		}
 		Multibinder.newSetBinder(binder(), ServiceManager.Listener.class).addBinding().to(AppStartupBanner.class);
 	}
 
+	@Provides
+	@Singleton
+	public ObjectMapper activityObjectMapper() {
+		return new ObjectMapper()
+				.registerModule(new Jdk8Module())
+				.registerModule(new JavaTimeModule())
+				.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+				.disable(SerializationFeature.WRITE_DURATIONS_AS_TIMESTAMPS);
+	}
+
+	@Provides
+	@Singleton
+	public ActivityIdGenerator activityIdGenerator(Clock clock) {
+		return getenv("ACTIVITY_IDS").orElse("time").equals("random")
+				? ActivityIdGenerator.secureRandom() : ActivityIdGenerator.timeOrdered(clock);
+	}
+
+	@Provides
+	@Singleton
+	public ActivityTiming activityTiming(Clock clock) {
+		return getenv("ACTIVITY_TIMING").orElse("per-node").equals("monotonic")
+				? ActivityTiming.monotonic(clock) : ActivityTiming.perNode(clock);
+	}
+
+	@Provides
+	@Singleton
+	public ResourceAccounting resourceAccounting() {
+		return new ResourceAccounting(getenv("ACTIVITY_RESOURCE_SAMPLE_RATIO").map(Double::valueOf).orElse(0.0));
+	}
+
+	@Provides
+	@Singleton
+	public ActivityEventSink activityEventSink(ActivityLatencyStatistics latencyStatistics,
+			FanOutActivityEventSink fanOutActivityEventSink) {
+		return new TeeActivityEventSink(ImmutableList.of(latencyStatistics, fanOutActivityEventSink));
+	}
+
+	@Provides
+	@Singleton
+	public FanOutActivityEventSink fanOutActivityEventSink(Map<String, ActivityEventSink> destinations) {
+		return new FanOutActivityEventSink(destinations,
+				getenv("ACTIVITY_EVENT_BUFFER").map(Integer::valueOf).orElse(8192),
+				getenv("ACTIVITY_EVENT_OVERFLOW").map(AsyncActivityEventSink.OverflowPolicy::valueOf)
+						.orElse(AsyncActivityEventSink.OverflowPolicy.DROP),
+				getenv("ACTIVITY_EVENT_SAMPLE_RATE").map(Integer::valueOf).orElse(10));
+	}
+
+	@Provides
+	@Named("events")
+	public ActivityEventSink eventsDestination(Provider<LogActivityEvents> logActivityEvents,
+			Provider<ActivityLoadShedder> loadShedder,
+			AppVersion appVersion,
+			ObjectMapper objectMapper,
+			@ServerIdentity UUID instanceId,
+			Clock clock) throws IOException {
+		ActivityEventSink underlying;
+		if (getenv("ACTIVITY_EVENT_FORMAT").orElse("log").equals("json")) {
+			Optional<String> file = getenv("ACTIVITY_EVENT_FILE");
+			ChannelActivityJsonEvents jsonEvents = file.isPresent()
+					? ChannelActivityJsonEvents.toFile(objectMapper, instanceId, Paths.get(file.get()), 65536)
+					: ChannelActivityJsonEvents.toStandardOutput(objectMapper, instanceId, 65536);
+			Optional<Duration> spanThreshold = getenv("ACTIVITY_EVENT_SPANS").map(Duration::parse);
+			underlying = spanThreshold.isPresent() ? new SpanActivityEventSink(jsonEvents, spanThreshold.get()) : jsonEvents;
+		}
+		else {
+			underlying = logActivityEvents.get();
+		}
+		Optional<String> traceDirectory = getenv("ACTIVITY_TRACE_DIR");
+		if (traceDirectory.isPresent()) {
+			ActivityTraceExporter exporter = new ActivityTraceExporter(Paths.get(traceDirectory.get()),
+					getenv("ACTIVITY_TRACE_FORMAT").map(ActivityTraceExporter.Format::valueOf)
+							.orElse(ActivityTraceExporter.Format.CHROME),
+					Optional.ofNullable(appVersion.title).orElse("stuff"),
+					instanceId,
+					getenv("ACTIVITY_TRACE_FILE_SIZE").map(Long::valueOf).orElse(64L * 1024 * 1024),
+					getenv("ACTIVITY_TRACE_FILE_AGE").map(Duration::parse).orElse(Duration.ofHours(1)),
+					getenv("ACTIVITY_TRACE_FILES").map(Integer::valueOf).orElse(24),
+					objectMapper, clock);
+			underlying = new TeeActivityEventSink(ImmutableList.of(underlying, exporter));
+		}
+		Optional<Duration> sampleLatency = getenv("ACTIVITY_SAMPLE_LATENCY").map(Duration::parse);
+		if (sampleLatency.isPresent()) {
+			underlying = new TailSamplingActivityEventSink(underlying, sampleLatency.get(),
+					getenv("ACTIVITY_SAMPLE_RATE").map(Double::valueOf).orElse(0.01),
+					getenv("ACTIVITY_SAMPLE_MAX_EVENTS").map(Integer::valueOf).orElse(1000),
+					getenv("ACTIVITY_SAMPLE_BUFFER").map(Integer::valueOf).orElse(100000),
+					Duration.ofMinutes(5));
+		}
+		if (getenv("ACTIVITY_SHED_LATENCY").isPresent()) {
+			underlying = new SheddingActivityEventSink(underlying, loadShedder.get());
+		}
+		return underlying;
+	}
+
+	@Provides
+	@Singleton
+	public ActivityLoadShedder activityLoadShedder(Provider<FanOutActivityEventSink> fanOutActivityEventSink,
+			ActivityLatencyStatistics latencyStatistics) {
+		return new ActivityLoadShedder(() -> {
+					FanOutActivityEventSink.DestinationStatus status = fanOutActivityEventSink.get().status().get("events");
+					return (double) status.lag() / status.capacity();
+				},
+				() -> {
+					LatencyHistogram.Snapshot snapshot = latencyStatistics.snapshot("HttpRequest", 1);
+					return snapshot != null ? snapshot.percentileNanos(99) : 0;
+				},
+				getenv("ACTIVITY_SHED_QUEUE_HIGH").map(Double::valueOf).orElse(0.5),
+				getenv("ACTIVITY_SHED_QUEUE_LOW").map(Double::valueOf).orElse(0.1),
+				getenv("ACTIVITY_SHED_LATENCY").map(Duration::parse).orElse(Duration.ofSeconds(1)),
+				getenv("ACTIVITY_SHED_RECOVERY_CHECKS").map(Integer::valueOf).orElse(10),
+				getenv("ACTIVITY_SHED_SAMPLE_RATE").map(Integer::valueOf).orElse(10),
+				getenv("ACTIVITY_SHED_INTERVAL").map(Duration::parse).orElse(Duration.ofSeconds(1)));
+	}
+
+	@Provides
+	@Named("journal")
+	public ActivityEventSink journalDestination(ObjectMapper objectMapper, Clock clock) throws IOException {
+		return new ActivityJournal(Paths.get(getenv("ACTIVITY_JOURNAL_DIR").get()),
+				getenv("ACTIVITY_JOURNAL_SEGMENT_SIZE").map(Integer::valueOf).orElse(64 * 1024 * 1024),
+				getenv("ACTIVITY_JOURNAL_SEGMENT_AGE").map(Duration::parse).orElse(Duration.ofHours(1)),
+				getenv("ACTIVITY_JOURNAL_SEGMENTS").map(Integer::valueOf).orElse(72),
+				objectMapper, clock);
+	}
+
+	@Provides
+	@Singleton
+	public ActivityWatchdog activityWatchdog(ActivityRegistry activityRegistry) {
+		return new ActivityWatchdog(activityRegistry,
+				getenv("ACTIVITY_WATCHDOG_THRESHOLD").map(Duration::parse).orElse(Duration.ofSeconds(10)),
+				getenv("ACTIVITY_WATCHDOG_INTERVAL").map(Duration::parse).orElse(Duration.ofSeconds(1)),
+				getenv("ACTIVITY_WATCHDOG_SAMPLES").map(Integer::valueOf).orElse(3),
+				getenv("ACTIVITY_WATCHDOG_RATE").map(Double::valueOf).orElse(5.0));
+	}
+
 	@Provides
 	@Singleton
 	public ServiceManager serviceManager(Set<Service> services, Set<ServiceManager.Listener> listeners) {
@@ -64,6 +243,14 @@ public class AppModule extends AbstractModule {
 		return new AppVersion(title, vendor, version);
 	}
 
+	private Multibinder<Service> services() {
+		return Multibinder.newSetBinder(binder(), Service.class);
+	}
+
+	private MapBinder<String, ActivityEventSink> activityEventDestinations() {
+		return MapBinder.newMapBinder(binder(), String.class, ActivityEventSink.class);
+	}
+
 	private Optional<String> getenv(String name) {
 		return Optional.ofNullable(environment.get(name));
 	}
@@ -72,6 +259,19 @@ public class AppModule extends AbstractModule {
 		return getenv("PORT").map(Integer::valueOf).orElse(defaultPort);
 	}
 
+	private ThreadPoolSettings threadPoolSettings() {
+		ThreadPoolSettings defaults = ThreadPoolSettings.DEFAULT;
+		return new ThreadPoolSettings(
+				getenv("HTTP_EXECUTOR").map(ThreadPoolSettings.Executor::valueOf).orElse(defaults.executor),
+				getenv("HTTP_THREADS_MIN").map(Integer::valueOf).orElse(defaults.minThreads),
+				getenv("HTTP_THREADS_MAX").map(Integer::valueOf).orElse(defaults.maxThreads),
+				getenv("HTTP_THREADS_IDLE_TIMEOUT").map(Duration::parse).orElse(defaults.idleTimeout),
+				getenv("HTTP_THREADS_QUEUE").map(Integer::valueOf).orElse(defaults.queueCapacity),
+				getenv("HTTP_THREADS_RESERVED").map(Integer::valueOf).orElse(defaults.reservedThreads),
+				getenv("HTTP_ACCEPTORS").map(Integer::valueOf).orElse(defaults.acceptors),
+				getenv("HTTP_SELECTORS").map(Integer::valueOf).orElse(defaults.selectors));
+	}
+
 	private static String gethostname() {
 		try {
 			return InetAddress.getLocalHost().getHostName();
@@ -5,25 +5,77 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
 import java.nio.channels.ReadableByteChannel;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.Nullable;
 
-import com.google.common.base.Splitter;
-import com.google.common.collect.ImmutableSet;
-import com.google.common.reflect.ClassPath;
-import com.google.common.reflect.ClassPath.ResourceInfo;
+import com.google.common.io.ByteStreams;
 import org.eclipse.jetty.util.resource.Resource;
 
+/**
+ * Web root embedded in the classpath.
+ * <p>
+ * Existence and directory listings are answered from an {@link EmbeddedResourceIndex}, so only file content
+ * goes to the class loader.
+ * <p>
+ * The content of each file is read once into a read-only direct buffer, shared by every resource under the same
+ * root, so that lengths are known and channels and buffers can be handed to Jetty without copying through the heap
+ * on each request. Content is copied even when the classpath entry is a plain file, so that rebuilding the file
+ * while the server runs cannot change or invalidate it; for the same reason no {@link File} is exposed.
+ */
 public class EmbeddedResource extends Resource {
 	private final ClassLoader classLoader;
 	private final String path;
-	private final ClassPath classPath;
+	private final EmbeddedResourceIndex index;
+	private final ConcurrentMap<String, Content> contents;
+	@Nullable private final EmbeddedResourceIndex.Node node;
 
-	EmbeddedResource(ClassLoader classLoader, String path, ClassPath classPath) {
+	EmbeddedResource(ClassLoader classLoader, EmbeddedResourceIndex index) {
+		this(classLoader, index.root(), index, new ConcurrentHashMap<>());
+	}
+
+	private EmbeddedResource(ClassLoader classLoader,
+			String path,
+			EmbeddedResourceIndex index,
+			ConcurrentMap<String, Content> contents) {
 		this.classLoader = classLoader;
 		this.path = path;
-		this.classPath = classPath;
+		this.index = index;
+		this.contents = contents;
+		this.node = index.lookup(path);
+	}
+
+	/**
+	 * Content of this resource, loaded on first use.
+	 *
+	 * @return independent view of a shared read-only direct buffer, or null if this is not a file
+	 */
+	@Nullable
+	public ByteBuffer getDirectBuffer() throws IOException {
+		Content content = content();
+		return content != null ? content.buffer.duplicate() : null;
+	}
+
+	@Nullable
+	private Content content() throws IOException {
+		if (node == null || node.isDirectory()) return null;
+		Content content = contents.get(path);
+		if (content != null) return content;
+		URL url = classLoader.getResource(path);
+		if (url == null) return null;
+		URLConnection connection = url.openConnection();
+		try (InputStream input = connection.getInputStream()) {
+			byte[] bytes = ByteStreams.toByteArray(input);
+			ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+			buffer.put(bytes).flip();
+			content = new Content(buffer.asReadOnlyBuffer(), connection.getLastModified());
+		}
+		Content existing = contents.putIfAbsent(path, content);
+		return existing != null ? existing : content;
 	}
 
 	@Override
@@ -33,23 +85,32 @@ public class EmbeddedResource extends Resource {
 
 	@Override
 	public boolean exists() {
-		URL url = classLoader.getResource(path);
-		return url != null;
+		return node != null;
 	}
 
 	@Override
 	public boolean isDirectory() {
-		return false;
+		return node != null && node.isDirectory();
 	}
 
 	@Override
 	public long lastModified() {
-		return -1;
+		try {
+			Content content = content();
+			return content != null ? content.lastModified : -1;
+		} catch (IOException e) {
+			return -1;
+		}
 	}
 
 	@Override
 	public long length() {
-		return -1;
+		try {
+			Content content = content();
+			return content != null ? content.buffer.remaining() : -1;
+		} catch (IOException e) {
+			return -1;
+		}
 	}
 
 	@Override
@@ -75,7 +136,8 @@ public class EmbeddedResource extends Resource {
 
 	@Override
 	public ReadableByteChannel getReadableByteChannel() throws IOException {
-		return null;
+		ByteBuffer buffer = getDirectBuffer();
+		return buffer != null ? new BufferChannel(buffer) : null;
 	}
 
 	@Override
@@ -94,30 +156,57 @@ public class EmbeddedResource extends Resource {
 
 	@Override
 	public String[] list() {
-		String prefix = path;
-		if (!prefix.endsWith("/")) {
-			prefix = prefix + "/";
-		}
-		Set<String> matching = new HashSet<>();
-		ImmutableSet<ResourceInfo> resources = classPath.getResources();
-		for (ResourceInfo resource : resources) {
-			String name = resource.getResourceName();
-			if (name.startsWith(prefix)) {
-				String tail = name.substring(prefix.length());
-				Iterable<String> parts = Splitter.on('/').split(tail);
-				matching.add(parts.iterator().next());
-			}
-		}
-		return matching.toArray(new String[matching.size()]);
+		return node != null && node.isDirectory() ? node.list() : null;
 	}
 
 	@Override
 	public Resource addPath(String path) throws IOException {
-		return new EmbeddedResource(classLoader, this.path + path, classPath);
+		return new EmbeddedResource(classLoader, this.path + path, index, contents);
 	}
 
 	@Override
 	public String toString() {
 		return "Classpath:/" + path;
 	}
+
+	private static final class Content {
+		final ByteBuffer buffer;
+		final long lastModified;
+
+		Content(ByteBuffer buffer, long lastModified) {
+			this.buffer = buffer;
+			this.lastModified = lastModified;
+		}
+	}
+
+	private static final class BufferChannel implements ReadableByteChannel {
+		private final ByteBuffer content;
+		private boolean open = true;
+
+		BufferChannel(ByteBuffer content) {
+			this.content = content;
+		}
+
+		@Override
+		public int read(ByteBuffer dst) throws IOException {
+			if (!open) throw new ClosedChannelException();
+			if (!content.hasRemaining()) return -1;
+			int count = Math.min(content.remaining(), dst.remaining());
+			ByteBuffer chunk = content.duplicate();
+			chunk.limit(chunk.position() + count);
+			dst.put(chunk);
+			content.position(content.position() + count);
+			return count;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return open;
+		}
+
+		@Override
+		public void close() {
+			open = false;
+		}
+	}
 }
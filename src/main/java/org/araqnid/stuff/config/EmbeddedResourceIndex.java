@@ -0,0 +1,135 @@
+package org.araqnid.stuff.config;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import javax.annotation.Nullable;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.reflect.ClassPath;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Immutable directory tree of the files under an embedded web root.
+ * <p>
+ * The build writes the file list into {@value #INDEX_RESOURCE}; if that is missing (such as when running from an
+ * IDE), the classpath is scanned instead.
+ */
+public final class EmbeddedResourceIndex {
+	private static final Logger LOG = LoggerFactory.getLogger(EmbeddedResourceIndex.class);
+	static final String INDEX_RESOURCE = "META-INF/stuff-web.index";
+	private static final Splitter PATH_SPLITTER = Splitter.on('/').omitEmptyStrings();
+
+	private final String root;
+	private final Node tree;
+
+	private EmbeddedResourceIndex(String root, Node tree) {
+		this.root = root;
+		this.tree = tree;
+	}
+
+	public static EmbeddedResourceIndex load(ClassLoader classLoader, String root) throws IOException {
+		try (InputStream input = classLoader.getResourceAsStream(INDEX_RESOURCE)) {
+			if (input != null) {
+				return of(root, read(input));
+			}
+		}
+		long startTime = System.nanoTime();
+		String prefix = root + "/";
+		List<String> files = new ArrayList<>();
+		for (ClassPath.ResourceInfo resource : ClassPath.from(classLoader).getResources()) {
+			String name = resource.getResourceName();
+			if (name.startsWith(prefix)) {
+				files.add(name.substring(prefix.length()));
+			}
+		}
+		LOG.info("No {} found, scanned classpath for {} in {}ms", INDEX_RESOURCE, root, (System.nanoTime() - startTime) / 1000000);
+		return of(root, files);
+	}
+
+	/**
+	 * @param files file paths relative to the root
+	 */
+	public static EmbeddedResourceIndex of(String root, Iterable<String> files) {
+		MutableNode top = new MutableNode();
+		for (String file : files) {
+			MutableNode node = top;
+			for (String part : PATH_SPLITTER.split(file)) {
+				node = node.children.computeIfAbsent(part, k -> new MutableNode());
+			}
+		}
+		return new EmbeddedResourceIndex(root, top.freeze());
+	}
+
+	static List<String> read(InputStream input) throws IOException {
+		List<String> files = new ArrayList<>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+		String line;
+		while ((line = reader.readLine()) != null) {
+			if (!line.isEmpty()) files.add(line);
+		}
+		return files;
+	}
+
+	public String root() {
+		return root;
+	}
+
+	/**
+	 * Finds a classpath resource path in the tree.
+	 *
+	 * @return node, or null if the path is outside the root or not present
+	 */
+	@Nullable
+	public Node lookup(String path) {
+		if (!path.startsWith(root)) return null;
+		if (path.length() > root.length() && path.charAt(root.length()) != '/') return null;
+		Node node = tree;
+		for (String part : PATH_SPLITTER.split(path.substring(root.length()))) {
+			node = node.children.get(part);
+			if (node == null) return null;
+		}
+		return node;
+	}
+
+	public static final class Node {
+		private final ImmutableSortedMap<String, Node> children;
+
+		private Node(ImmutableSortedMap<String, Node> children) {
+			this.children = children;
+		}
+
+		public boolean isDirectory() {
+			return !children.isEmpty();
+		}
+
+		/** Child names, with directories suffixed by {@code /} */
+		public String[] list() {
+			String[] names = new String[children.size()];
+			int i = 0;
+			for (Map.Entry<String, Node> e : children.entrySet()) {
+				names[i++] = e.getValue().isDirectory() ? e.getKey() + "/" : e.getKey();
+			}
+			return names;
+		}
+	}
+
+	private static final class MutableNode {
+		final SortedMap<String, MutableNode> children = new TreeMap<>();
+
+		Node freeze() {
+			ImmutableSortedMap.Builder<String, Node> builder = ImmutableSortedMap.naturalOrder();
+			children.forEach((name, child) -> builder.put(name, child.freeze()));
+			return new Node(builder.build());
+		}
+	}
+}
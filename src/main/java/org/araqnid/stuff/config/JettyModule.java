@@ -4,19 +4,24 @@ import java.io.IOException;
 import java.nio.file.Paths;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import javax.inject.Provider;
 import javax.inject.Singleton;
 import javax.servlet.DispatcherType;
 import javax.servlet.ServletContext;
 
 import com.google.common.collect.ImmutableList;
-import com.google.common.reflect.ClassPath;
 import com.google.common.util.concurrent.Service;
 import com.google.inject.AbstractModule;
 import com.google.inject.Module;
 import com.google.inject.Provides;
 import com.google.inject.multibindings.Multibinder;
 import com.google.inject.servlet.GuiceFilter;
+import org.araqnid.stuff.FusedRequestHandler;
 import org.araqnid.stuff.JettyService;
+import org.araqnid.stuff.StaticAssetServlet;
+import org.araqnid.stuff.StaticAssets;
 import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
 import org.eclipse.jetty.server.Connector;
 import org.eclipse.jetty.server.Handler;
@@ -29,19 +34,30 @@ import org.eclipse.jetty.server.handler.gzip.GzipHandler;
 import org.eclipse.jetty.server.session.DefaultSessionIdManager;
 import org.eclipse.jetty.servlet.DefaultServlet;
 import org.eclipse.jetty.servlet.FilterHolder;
+import org.eclipse.jetty.servlet.ServletHolder;
 import org.eclipse.jetty.servlet.ServletContextHandler;
 import org.eclipse.jetty.util.resource.PathResource;
+import org.eclipse.jetty.util.BlockingArrayQueue;
 import org.eclipse.jetty.util.resource.Resource;
 import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ThreadPool;
 import org.jboss.resteasy.plugins.guice.GuiceResteasyBootstrapServletContextListener;
 import org.jboss.resteasy.plugins.server.servlet.Filter30Dispatcher;
 import org.jboss.resteasy.plugins.server.servlet.FilterDispatcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public final class JettyModule extends AbstractModule {
+	private static final Logger LOG = LoggerFactory.getLogger(JettyModule.class);
+
 	private final int port;
+	private final boolean fusedHandler;
+	private final ThreadPoolSettings threads;
 
-	JettyModule(int port) {
+	JettyModule(int port, boolean fusedHandler, ThreadPoolSettings threads) {
 		this.port = port;
+		this.fusedHandler = fusedHandler;
+		this.threads = threads;
 	}
 
 	@Override
@@ -60,16 +76,35 @@ public final class JettyModule extends AbstractModule {
 	}
 
 	@Provides
-	public Handler context(GuiceFilter guiceFilter,
+	public Handler context(Provider<GuiceFilter> guiceFilter,
+			Provider<Filter30Dispatcher> resteasyDispatcher,
+			Provider<FusedRequestHandler> fusedRequestHandler,
 			Resource baseResource,
-			GuiceResteasyBootstrapServletContextListener resteasyListener) {
+			GuiceResteasyBootstrapServletContextListener resteasyListener) throws IOException {
 		ServletContextHandler context = new ServletContextHandler();
 		context.setContextPath("/");
-		context.addFilter(new FilterHolder(guiceFilter), "/*", EnumSet.of(DispatcherType.REQUEST));
-		context.addServlet(DefaultServlet.class, "/");
+		if (fusedHandler) {
+			// identity and activity are handled outside the context, so only API requests need a filter
+			context.addFilter(new FilterHolder(resteasyDispatcher.get()), "/_api/*", EnumSet.of(DispatcherType.REQUEST));
+		}
+		else {
+			context.addFilter(new FilterHolder(guiceFilter.get()), "/*", EnumSet.of(DispatcherType.REQUEST));
+		}
+		// the embedded web root cannot change, so serve it from memory; a web directory is served live
+		if (baseResource instanceof EmbeddedResource) {
+			context.addServlet(new ServletHolder(new StaticAssetServlet(StaticAssets.load(baseResource))), "/");
+		}
+		else {
+			context.addServlet(DefaultServlet.class, "/");
+		}
 		context.setBaseResource(baseResource);
 		context.addEventListener(resteasyListener);
 
+		if (fusedHandler) {
+			FusedRequestHandler handler = fusedRequestHandler.get();
+			handler.setHandler(gzip(context));
+			return handler;
+		}
 		return gzip(context);
 	}
 
@@ -83,7 +118,7 @@ public final class JettyModule extends AbstractModule {
 	public Resource webappRoot() throws IOException {
 		if (getClass().getResource("/stuff/web/index.html") != null) {
 			ClassLoader classLoader = getClass().getClassLoader();
-			return new EmbeddedResource(classLoader, "stuff/web", ClassPath.from(classLoader));
+			return new EmbeddedResource(classLoader, EmbeddedResourceIndex.load(classLoader, "stuff/web"));
 		}
 		else {
 			return new PathResource(Paths.get("web"));
@@ -93,20 +128,42 @@ public final class JettyModule extends AbstractModule {
 	@Provides
 	@Singleton
 	public Server server(Handler handler) {
-		Server server = new Server();
+		ThreadPool threadPool = threadPool();
+		Server server = new Server(threadPool);
 		HttpConfiguration config = new HttpConfiguration();
 		HttpConnectionFactory http1 = new HttpConnectionFactory(config);
 		HTTP2CServerConnectionFactory http2c = new HTTP2CServerConnectionFactory(config);
-		ServerConnector connector = new ServerConnector(server, http1, http2c);
+		ServerConnector connector = new ServerConnector(server, threads.acceptors, threads.selectors, http1, http2c);
 		connector.setPort(port);
+		if (threadPool instanceof QueuedThreadPool) {
+			int needed = connector.getAcceptors() + connector.getSelectorManager().getSelectorCount() + threads.reservedThreads;
+			if (threads.maxThreads < needed) {
+				throw new IllegalStateException(String.format("%d threads is too few for %d acceptors, %d selectors and %d reserved for requests",
+						threads.maxThreads, connector.getAcceptors(), connector.getSelectorManager().getSelectorCount(), threads.reservedThreads));
+			}
+		}
 		server.setConnectors(new Connector[] { connector });
 		server.setSessionIdManager(new DefaultSessionIdManager(server));
 		server.setHandler(handler);
-		server.getBean(QueuedThreadPool.class).setName("Jetty");
 		server.setRequestLog(new Slf4jRequestLog());
 		return server;
 	}
 
+	private ThreadPool threadPool() {
+		if (threads.executor == ThreadPoolSettings.Executor.VIRTUAL) {
+			Optional<VirtualThreadPool> virtualThreadPool = VirtualThreadPool.create("Jetty-virtual");
+			if (virtualThreadPool.isPresent()) return virtualThreadPool.get();
+			LOG.warn("Virtual threads are not available in this runtime, using a thread pool instead");
+		}
+		BlockingQueue<Runnable> queue = threads.queueCapacity > 0
+				? new BlockingArrayQueue<>(Math.min(threads.minThreads, threads.queueCapacity), threads.minThreads, threads.queueCapacity)
+				: new BlockingArrayQueue<>(threads.minThreads, threads.minThreads);
+		QueuedThreadPool threadPool = new QueuedThreadPool(threads.maxThreads, threads.minThreads,
+				(int) threads.idleTimeout.toMillis(), queue);
+		threadPool.setName("Jetty");
+		return threadPool;
+	}
+
 	private Multibinder<Service> services() {
 		return Multibinder.newSetBinder(binder(), Service.class);
 	}
@@ -26,7 +26,12 @@ import com.google.inject.Key;
 import com.google.inject.Provides;
 import com.google.inject.spi.Dependency;
 import com.google.inject.spi.ProviderWithDependencies;
+import org.araqnid.stuff.ActivityResources;
+import org.araqnid.stuff.ActivitySinkResources;
+import org.araqnid.stuff.FlameGraphResources;
 import org.araqnid.stuff.InfoResources;
+import org.araqnid.stuff.LatencyResources;
+import org.araqnid.stuff.ResourceUsageResources;
 import org.jboss.resteasy.core.Dispatcher;
 import org.jboss.resteasy.plugins.server.servlet.FilterDispatcher;
 import org.jboss.resteasy.plugins.server.servlet.HttpServletDispatcher;
@@ -67,6 +72,11 @@ public final class ResteasyModule extends AbstractModule {
 	@Override
 	protected void configure() {
 		bind(InfoResources.class);
+		bind(LatencyResources.class);
+		bind(ActivityResources.class);
+		bind(ResourceUsageResources.class);
+		bind(FlameGraphResources.class);
+		bind(ActivitySinkResources.class);
 
 		install(new GenericProviders(FilterDispatcher.class));
 	}
@@ -8,8 +8,9 @@ import org.jboss.resteasy.plugins.server.servlet.Filter30Dispatcher;
 public class ServletDispatchModule extends ServletModule {
 	@Override
 	protected void configureServlets() {
-		filter("/*").through(Filter30Dispatcher.class);
+		// RESTEasy only continues the chain for requests it has no resource for, so these must come first
 		filter("/*").through(ServerIdentityFilter.class);
 		filter("/*").through(ActivityFilter.class);
+		filter("/*").through(Filter30Dispatcher.class);
 	}
 }
@@ -0,0 +1,53 @@
+package org.araqnid.stuff.config;
+
+import java.time.Duration;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * How Jetty runs its acceptors, selectors and request handling.
+ */
+final class ThreadPoolSettings {
+	enum Executor {
+		/** A bounded pool of platform threads */
+		POOL,
+		/** A new virtual thread for each task, falling back to the pool on runtimes without virtual threads */
+		VIRTUAL
+	}
+
+	static final ThreadPoolSettings DEFAULT = new ThreadPoolSettings(Executor.POOL, 8, 200, Duration.ofMinutes(1), -1, 1, -1, -1);
+
+	final Executor executor;
+	final int minThreads;
+	final int maxThreads;
+	final Duration idleTimeout;
+	/** Maximum number of queued tasks, or -1 for no limit */
+	final int queueCapacity;
+	/** Number of pool threads that must be left for request handling after acceptors and selectors */
+	final int reservedThreads;
+	/** Number of acceptor threads, or -1 to let Jetty choose */
+	final int acceptors;
+	/** Number of selector threads, or -1 to let Jetty choose */
+	final int selectors;
+
+	ThreadPoolSettings(Executor executor,
+			int minThreads,
+			int maxThreads,
+			Duration idleTimeout,
+			int queueCapacity,
+			int reservedThreads,
+			int acceptors,
+			int selectors) {
+		Preconditions.checkArgument(minThreads > 0 && minThreads <= maxThreads, "thread counts must satisfy 0 < min <= max: %s, %s", minThreads, maxThreads);
+		Preconditions.checkArgument(queueCapacity == -1 || queueCapacity > 0, "queue capacity must be positive or -1: %s", queueCapacity);
+		Preconditions.checkArgument(reservedThreads >= 1, "at least one thread must be reserved for request handling: %s", reservedThreads);
+		this.executor = executor;
+		this.minThreads = minThreads;
+		this.maxThreads = maxThreads;
+		this.idleTimeout = idleTimeout;
+		this.queueCapacity = queueCapacity;
+		this.reservedThreads = reservedThreads;
+		this.acceptors = acceptors;
+		this.selectors = selectors;
+	}
+}
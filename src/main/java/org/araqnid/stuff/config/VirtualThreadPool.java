@@ -0,0 +1,91 @@
+package org.araqnid.stuff.config;
+
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+/**
+ * Jetty thread pool that runs each task on a new virtual thread, so that blocking request handling is not limited by
+ * a pool size.
+ * <p>
+ * This code is compiled for Java 8, so virtual threads are found by reflection; {@link #create} returns empty on
+ * runtimes without them. Acceptors and selectors also run on virtual threads, with the JDK compensating for their
+ * blocking.
+ */
+public final class VirtualThreadPool extends AbstractLifeCycle implements ThreadPool {
+	private final ThreadFactory threadFactory;
+	private final AtomicInteger threads = new AtomicInteger();
+	private volatile CountDownLatch stopped = new CountDownLatch(1);
+
+	private VirtualThreadPool(ThreadFactory threadFactory) {
+		this.threadFactory = threadFactory;
+	}
+
+	public static Optional<VirtualThreadPool> create(String name) {
+		try {
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, name + "-", 0L);
+			return Optional.of(new VirtualThreadPool((ThreadFactory) builderClass.getMethod("factory").invoke(builder)));
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return Optional.empty();
+		}
+	}
+
+	@Override
+	public void execute(Runnable task) {
+		if (!isRunning()) throw new RejectedExecutionException("Thread pool is not running");
+		threads.incrementAndGet();
+		Thread thread = threadFactory.newThread(() -> {
+			try {
+				task.run();
+			} finally {
+				threads.decrementAndGet();
+			}
+		});
+		thread.start();
+	}
+
+	@Override
+	protected void doStart() throws Exception {
+		stopped = new CountDownLatch(1);
+		super.doStart();
+	}
+
+	@Override
+	protected void doStop() throws Exception {
+		stopped.countDown();
+		super.doStop();
+	}
+
+	@Override
+	public void join() throws InterruptedException {
+		stopped.await();
+	}
+
+	/** Number of tasks currently running */
+	@Override
+	public int getThreads() {
+		return threads.get();
+	}
+
+	@Override
+	public int getIdleThreads() {
+		return 0;
+	}
+
+	@Override
+	public boolean isLowOnThreads() {
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		return "VirtualThreadPool[threads=" + threads.get() + "]";
+	}
+}
@@ -0,0 +1,71 @@
+package org.araqnid.stuff;
+
+import java.io.IOException;
+import java.util.UUID;
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.araqnid.stuff.activity.ActivityFilter;
+import org.araqnid.stuff.activity.ActivityIdGenerator;
+import org.araqnid.stuff.activity.ActivityNode;
+import org.araqnid.stuff.activity.ActivityRegistry;
+import org.araqnid.stuff.activity.ActivityTiming;
+import org.araqnid.stuff.activity.NodeIdAllocator;
+import org.araqnid.stuff.activity.RecordingActivityEventSink;
+import org.araqnid.stuff.activity.ResourceAccounting;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class FusedRequestHandlerTest {
+	private final RecordingActivityEventSink sink = new RecordingActivityEventSink();
+
+	@Test
+	public void async_dispatch_not_tracked_again() throws Exception {
+		ActivityFilter activityFilter = new ActivityFilter(sink, NodeIdAllocator.DEFAULT, ActivityIdGenerator.secureRandom(),
+				ActivityTiming.DEFAULT, new ActivityRegistry(), ResourceAccounting.DISABLED);
+		FusedRequestHandler handler = new FusedRequestHandler("test", UUID.randomUUID(), activityFilter);
+		ServletContextHandler context = new ServletContextHandler();
+		ServletHolder servlet = new ServletHolder(new RedispatchingServlet());
+		servlet.setAsyncSupported(true);
+		context.addServlet(servlet, "/*");
+		handler.setHandler(context);
+		Server server = new Server(0);
+		server.setHandler(handler);
+		server.start();
+		try (CloseableHttpClient client = HttpClients.createDefault();
+				CloseableHttpResponse response = client.execute(new HttpGet("http://localhost:"
+						+ ((ServerConnector) server.getConnectors()[0]).getLocalPort() + "/"))) {
+			assertEquals(200, response.getStatusLine().getStatusCode());
+			assertEquals("ASYNC", EntityUtils.toString(response.getEntity()));
+			assertEquals(1, response.getHeaders(ServerIdentityFilter.SERVER_IDENTITY_HEADER).length);
+			assertEquals(1, response.getHeaders(ActivityFilter.ACTIVITY_HEADER).length);
+		} finally {
+			server.stop();
+		}
+		assertEquals(1, sink.starts().stream().filter(e -> e.nodeParentId == ActivityNode.NO_PARENT).count());
+	}
+
+	private static final class RedispatchingServlet extends HttpServlet {
+		@Override
+		protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+			if (req.getDispatcherType() == DispatcherType.REQUEST) {
+				req.startAsync().dispatch();
+				return;
+			}
+			resp.setContentType("text/plain");
+			resp.getWriter().write(req.getDispatcherType().name());
+		}
+	}
+}
@@ -0,0 +1,109 @@
+package org.araqnid.stuff;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteStreams;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class StaticAssetsTest {
+	private static final byte[] SCRIPT = Strings.repeat("console.log('hello');\n", 50).getBytes(StandardCharsets.UTF_8);
+	private static final byte[] BROTLI = { 1, 2, 3 };
+
+	private final StaticAssets assets = new StaticAssets(ImmutableMap.of(
+			"/index.html", ByteBuffer.wrap("<html></html>".getBytes(StandardCharsets.UTF_8)),
+			"/app.js", ByteBuffer.wrap(SCRIPT),
+			"/app.js.br", ByteBuffer.wrap(BROTLI)), path -> path.endsWith(".js") ? "application/javascript" : "text/html");
+
+	@Test
+	public void directories_map_to_index_page() {
+		assertSame(assets.lookup("/index.html"), assets.lookup("/"));
+		assertSame(assets.lookup("/index.html"), assets.lookup(""));
+		assertNull(assets.lookup("/missing.js"));
+		assertNull(assets.lookup("/app.js.br"));
+		assertEquals(2, assets.size());
+	}
+
+	@Test
+	public void identity_served_without_accept_encoding() {
+		StaticAssets.Variant variant = assets.lookup("/app.js").select(null);
+		assertNull(variant.contentEncoding());
+		assertEquals(SCRIPT.length, variant.length());
+		assertArrayEquals(SCRIPT, bytes(variant.content()));
+		assertEquals("application/javascript", variant.contentType());
+	}
+
+	@Test
+	public void gzip_variant_computed_at_load() throws Exception {
+		StaticAssets.Variant variant = assets.lookup("/app.js").select("gzip, deflate");
+		assertEquals("gzip", variant.contentEncoding());
+		assertTrue(variant.length() < SCRIPT.length);
+		assertArrayEquals(SCRIPT, gunzip(bytes(variant.content())));
+	}
+
+	@Test
+	public void precompressed_brotli_preferred_when_accepted() {
+		StaticAssets.Variant variant = assets.lookup("/app.js").select("gzip, deflate, br");
+		assertEquals("br", variant.contentEncoding());
+		assertArrayEquals(BROTLI, bytes(variant.content()));
+	}
+
+	@Test
+	public void zero_qvalue_refuses_encoding() {
+		assertEquals("gzip", assets.lookup("/app.js").select("br;q=0, gzip").contentEncoding());
+		assertNull(assets.lookup("/app.js").select("*;q=0, identity").contentEncoding());
+		assertEquals("br", assets.lookup("/app.js").select("*").contentEncoding());
+	}
+
+	@Test
+	public void compression_skipped_when_not_smaller() {
+		StaticAssets.Asset asset = assets.lookup("/index.html");
+		assertFalse(asset.compressed());
+		assertNull(asset.select("gzip, br").contentEncoding());
+	}
+
+	@Test
+	public void each_variant_has_its_own_strong_etag() {
+		StaticAssets.Asset asset = assets.lookup("/app.js");
+		String identity = asset.select(null).etag();
+		String gzip = asset.select("gzip").etag();
+		assertTrue(identity.startsWith("\"") && identity.endsWith("\""));
+		assertFalse(identity.equals(gzip));
+		assertTrue(asset.select("gzip").matches("\"other\", " + gzip));
+		assertTrue(asset.select("gzip").matches("W/" + gzip));
+		assertTrue(asset.select("gzip").matches("*"));
+		assertFalse(asset.select("gzip").matches(identity));
+		assertFalse(asset.select("gzip").matches(null));
+	}
+
+	@Test
+	public void content_views_are_independent() {
+		StaticAssets.Variant variant = assets.lookup("/app.js").select(null);
+		variant.content().position(10);
+		assertEquals(SCRIPT.length, variant.content().remaining());
+	}
+
+	private static byte[] bytes(ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.remaining()];
+		buffer.get(bytes);
+		return bytes;
+	}
+
+	private static byte[] gunzip(byte[] compressed) throws IOException {
+		try (GZIPInputStream input = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+			return ByteStreams.toByteArray(input);
+		}
+	}
+}
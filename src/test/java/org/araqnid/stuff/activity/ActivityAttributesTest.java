@@ -0,0 +1,51 @@
+package org.araqnid.stuff.activity;
+
+import java.nio.charset.StandardCharsets;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ActivityAttributesTest {
+	private final ActivityAttributes attributes = new ActivityAttributes(2)
+			.with("method", "GET")
+			.with("path", "/say \"hello\"")
+			.with("status", 200)
+			.with("bytes", 1L << 40)
+			.with("cached", true)
+			.with("referrer", (String) null);
+	private static final String JSON = "{\"method\":\"GET\",\"path\":\"/say \\\"hello\\\"\",\"status\":200,"
+			+ "\"bytes\":1099511627776,\"cached\":true,\"referrer\":null}";
+
+	@Test
+	public void values_are_retrieved_boxed() {
+		assertEquals(6, attributes.size());
+		assertEquals("GET", attributes.get("method"));
+		assertEquals(200, attributes.get("status"));
+		assertEquals(1L << 40, attributes.get("bytes"));
+		assertEquals(true, attributes.get("cached"));
+		assertNull(attributes.get("referrer"));
+		assertNull(attributes.get("missing"));
+	}
+
+	@Test
+	public void serialized_as_json_object_directly_and_through_jackson() throws Exception {
+		assertEquals(JSON, attributes.toJson());
+		assertEquals(JSON, new ObjectMapper().writeValueAsString(attributes));
+	}
+
+	@Test
+	public void writes_directly_to_event_buffer() {
+		JsonEventBuffer buffer = new JsonEventBuffer(16);
+		attributes.writeTo(buffer);
+		assertEquals(JSON, StandardCharsets.UTF_8.decode(buffer.contents()).toString());
+	}
+
+	@Test
+	public void to_string_looks_like_a_map() {
+		assertEquals("{method=GET, path=/say \"hello\", status=200, bytes=1099511627776, cached=true, referrer=null}",
+				attributes.toString());
+	}
+}
@@ -0,0 +1,113 @@
+package org.araqnid.stuff.activity;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertTrue;
+
+public class ActivityExecutorServiceTest {
+	private final RecordingActivityEventSink sink = new RecordingActivityEventSink();
+	private final ScheduledExecutorService pool = Executors.newSingleThreadScheduledExecutor();
+
+	@After
+	public void shutDown() {
+		pool.shutdownNow();
+	}
+
+	@Test
+	public void task_runs_as_child_of_submitting_node() throws Exception {
+		ExecutorService executor = new ActivityExecutorService(pool, "Task");
+		Activity activity = new Activity(UUID.randomUUID(), "Test", null, sink);
+		AtomicReference<ActivityNode> seen = new AtomicReference<>();
+		ThreadActivity.attach(activity.root);
+		try {
+			executor.submit(() -> seen.set(ThreadActivity.get())).get();
+		} finally {
+			ThreadActivity.detach(activity);
+		}
+
+		assertSame(activity.root, seen.get().parent);
+		assertEquals("Task", seen.get().type);
+		assertEquals("[start Task parent=" + activity.root.id + ", end true]", events().toString());
+		assertEquals(1, queueWaits().size());
+		assertTrue(pool.submit(() -> !ThreadActivity.current().isPresent()).get());
+	}
+
+	@Test
+	public void failing_task_completes_node_unsuccessfully() throws Exception {
+		ExecutorService executor = new ActivityExecutorService(pool, "Task");
+		Activity activity = new Activity(UUID.randomUUID(), "Test", null, sink);
+		ThreadActivity.attach(activity.root);
+		try {
+			executor.submit(() -> {
+				throw new IllegalStateException();
+			}).get(1, TimeUnit.SECONDS);
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof IllegalStateException);
+		} finally {
+			ThreadActivity.detach(activity);
+		}
+
+		assertEquals("[start Task parent=" + activity.root.id + ", end false]", events().toString());
+	}
+
+	@Test
+	public void scheduled_delay_is_not_counted_as_queue_wait() throws Exception {
+		ScheduledExecutorService executor = new ActivityScheduledExecutorService(pool, "Task");
+		Activity activity = new Activity(UUID.randomUUID(), "Test", null, sink);
+		ThreadActivity.attach(activity.root);
+		try {
+			executor.schedule(() -> null, 200, TimeUnit.MILLISECONDS).get();
+		} finally {
+			ThreadActivity.detach(activity);
+		}
+
+		assertTrue(queueWaits().get(0) < TimeUnit.MILLISECONDS.toNanos(100));
+	}
+
+	@Test
+	public void supply_async_runs_as_child_of_calling_node() throws Exception {
+		Activity activity = new Activity(UUID.randomUUID(), "Test", null, sink);
+		ThreadActivity.attach(activity.root);
+		ActivityNode node;
+		try {
+			node = ActivityFutures.supplyAsync("Future", ThreadActivity::get, pool).get();
+		} finally {
+			ThreadActivity.detach(activity);
+		}
+
+		assertSame(activity.root, node.parent);
+		assertEquals("Future", node.type);
+	}
+
+	@Test
+	public void task_submitted_without_activity_is_not_wrapped() throws Exception {
+		ExecutorService executor = new ActivityExecutorService(pool, "Task");
+		assertFalse(executor.submit(() -> ThreadActivity.current().isPresent()).get());
+		assertTrue(sink.events.isEmpty());
+	}
+
+	private List<String> events() {
+		return sink.describe(e -> e.end ? "end " + e.success : "start " + e.type + " parent=" + e.nodeParentId);
+	}
+
+	private List<Long> queueWaits() {
+		return sink.starts().stream()
+				.filter(e -> e.attributes instanceof ActivityAttributes)
+				.map(e -> (Long) ((ActivityAttributes) e.attributes).get("queueWaitNanos"))
+				.collect(toList());
+	}
+}
@@ -0,0 +1,81 @@
+package org.araqnid.stuff.activity;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ActivityFlameGraphTest {
+	private final Instant now = Instant.parse("2017-03-01T12:00:00Z");
+	private final ActivityFlameGraph flameGraph = new ActivityFlameGraph(Clock.fixed(now, ZoneOffset.UTC));
+
+	@Test
+	public void nodes_folded_by_type_path_with_self_time() {
+		for (int i = 0; i < 2; i++) {
+			UUID activityId = UUID.randomUUID();
+			long base = i * 10;
+			flameGraph.activityNodeStart(activityId, base + 1, ActivityNode.NO_PARENT, "Request", now, null);
+			flameGraph.activityNodeStart(activityId, base + 2, base + 1, "Database", now, null);
+			flameGraph.activityNodeStart(activityId, base + 3, base + 2, "Query", now, null);
+			flameGraph.activityNodeEnd(activityId, base + 3, true, 300, null);
+			flameGraph.activityNodeEnd(activityId, base + 2, true, 400, null);
+			flameGraph.activityNodeStart(activityId, base + 4, base + 1, "Render", now, null);
+			flameGraph.activityNodeEnd(activityId, base + 4, true, 100, null);
+			flameGraph.activityNodeEnd(activityId, base + 1, true, 1000, null);
+		}
+
+		assertEquals(collapsed("Request", 1000, "Request;Database", 200, "Request;Database;Query", 600,
+				"Request;Render", 200), collapsed(flameGraph.snapshot(0)));
+		ActivityFlameGraph.Frame request = flameGraph.snapshot(1).children().iterator().next();
+		assertEquals("Request", request.name());
+		assertEquals(2, request.count());
+		assertEquals(2000, request.totalNanos());
+	}
+
+	@Test
+	public void overlapping_roots_of_one_activity_folded_separately() {
+		UUID activityId = UUID.randomUUID();
+		flameGraph.activityNodeStart(activityId, 1, ActivityNode.NO_PARENT, "Request", now, null);
+		flameGraph.activityNodeStart(activityId, 2, ActivityNode.NO_PARENT, "Request", now, null);
+		flameGraph.activityNodeStart(activityId, 3, 1, "Database", now, null);
+		flameGraph.activityNodeStart(activityId, 4, 2, "Render", now, null);
+		flameGraph.activityNodeEnd(activityId, 3, true, 300, null);
+		flameGraph.activityNodeEnd(activityId, 1, true, 1000, null);
+		flameGraph.activityNodeEnd(activityId, 4, true, 100, null);
+		flameGraph.activityNodeEnd(activityId, 2, true, 500, null);
+
+		assertEquals(collapsed("Request", 1100, "Request;Database", 300, "Request;Render", 100),
+				collapsed(flameGraph.snapshot(0)));
+	}
+
+	@Test
+	public void reset_discards_folded_nodes() {
+		UUID activityId = UUID.randomUUID();
+		flameGraph.activityNodeStart(activityId, 1, ActivityNode.NO_PARENT, "Request", now, null);
+		flameGraph.activityNodeEnd(activityId, 1, true, 1000, null);
+		flameGraph.reset();
+
+		assertEquals(collapsed(), collapsed(flameGraph.snapshot(0)));
+		assertEquals(collapsed(), collapsed(flameGraph.snapshot(5)));
+	}
+
+	private static Map<String, Long> collapsed(Object... pathsAndValues) {
+		Map<String, Long> output = new LinkedHashMap<>();
+		for (int i = 0; i < pathsAndValues.length; i += 2) {
+			output.put((String) pathsAndValues[i], ((Number) pathsAndValues[i + 1]).longValue());
+		}
+		return output;
+	}
+
+	private static Map<String, Long> collapsed(ActivityFlameGraph.Frame root) {
+		Map<String, Long> output = new LinkedHashMap<>();
+		root.collapsed((path, frame) -> output.put(path, frame.selfNanos()));
+		return output;
+	}
+}
@@ -0,0 +1,106 @@
+package org.araqnid.stuff.activity;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.List;
+import java.util.UUID;
+
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.message.BasicHttpRequest;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ActivityHttpClientInterceptorTest {
+	private final UUID instanceId = UUID.randomUUID();
+	private final ActivityHttpClientInterceptor interceptor = new ActivityHttpClientInterceptor(instanceId);
+	private final RecordingActivityEventSink sink = new RecordingActivityEventSink();
+
+	@Test
+	public void outbound_request_is_stamped_and_timed_as_child_node() throws Exception {
+		Activity activity = new Activity(UUID.randomUUID(), "Test", null, sink, NodeIdAllocator.sequential(),
+				ActivityTiming.DEFAULT);
+		BasicHttpRequest request = new BasicHttpRequest("GET", "/_api/info/version");
+		HttpContext context = new BasicHttpContext();
+		ThreadActivity.attach(activity.root);
+		try {
+			interceptor.process(request, context);
+			assertSame(activity.root, ThreadActivity.get());
+			interceptor.process(new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK"), context);
+		} finally {
+			ThreadActivity.detach(activity);
+		}
+
+		long nodeId = activity.root.id + 1;
+		assertEquals(activity.id + " " + nodeId + " " + instanceId, request.getFirstHeader("X-Activity").getValue());
+		assertEquals("[start HttpClient " + nodeId + " {method=GET, uri=/_api/info/version}, end " + nodeId
+				+ " true {status=200}]", events().toString());
+	}
+
+	@Test
+	public void node_completed_when_execution_fails() throws Exception {
+		int port;
+		try (ServerSocket socket = new ServerSocket(0)) {
+			port = socket.getLocalPort();
+		}
+		Activity activity = new Activity(UUID.randomUUID(), "Test", null, sink, NodeIdAllocator.sequential(),
+				ActivityTiming.DEFAULT);
+		ThreadActivity.attach(activity.root);
+		try (CloseableHttpClient client = ActivityHttpClientInterceptor.instrument(HttpClientBuilder.create()
+				.disableAutomaticRetries(), instanceId)) {
+			client.execute(new HttpGet("http://127.0.0.1:" + port + "/")).close();
+			fail("connection should have been refused");
+		} catch (IOException e) {
+			// expected
+		} finally {
+			ThreadActivity.detach(activity);
+		}
+
+		long nodeId = activity.root.id + 1;
+		List<String> events = events();
+		assertEquals(2, events.size());
+		assertTrue(events.get(1), events.get(1).startsWith("end " + nodeId + " false {exception="));
+	}
+
+	@Test
+	public void retried_request_completes_previous_attempt() throws Exception {
+		Activity activity = new Activity(UUID.randomUUID(), "Test", null, sink, NodeIdAllocator.sequential(),
+				ActivityTiming.DEFAULT);
+		HttpContext context = new BasicHttpContext();
+		ThreadActivity.attach(activity.root);
+		try {
+			interceptor.process(new BasicHttpRequest("GET", "/"), context);
+			interceptor.process(new BasicHttpRequest("GET", "/"), context);
+			interceptor.process(new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK"), context);
+		} finally {
+			ThreadActivity.detach(activity);
+		}
+
+		long nodeId = activity.root.id + 1;
+		assertEquals("[start HttpClient " + nodeId + " {method=GET, uri=/}, end " + nodeId + " false {retried=true}, "
+				+ "start HttpClient " + (nodeId + 1) + " {method=GET, uri=/}, end " + (nodeId + 1) + " true {status=200}]",
+				events().toString());
+	}
+
+	@Test
+	public void outbound_request_without_activity_is_untouched() throws Exception {
+		BasicHttpRequest request = new BasicHttpRequest("GET", "/");
+		interceptor.process(request, new BasicHttpContext());
+		assertFalse(request.containsHeader("X-Activity"));
+	}
+
+	private List<String> events() {
+		return sink.describe(e -> e.end ? "end " + e.nodeId + " " + e.success + " " + e.attributes
+				: "start " + e.type + " " + e.nodeId + " " + e.attributes);
+	}
+}
@@ -0,0 +1,55 @@
+package org.araqnid.stuff.activity;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ActivityIdGeneratorTest {
+	@Test
+	public void time_ordered_ids_are_version_7_with_timestamp_prefix() {
+		Instant now = Instant.parse("2017-03-01T12:00:00.123Z");
+		UUID id = ActivityIdGenerator.timeOrdered(Clock.fixed(now, ZoneOffset.UTC)).next();
+		assertEquals(7, id.version());
+		assertEquals(2, id.variant());
+		assertEquals(now.toEpochMilli(), id.getMostSignificantBits() >>> 16);
+	}
+
+	@Test
+	public void time_ordered_ids_sort_by_creation_time() {
+		Instant[] now = { Instant.parse("2017-03-01T12:00:00Z") };
+		ActivityIdGenerator generator = ActivityIdGenerator.timeOrdered(new Clock() {
+			@Override
+			public Instant instant() {
+				return now[0];
+			}
+
+			@Override
+			public ZoneId getZone() {
+				return ZoneOffset.UTC;
+			}
+
+			@Override
+			public Clock withZone(ZoneId zone) {
+				return this;
+			}
+		});
+		Set<UUID> seen = new HashSet<>();
+		UUID previous = generator.next();
+		for (int i = 0; i < 1000; i++) {
+			now[0] = now[0].plusMillis(1);
+			UUID next = generator.next();
+			assertTrue(previous.compareTo(next) < 0);
+			assertTrue(seen.add(next));
+			previous = next;
+		}
+	}
+}
@@ -0,0 +1,191 @@
+package org.araqnid.stuff.activity;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ActivityJournalTest {
+	private final Path directory;
+	private final Clock clock = Clock.fixed(Instant.parse("2017-03-01T12:00:00Z"), ZoneOffset.UTC);
+
+	public ActivityJournalTest() throws IOException {
+		directory = Files.createTempDirectory("journal");
+	}
+
+	@After
+	public void cleanUp() throws IOException {
+		for (Path path : ActivityJournal.segments(directory)) {
+			Files.delete(path);
+		}
+		Files.delete(directory);
+	}
+
+	@Test
+	public void records_are_read_back_from_journal() throws Exception {
+		UUID activityId = UUID.randomUUID();
+		Instant started = Instant.parse("2017-03-01T12:00:00.123456Z");
+		try (ActivityJournal journal = journal(65536, 10)) {
+			journal.activityNodeStart(activityId, 1, ActivityNode.NO_PARENT, "HttpRequest", started,
+					ImmutableMap.of("path", "/"));
+			journal.activityNodeEnd(activityId, 1, true, Duration.ofMillis(15), null);
+		}
+
+		ActivityJournalReader.Cursor cursor = new ActivityJournalReader(directory).replay();
+		assertTrue(cursor.next());
+		ActivityJournalReader.Record record = cursor.record();
+		assertTrue(record.isStart());
+		assertEquals(activityId, record.activityId());
+		assertEquals(1, record.nodeId());
+		assertEquals(ActivityNode.NO_PARENT, record.nodeParentId());
+		assertEquals("HttpRequest", record.type());
+		assertEquals(started, record.started());
+		assertEquals("{\"path\":\"/\"}", record.attributesJson());
+		assertTrue(cursor.next());
+		assertTrue(record.isEnd());
+		assertTrue(record.success());
+		assertEquals(Duration.ofMillis(15), record.duration());
+		assertNull(record.attributesJson());
+		assertFalse(cursor.next());
+	}
+
+	@Test
+	public void segments_are_rotated_and_retention_enforced() throws Exception {
+		UUID activityId = UUID.randomUUID();
+		try (ActivityJournal journal = journal(4096, 3)) {
+			for (int i = 1; i <= 1000; i++) {
+				journal.activityNodeEnd(activityId, i, true, Duration.ZERO, null);
+			}
+		}
+
+		assertEquals(3, ActivityJournal.segments(directory).size());
+		List<Long> nodeIds = new ArrayList<>();
+		new ActivityJournalReader(directory).replay(record -> nodeIds.add(record.nodeId()));
+		assertEquals(1000L, (long) nodeIds.get(nodeIds.size() - 1));
+		for (int i = 1; i < nodeIds.size(); i++) {
+			assertEquals(nodeIds.get(i - 1) + 1, (long) nodeIds.get(i));
+		}
+	}
+
+	@Test
+	public void tail_cursor_sees_records_appended_later() throws Exception {
+		UUID activityId = UUID.randomUUID();
+		try (ActivityJournal journal = journal(4096, 10)) {
+			journal.activityNodeEnd(activityId, 1, true, Duration.ZERO, null);
+			ActivityJournalReader.Cursor cursor = new ActivityJournalReader(directory).tail();
+			assertFalse(cursor.next());
+			for (int i = 2; i <= 200; i++) {
+				journal.activityNodeEnd(activityId, i, true, Duration.ZERO, null);
+			}
+			for (int i = 2; i <= 200; i++) {
+				assertTrue(cursor.next());
+				assertEquals(i, cursor.record().nodeId());
+			}
+			assertFalse(cursor.next());
+		}
+	}
+
+	@Test
+	public void segments_are_rotated_by_age() throws Exception {
+		Instant[] now = { Instant.parse("2017-03-01T12:00:00Z") };
+		Clock movingClock = new Clock() {
+			@Override
+			public ZoneId getZone() {
+				return ZoneOffset.UTC;
+			}
+
+			@Override
+			public Clock withZone(ZoneId zone) {
+				throw new UnsupportedOperationException();
+			}
+
+			@Override
+			public Instant instant() {
+				return now[0];
+			}
+		};
+		UUID activityId = UUID.randomUUID();
+		try (ActivityJournal journal = new ActivityJournal(directory, 65536, Duration.ofMinutes(1), 10, new ObjectMapper(),
+				movingClock)) {
+			journal.activityNodeEnd(activityId, 1, true, Duration.ZERO, null);
+			now[0] = now[0].plusSeconds(59);
+			journal.activityNodeEnd(activityId, 2, true, Duration.ZERO, null);
+			assertEquals(1, ActivityJournal.segments(directory).size());
+			now[0] = now[0].plusSeconds(1);
+			journal.activityNodeEnd(activityId, 3, true, Duration.ZERO, null);
+			assertEquals(2, ActivityJournal.segments(directory).size());
+		}
+
+		List<Long> nodeIds = new ArrayList<>();
+		new ActivityJournalReader(directory).replay(record -> nodeIds.add(record.nodeId()));
+		assertEquals(Arrays.asList(1L, 2L, 3L), nodeIds);
+	}
+
+	@Test
+	public void records_appended_just_before_a_roll_are_not_skipped() throws Exception {
+		UUID activityId = UUID.randomUUID();
+		try (ActivityJournal journal = journal(4096, 10)) {
+			journal.activityNodeEnd(activityId, 1, true, Duration.ZERO, null);
+			boolean[] appendBeforeListing = { false };
+			ActivityJournalReader reader = new ActivityJournalReader(directory) {
+				@Override
+				public List<Path> segments() throws IOException {
+					if (appendBeforeListing[0]) {
+						appendBeforeListing[0] = false;
+						journal.activityNodeEnd(activityId, 2, true, Duration.ZERO, null);
+						journal.activityNodeStart(activityId, 3, 1, Strings.repeat("x", 4000), Instant.EPOCH, null);
+					}
+					return super.segments();
+				}
+			};
+			ActivityJournalReader.Cursor cursor = reader.replay();
+			assertTrue(cursor.next());
+			assertEquals(1, cursor.record().nodeId());
+			appendBeforeListing[0] = true;
+			assertTrue(cursor.next());
+			assertEquals(2, cursor.record().nodeId());
+			assertTrue(cursor.next());
+			assertEquals(3, cursor.record().nodeId());
+			assertFalse(cursor.next());
+		}
+		assertEquals(2, ActivityJournal.segments(directory).size());
+	}
+
+	@Test
+	public void overlong_type_truncated_at_character_boundary() throws Exception {
+		String type = Strings.repeat("\u00e9", 40000);
+		try (ActivityJournal journal = journal(262144, 10)) {
+			journal.activityNodeStart(UUID.randomUUID(), 1, ActivityNode.NO_PARENT, type, Instant.EPOCH,
+					ImmutableMap.of("path", "/"));
+		}
+
+		ActivityJournalReader.Cursor cursor = new ActivityJournalReader(directory).replay();
+		assertTrue(cursor.next());
+		assertEquals(type.substring(0, 32767), cursor.record().type());
+		assertEquals("{\"path\":\"/\"}", cursor.record().attributesJson());
+		assertFalse(cursor.next());
+	}
+
+	private ActivityJournal journal(int segmentSize, int maxSegments) throws IOException {
+		return new ActivityJournal(directory, segmentSize, Duration.ofHours(1), maxSegments, new ObjectMapper(), clock);
+	}
+}
@@ -0,0 +1,50 @@
+package org.araqnid.stuff.activity;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class ActivityLatencyStatisticsTest {
+	private final ActivityLatencyStatistics statistics = new ActivityLatencyStatistics(Clock.fixed(Instant.parse("2017-03-01T12:00:00Z"), ZoneOffset.UTC));
+
+	@Test
+	public void durations_recorded_by_type_and_request() {
+		Activity activity = request("/test");
+		activity.begin();
+		activity.root.begin("Database").complete(true, null);
+		activity.complete(true, null);
+
+		assertEquals(1, statistics.snapshot("HttpRequest", 0).count());
+		assertEquals(1, statistics.snapshot("Database", 0).count());
+		assertEquals(1, statistics.snapshot("HttpRequest GET /test", 0).count());
+	}
+
+	@Test
+	public void request_paths_do_not_crowd_out_node_types() {
+		for (int i = 0; i < 1000; i++) {
+			Activity activity = request("/scan/" + i);
+			activity.begin();
+			activity.complete(false, null);
+		}
+		Activity activity = request("/test");
+		activity.begin();
+		activity.root.begin("Database").complete(true, null);
+		activity.complete(true, null);
+
+		assertEquals(1001, statistics.snapshot("HttpRequest", 0).count());
+		assertNotNull(statistics.snapshot("Database", 0));
+		assertNull(statistics.snapshot("HttpRequest GET /test", 0));
+	}
+
+	private Activity request(String path) {
+		return new Activity(UUID.randomUUID(), "HttpRequest", new ActivityAttributes(2).with("method", "GET").with("path", path),
+				statistics);
+	}
+}
@@ -0,0 +1,92 @@
+package org.araqnid.stuff.activity;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ActivityLoadShedderTest {
+	private static final long LATENCY_THRESHOLD = Duration.ofMillis(500).toNanos();
+	private final ActivityLoadShedder shedder = new ActivityLoadShedder(() -> 0, () -> 0, 0.5, 0.1,
+			Duration.ofNanos(LATENCY_THRESHOLD), 3, 1000, Duration.ofSeconds(1));
+	private final RecordingActivityEventSink recorder = new RecordingActivityEventSink();
+	private final SheddingActivityEventSink sink = new SheddingActivityEventSink(recorder, shedder);
+
+	@Test
+	public void level_escalates_under_pressure_and_recovers_gradually() {
+		shedder.check(0.6, 0);
+		assertEquals(ActivityLoadShedder.Level.ROOTS_ONLY, shedder.level());
+		shedder.check(0.2, LATENCY_THRESHOLD);
+		assertEquals(ActivityLoadShedder.Level.NO_ATTRIBUTES, shedder.level());
+		shedder.check(0.9, 0);
+		shedder.check(0.9, 0);
+		assertEquals(ActivityLoadShedder.Level.SAMPLE_ROOTS, shedder.level());
+
+		shedder.check(0.05, 0);
+		shedder.check(0.05, 0);
+		assertEquals(ActivityLoadShedder.Level.SAMPLE_ROOTS, shedder.level());
+		shedder.check(0.05, 0);
+		assertEquals(ActivityLoadShedder.Level.NO_ATTRIBUTES, shedder.level());
+		shedder.check(0.3, 0);
+		shedder.check(0.05, 0);
+		shedder.check(0.05, 0);
+		assertEquals(ActivityLoadShedder.Level.NO_ATTRIBUTES, shedder.level());
+		for (int i = 0; i < 7; i++) {
+			shedder.check(0.05, 0);
+		}
+		assertEquals(ActivityLoadShedder.Level.FULL, shedder.level());
+	}
+
+	@Test
+	public void child_nodes_shed_with_their_subtree() {
+		UUID activityId = UUID.randomUUID();
+		sink.activityNodeStart(activityId, 1, ActivityNode.NO_PARENT, "Root", Instant.EPOCH, "root");
+		shedder.check(1.0, 0);
+		sink.activityNodeStart(activityId, 2, 1, "Child", Instant.EPOCH, null);
+		for (int i = 0; i < 3; i++) {
+			shedder.check(0, 0);
+		}
+		sink.activityNodeStart(activityId, 3, 2, "Grandchild", Instant.EPOCH, null);
+		sink.activityNodeEnd(activityId, 3, true, 0L, null);
+		sink.activityNodeEnd(activityId, 2, true, 0L, null);
+		sink.activityNodeEnd(activityId, 1, true, 0L, "done");
+
+		assertEquals(ActivityLoadShedder.Level.FULL, shedder.level());
+		assertEquals(Arrays.asList("start 1 root", "end 1 done"), recorder.describe(e -> e + " " + e.attributes));
+		assertEquals(2, shedder.getShedChildCount());
+	}
+
+	@Test
+	public void attributes_and_roots_shed_at_higher_levels() {
+		shedder.check(1.0, 0);
+		shedder.check(1.0, 0);
+		sink.activityNodeStart(new UUID(0, 1000), 1, ActivityNode.NO_PARENT, "Root", Instant.EPOCH, "root");
+		sink.activityNodeEnd(new UUID(0, 1000), 1, true, 0L, "done");
+		shedder.check(1.0, 0);
+		sink.activityNodeStart(new UUID(0, 2000), 2, ActivityNode.NO_PARENT, "Root", Instant.EPOCH, "root");
+		sink.activityNodeStart(new UUID(0, 2001), 3, ActivityNode.NO_PARENT, "Root", Instant.EPOCH, "root");
+		sink.activityNodeEnd(new UUID(0, 2001), 3, true, 0L, "done");
+		sink.activityNodeEnd(new UUID(0, 2000), 2, true, 0L, "done");
+
+		assertEquals(Arrays.asList("start 1 null", "end 1 null", "start 2 null", "end 2 null"),
+				recorder.describe(e -> e + " " + e.attributes));
+		assertEquals(1, shedder.getShedRootCount());
+		assertEquals(4, shedder.getShedAttributesCount());
+	}
+
+	@Test
+	public void shed_nodes_whose_ends_never_arrive_are_forgotten() {
+		UUID activityId = UUID.randomUUID();
+		shedder.check(1.0, 0);
+		for (int i = 1; i <= SheddingActivityEventSink.MAX_SHED_NODES * 3; i++) {
+			sink.activityNodeStart(activityId, i + 1, 1, "Child", Instant.EPOCH, null);
+		}
+
+		assertTrue(sink.shedNodeCount() <= SheddingActivityEventSink.MAX_SHED_NODES * 2);
+	}
+}
@@ -0,0 +1,51 @@
+package org.araqnid.stuff.activity;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ActivityRegistryTest {
+	private final RecordingActivityEventSink sink = new RecordingActivityEventSink();
+	private final ActivityRegistry registry = new ActivityRegistry();
+
+	@Test
+	public void registered_activity_reports_current_node_and_thread() {
+		Activity activity = new Activity(UUID.randomUUID(), "Test", null, sink);
+		registry.register(activity);
+		ThreadActivity.attach(activity.root);
+		activity.begin();
+		ActivityNode child = activity.root.begin("Child");
+		child.begin("Grandchild").complete(true);
+
+		List<ActivityRegistry.Entry> entries = registry.snapshot();
+		assertEquals(1, entries.size());
+		assertEquals(activity.id, entries.get(0).activityId);
+		assertEquals(Thread.currentThread().getName(), entries.get(0).threadName);
+		assertEquals(Arrays.asList("Test", "Child"), entries.get(0).nodes);
+
+		child.complete(true);
+		activity.complete(true);
+		assertNull(registry.snapshot().get(0).threadName);
+		registry.unregister(activity);
+		assertTrue(registry.snapshot().isEmpty());
+	}
+
+	@Test
+	public void snapshot_lists_oldest_activity_first() throws Exception {
+		Activity older = new Activity(UUID.randomUUID(), "Older", null, sink);
+		registry.register(older);
+		Thread.sleep(2);
+		Activity newer = new Activity(UUID.randomUUID(), "Newer", null, sink);
+		registry.register(newer);
+
+		List<ActivityRegistry.Entry> entries = registry.snapshot();
+		assertEquals("Older", entries.get(0).type);
+		assertEquals("Newer", entries.get(1).type);
+	}
+}
@@ -0,0 +1,38 @@
+package org.araqnid.stuff.activity;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.UUID;
+
+import com.google.common.base.Ticker;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ActivityTimingTest {
+	private final Instant anchor = Instant.parse("2017-03-01T12:00:00Z");
+	private final long[] ticks = { 1000000L };
+	private final RecordingActivityEventSink sink = new RecordingActivityEventSink();
+
+	@Test
+	public void monotonic_mode_derives_start_times_from_activity_anchor() {
+		ActivityTiming timing = ActivityTiming.monotonic(Clock.fixed(anchor, ZoneOffset.UTC), new Ticker() {
+			@Override
+			public long read() {
+				return ticks[0];
+			}
+		});
+		Activity activity = new Activity(UUID.randomUUID(), "Test", null, sink, NodeIdAllocator.sequential(), timing);
+		activity.begin();
+		ticks[0] += 1500;
+		ActivityNode child = activity.root.begin("Child");
+		ticks[0] += 2000000;
+		child.complete(true, null);
+		activity.complete(true, null);
+
+		assertEquals("[start Test 2017-03-01T12:00:00Z, start Child 2017-03-01T12:00:00.000001500Z, end 2000000,"
+				+ " end 2001500]",
+				sink.describe(e -> e.end ? "end " + e.durationNanos : "start " + e.type + " " + e.started).toString());
+	}
+}
@@ -0,0 +1,142 @@
+package org.araqnid.stuff.activity;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+public class ActivityTraceExporterTest {
+	private final ObjectMapper mapper = new ObjectMapper();
+	private final Clock clock = Clock.fixed(Instant.parse("2017-03-01T12:00:00Z"), ZoneOffset.UTC);
+	private final UUID instanceId = UUID.fromString("00000000-0000-0000-0000-000000000001");
+	private final UUID activityId = UUID.fromString("01234567-89ab-cdef-0123-456789abcdef");
+	private final Instant started = Instant.parse("2017-03-01T12:00:00.000123456Z");
+	private final Path directory;
+
+	public ActivityTraceExporterTest() throws IOException {
+		directory = Files.createTempDirectory("traces");
+	}
+
+	@After
+	public void cleanUp() throws IOException {
+		for (ActivityTraceExporter.Format format : ActivityTraceExporter.Format.values()) {
+			for (Path path : ActivityTraceExporter.files(directory, format)) {
+				Files.delete(path);
+			}
+		}
+		Files.delete(directory);
+	}
+
+	@Test
+	public void nodes_written_as_chrome_trace_events() throws Exception {
+		try (ActivityTraceExporter exporter = exporter(ActivityTraceExporter.Format.CHROME, 3)) {
+			writeActivity(exporter);
+		}
+
+		List<Path> files = ActivityTraceExporter.files(directory, ActivityTraceExporter.Format.CHROME);
+		assertEquals(1, files.size());
+		JsonNode events = mapper.readTree(files.get(0).toFile());
+		assertEquals("process_name", events.get(0).get("name").asText());
+		JsonNode child = events.get(1);
+		assertEquals("Child", child.get("name").asText());
+		assertEquals("X", child.get("ph").asText());
+		assertEquals(1, child.get("tid").asLong());
+		assertEquals(1488369600000123L, child.get("ts").asLong());
+		assertEquals(1500, child.get("dur").asLong());
+		assertEquals(activityId.toString(), child.get("args").get("activityId").asText());
+		assertEquals(1, child.get("args").get("nodeParentId").asLong());
+		assertFalse(child.get("args").get("success").asBoolean());
+		JsonNode root = events.get(2);
+		assertEquals("Test", root.get("name").asText());
+		assertEquals("/", root.get("args").get("attributes").get("path").asText());
+		assertEquals(200, root.get("args").get("endAttributes").get("status").asInt());
+		assertEquals("thread_name", events.get(3).get("name").asText());
+	}
+
+	@Test
+	public void nodes_written_as_otlp_spans() throws Exception {
+		try (ActivityTraceExporter exporter = exporter(ActivityTraceExporter.Format.OTLP, 3)) {
+			writeActivity(exporter);
+		}
+
+		List<Path> files = ActivityTraceExporter.files(directory, ActivityTraceExporter.Format.OTLP);
+		assertEquals(1, files.size());
+		List<String> lines = Files.readAllLines(files.get(0));
+		assertEquals(1, lines.size());
+		JsonNode resourceSpans = mapper.readTree(lines.get(0)).get("resourceSpans").get(0);
+		assertEquals("service.name", resourceSpans.get("resource").get("attributes").get(0).get("key").asText());
+		JsonNode spans = resourceSpans.get("scopeSpans").get(0).get("spans");
+		assertEquals(2, spans.size());
+		JsonNode child = spans.get(0);
+		assertEquals("0123456789abcdef0123456789abcdef", child.get("traceId").asText());
+		assertEquals("8000000000000003", child.get("spanId").asText());
+		assertEquals("8000000000000000", child.get("parentSpanId").asText());
+		assertEquals("1488369600000123456", child.get("startTimeUnixNano").asText());
+		assertEquals("1488369600001623456", child.get("endTimeUnixNano").asText());
+		assertEquals(2, child.get("status").get("code").asInt());
+		JsonNode root = spans.get(1);
+		assertEquals("8000000000000000", root.get("spanId").asText());
+		assertNull(root.get("parentSpanId"));
+		assertEquals("path", root.get("attributes").get(0).get("key").asText());
+		assertEquals("/", root.get("attributes").get(0).get("value").get("stringValue").asText());
+		assertEquals("200", root.get("attributes").get(1).get("value").get("intValue").asText());
+	}
+
+	@Test
+	public void remote_parent_mapped_with_caller_instance() throws Exception {
+		UUID callerInstanceId = UUID.fromString("00000000-0000-0000-0000-000000000002");
+		try (ActivityTraceExporter exporter = exporter(ActivityTraceExporter.Format.OTLP, 3)) {
+			exporter.activityNodeStart(activityId, 1, ActivityNode.NO_PARENT, "Test", started,
+					new ActivityAttributes().with("remote_parent", 1L).with("remote_instance", callerInstanceId.toString()));
+			exporter.activityNodeEnd(activityId, 1, true, 2_000_000L, null);
+		}
+
+		List<Path> files = ActivityTraceExporter.files(directory, ActivityTraceExporter.Format.OTLP);
+		JsonNode span = mapper.readTree(Files.readAllLines(files.get(0)).get(0)).get("resourceSpans").get(0)
+				.get("scopeSpans").get(0).get("spans").get(0);
+		assertEquals("8000000000000000", span.get("spanId").asText());
+		assertEquals("8000000000000003", span.get("parentSpanId").asText());
+	}
+
+	@Test
+	public void files_rolled_and_retention_enforced() throws Exception {
+		try (ActivityTraceExporter exporter = exporter(ActivityTraceExporter.Format.CHROME, 2)) {
+			for (int i = 0; i < 4; i++) {
+				writeActivity(exporter);
+				exporter.flush();
+			}
+		}
+
+		List<Path> files = ActivityTraceExporter.files(directory, ActivityTraceExporter.Format.CHROME);
+		assertEquals(2, files.size());
+		assertEquals(3, ActivityTraceExporter.fileSequence(files.get(1), ActivityTraceExporter.Format.CHROME));
+		assertEquals(4, mapper.readTree(files.get(1).toFile()).size());
+	}
+
+	private void writeActivity(ActivityTraceExporter exporter) {
+		exporter.activityNodeStart(activityId, 1, ActivityNode.NO_PARENT, "Test", started,
+				new ActivityAttributes().with("path", "/"));
+		exporter.activityNodeStart(activityId, 2, 1, "Child", started, null);
+		exporter.activityNodeEnd(activityId, 2, false, 1_500_000L, null);
+		exporter.activityNodeEnd(activityId, 1, true, 2_000_000L, new ActivityAttributes().with("status", 200));
+	}
+
+	private ActivityTraceExporter exporter(ActivityTraceExporter.Format format, int maxFiles) throws IOException {
+		return new ActivityTraceExporter(directory, format, "test", instanceId, 1, Duration.ofHours(1), maxFiles,
+				mapper, clock);
+	}
+}
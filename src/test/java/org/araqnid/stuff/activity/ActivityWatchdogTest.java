@@ -0,0 +1,100 @@
+package org.araqnid.stuff.activity;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ActivityWatchdogTest {
+	private final RecordingActivityEventSink sink = new RecordingActivityEventSink();
+	private final ActivityRegistry registry = new ActivityRegistry();
+
+	@Test
+	public void stuck_activity_stack_is_sampled_up_to_limit() throws Exception {
+		CountDownLatch attached = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		long[] childId = new long[1];
+		Thread worker = new Thread(() -> {
+			Activity activity = new Activity(UUID.randomUUID(), "Test", null, sink);
+			registry.register(activity);
+			ThreadActivity.attach(activity.root);
+			activity.begin();
+			ActivityNode child = activity.root.begin("Waiting");
+			childId[0] = child.id;
+			attached.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			child.complete(true);
+			activity.complete(true);
+			registry.unregister(activity);
+		}, "stuck-worker");
+		worker.start();
+		attached.await();
+
+		ActivityWatchdog watchdog = new ActivityWatchdog(registry, Duration.ZERO, Duration.ofSeconds(1), 2, 1000.0);
+		watchdog.scan();
+		watchdog.scan();
+		watchdog.scan();
+		release.countDown();
+		worker.join();
+
+		List<RecordingActivityEventSink.Event> reports = reports();
+		assertEquals(2, reports.size());
+		ActivityAttributes first = (ActivityAttributes) reports.get(0).attributes;
+		assertEquals("stuck-worker", first.get("thread"));
+		assertEquals(1, first.get("sample"));
+		assertEquals(2, ((ActivityAttributes) reports.get(1).attributes).get("sample"));
+		assertEquals(childId[0], reports.get(0).nodeParentId);
+		assertTrue(first.get("stack").toString().contains("CountDownLatch.await"));
+	}
+
+	@Test
+	public void activities_under_threshold_are_ignored() {
+		Activity activity = new Activity(UUID.randomUUID(), "Test", null, sink);
+		registry.register(activity);
+		new ActivityWatchdog(registry, Duration.ofMinutes(1), Duration.ofSeconds(1), 3, 1000.0).scan();
+		registry.unregister(activity);
+		assertTrue(reports().isEmpty());
+	}
+
+	@Test
+	public void activity_whose_root_has_ended_is_not_sampled() throws Exception {
+		CountDownLatch attached = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		Activity activity = new Activity(UUID.randomUUID(), "Test", null, sink);
+		Thread worker = new Thread(() -> {
+			registry.register(activity);
+			ThreadActivity.attach(activity.root);
+			activity.begin();
+			attached.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}, "async-worker");
+		worker.start();
+		attached.await();
+		activity.complete(true);
+
+		new ActivityWatchdog(registry, Duration.ZERO, Duration.ofSeconds(1), 2, 1000.0).scan();
+		release.countDown();
+		worker.join();
+		registry.unregister(activity);
+
+		assertTrue(reports().isEmpty());
+	}
+
+	private List<RecordingActivityEventSink.Event> reports() {
+		return sink.starts().stream().filter(e -> e.type.equals(ActivityWatchdog.NODE_TYPE)).collect(toList());
+	}
+}
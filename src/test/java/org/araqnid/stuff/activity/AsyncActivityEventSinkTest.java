@@ -0,0 +1,192 @@
+package org.araqnid.stuff.activity;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.junit.Test;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AsyncActivityEventSinkTest {
+	private final RecordingActivityEventSink recorder = new RecordingActivityEventSink();
+
+	@Test
+	public void events_are_delivered_in_order_once_running() throws Exception {
+		AsyncActivityEventSink sink = new AsyncActivityEventSink(recorder, 16, AsyncActivityEventSink.OverflowPolicy.BLOCK, 1);
+		UUID activityId = UUID.randomUUID();
+		sink.startAsync().awaitRunning();
+		try {
+			for (int i = 1; i <= 100; i++) {
+				sink.activityNodeStart(activityId, i, i - 1, "Test", Instant.EPOCH, null);
+				sink.activityNodeEnd(activityId, i, true, Duration.ZERO, null);
+			}
+		} finally {
+			sink.stopAsync().awaitTerminated(5, TimeUnit.SECONDS);
+		}
+		assertEquals(200, recorder.events.size());
+		for (int i = 1; i <= 100; i++) {
+			assertEquals("start " + i, recorder.events.get(i * 2 - 2).toString());
+			assertEquals("end " + i, recorder.events.get(i * 2 - 1).toString());
+		}
+		assertEquals(0, sink.getDroppedCount());
+		assertEquals(0, sink.getQueueDepth());
+	}
+
+	@Test
+	public void events_are_dropped_and_counted_when_buffer_full() throws Exception {
+		AsyncActivityEventSink sink = new AsyncActivityEventSink(recorder, 4, AsyncActivityEventSink.OverflowPolicy.DROP, 1);
+		UUID activityId = UUID.randomUUID();
+		for (int i = 1; i <= 10; i++) {
+			sink.activityNodeStart(activityId, i, ActivityNode.NO_PARENT, "Test", Instant.EPOCH, null);
+		}
+		assertEquals(4, sink.getQueueDepth());
+		assertEquals(6, sink.getDroppedCount());
+		sink.startAsync().awaitRunning();
+		sink.stopAsync().awaitTerminated(5, TimeUnit.SECONDS);
+		assertEquals(4, recorder.events.size());
+		assertEquals("start 1", recorder.events.get(0).toString());
+		assertEquals("start 4", recorder.events.get(3).toString());
+	}
+
+	@Test
+	public void concurrent_producers_lose_and_duplicate_nothing() throws Exception {
+		AsyncActivityEventSink sink = new AsyncActivityEventSink(recorder, 64, AsyncActivityEventSink.OverflowPolicy.BLOCK, 1);
+		int producers = 4;
+		int nodesPerProducer = 2000;
+		CountDownLatch ready = new CountDownLatch(producers);
+		Thread[] threads = new Thread[producers];
+		sink.startAsync().awaitRunning();
+		try {
+			for (int p = 0; p < producers; p++) {
+				UUID activityId = new UUID(0, p);
+				threads[p] = new Thread(() -> {
+					ready.countDown();
+					Uninterruptibles.awaitUninterruptibly(ready);
+					for (int i = 1; i <= nodesPerProducer; i++) {
+						sink.activityNodeStart(activityId, i, ActivityNode.NO_PARENT, "Test", Instant.EPOCH, null);
+						sink.activityNodeEnd(activityId, i, true, Duration.ZERO, null);
+					}
+				});
+				threads[p].start();
+			}
+			for (Thread thread : threads) {
+				thread.join();
+			}
+		} finally {
+			sink.stopAsync().awaitTerminated(5, TimeUnit.SECONDS);
+		}
+
+		assertEquals(producers * nodesPerProducer * 2, recorder.events.size());
+		for (int p = 0; p < producers; p++) {
+			UUID activityId = new UUID(0, p);
+			List<String> events = recorder.events.stream()
+					.filter(e -> e.activityId.equals(activityId))
+					.map(Object::toString)
+					.collect(toList());
+			assertEquals(nodesPerProducer * 2, events.size());
+			for (int i = 1; i <= nodesPerProducer; i++) {
+				assertEquals("start " + i, events.get(i * 2 - 2));
+				assertEquals("end " + i, events.get(i * 2 - 1));
+			}
+		}
+		assertEquals(0, sink.getDroppedCount());
+	}
+
+	@Test
+	public void producer_waits_for_space_when_blocking() throws Exception {
+		GatedSink gated = new GatedSink(recorder);
+		AsyncActivityEventSink sink = new AsyncActivityEventSink(gated, 4, AsyncActivityEventSink.OverflowPolicy.BLOCK, 1);
+		UUID activityId = UUID.randomUUID();
+		sink.startAsync().awaitRunning();
+		try {
+			sink.activityNodeStart(activityId, 1, ActivityNode.NO_PARENT, "Test", Instant.EPOCH, null);
+			gated.entered.await();
+			for (int i = 2; i <= 4; i++) {
+				sink.activityNodeStart(activityId, i, 1, "Test", Instant.EPOCH, null);
+			}
+			Thread producer = new Thread(() -> sink.activityNodeStart(activityId, 5, 1, "Test", Instant.EPOCH, null));
+			producer.start();
+			producer.join(200);
+			assertTrue(producer.isAlive());
+
+			gated.gate.countDown();
+			producer.join(5000);
+			assertFalse(producer.isAlive());
+		} finally {
+			sink.stopAsync().awaitTerminated(5, TimeUnit.SECONDS);
+		}
+		assertEquals(Arrays.asList("start 1", "start 2", "start 3", "start 4", "start 5"), recorder.describe());
+		assertEquals(0, sink.getDroppedCount());
+	}
+
+	@Test
+	public void only_sampled_activities_wait_for_space() throws Exception {
+		GatedSink gated = new GatedSink(recorder);
+		AsyncActivityEventSink sink = new AsyncActivityEventSink(gated, 4, AsyncActivityEventSink.OverflowPolicy.SAMPLE, 2);
+		UUID sampled = new UUID(0, 2);
+		UUID unsampled = new UUID(0, 3);
+		sink.startAsync().awaitRunning();
+		try {
+			sink.activityNodeStart(sampled, 1, ActivityNode.NO_PARENT, "Test", Instant.EPOCH, null);
+			gated.entered.await();
+			for (int i = 2; i <= 4; i++) {
+				sink.activityNodeStart(sampled, i, 1, "Test", Instant.EPOCH, null);
+			}
+			sink.activityNodeStart(unsampled, 10, ActivityNode.NO_PARENT, "Test", Instant.EPOCH, null);
+			assertEquals(1, sink.getDroppedCount());
+
+			Thread producer = new Thread(() -> sink.activityNodeStart(sampled, 5, 1, "Test", Instant.EPOCH, null));
+			producer.start();
+			producer.join(200);
+			assertTrue(producer.isAlive());
+
+			gated.gate.countDown();
+			producer.join(5000);
+			assertFalse(producer.isAlive());
+		} finally {
+			sink.stopAsync().awaitTerminated(5, TimeUnit.SECONDS);
+		}
+		assertEquals(Arrays.asList("start 1", "start 2", "start 3", "start 4", "start 5"), recorder.describe());
+		assertEquals(1, sink.getDroppedCount());
+	}
+
+	/** Holds up the consumer in its first delivery until the gate is opened */
+	private static final class GatedSink implements ActivityEventSink {
+		final CountDownLatch entered = new CountDownLatch(1);
+		final CountDownLatch gate = new CountDownLatch(1);
+		private final ActivityEventSink delegate;
+
+		GatedSink(ActivityEventSink delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public void activityNodeStart(UUID activityId,
+				long nodeId,
+				long nodeParentId,
+				String type,
+				Instant started,
+				@Nullable Object attributes) {
+			entered.countDown();
+			Uninterruptibles.awaitUninterruptibly(gate);
+			delegate.activityNodeStart(activityId, nodeId, nodeParentId, type, started, attributes);
+		}
+
+		@Override
+		public void activityNodeEnd(UUID activityId, long nodeId, boolean success, long durationNanos, @Nullable Object attributes) {
+			entered.countDown();
+			Uninterruptibles.awaitUninterruptibly(gate);
+			delegate.activityNodeEnd(activityId, nodeId, success, durationNanos, attributes);
+		}
+	}
+}
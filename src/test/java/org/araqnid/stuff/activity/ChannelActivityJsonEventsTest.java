@@ -0,0 +1,122 @@
+package org.araqnid.stuff.activity;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Random;
+import java.util.UUID;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class ChannelActivityJsonEventsTest {
+	private final ObjectMapper mapper = new ObjectMapper();
+	private final UUID instanceId = UUID.randomUUID();
+	private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+	@Test
+	public void start_event_written_as_json_line() throws Exception {
+		ChannelActivityJsonEvents sink = new ChannelActivityJsonEvents(mapper, instanceId, Channels.newChannel(output), 0);
+		UUID activityId = UUID.randomUUID();
+		Instant started = Instant.parse("2017-03-01T12:34:56.789Z");
+		sink.activityNodeStart(activityId, 2, 1, "Test \"node\" \u00e9", started, ImmutableMap.of("path", "/"));
+
+		JsonNode event = mapper.readTree(line());
+		assertEquals("start", event.get("@type").asText());
+		assertEquals(instanceId.toString(), event.get("instanceId").asText());
+		assertEquals(activityId.toString(), event.get("activityId").asText());
+		assertEquals(2, event.get("nodeId").asLong());
+		assertEquals(1, event.get("nodeParentId").asLong());
+		assertEquals("Test \"node\" \u00e9", event.get("node_type").asText());
+		assertEquals(started.toString(), event.get("started").asText());
+		assertEquals("/", event.get("attributes").get("path").asText());
+	}
+
+	@Test
+	public void end_event_written_as_json_line() throws Exception {
+		ChannelActivityJsonEvents sink = new ChannelActivityJsonEvents(mapper, instanceId, Channels.newChannel(output), 0);
+		UUID activityId = UUID.randomUUID();
+		sink.activityNodeEnd(activityId, 1, false, Duration.ofMillis(1234), null);
+
+		JsonNode event = mapper.readTree(line());
+		assertEquals("end", event.get("@type").asText());
+		assertEquals(activityId.toString(), event.get("activityId").asText());
+		assertEquals(1, event.get("nodeId").asLong());
+		assertFalse(event.get("success").asBoolean());
+		assertEquals("PT1.234S", event.get("duration").asText());
+		assertEquals(true, event.get("attributes").isNull());
+	}
+
+	@Test
+	public void lines_held_until_flushed_when_below_threshold() throws Exception {
+		ChannelActivityJsonEvents sink = new ChannelActivityJsonEvents(mapper, instanceId, Channels.newChannel(output), 65536);
+		sink.activityNodeEnd(UUID.randomUUID(), 1, true, Duration.ZERO, null);
+		assertEquals(0, output.size());
+		sink.flush();
+		assertEquals("PT0S", mapper.readTree(line()).get("duration").asText());
+	}
+
+	@Test
+	public void close_writes_pending_lines_and_closes_channel() throws Exception {
+		WritableByteChannel channel = Channels.newChannel(output);
+		ChannelActivityJsonEvents sink = new ChannelActivityJsonEvents(mapper, instanceId, channel, 65536);
+		sink.activityNodeEnd(UUID.randomUUID(), 1, true, Duration.ZERO, null);
+		sink.close();
+		assertEquals("end", mapper.readTree(line()).get("@type").asText());
+		assertFalse(channel.isOpen());
+	}
+
+	@Test
+	public void instants_and_durations_formatted_like_iso_strings() throws Exception {
+		Random random = new Random(1L);
+		JsonEventBuffer buffer = new JsonEventBuffer(64);
+		for (int i = 0; i < 10000; i++) {
+			Instant instant = Instant.ofEpochSecond(random.nextInt(Integer.MAX_VALUE), nanos(random));
+			buffer.reset();
+			buffer.instant(instant);
+			assertEquals('"' + instant.toString() + '"', contents(buffer));
+
+			Duration duration = Duration.ofSeconds(random.nextInt(100000), nanos(random));
+			buffer.reset();
+			buffer.duration(duration);
+			assertEquals('"' + duration.toString() + '"', contents(buffer));
+
+			UUID uuid = new UUID(random.nextLong(), random.nextLong());
+			buffer.reset();
+			buffer.uuid(uuid);
+			assertEquals('"' + uuid.toString() + '"', contents(buffer));
+		}
+	}
+
+	private static int nanos(Random random) {
+		switch (random.nextInt(4)) {
+		case 0:
+			return 0;
+		case 1:
+			return random.nextInt(1000) * 1_000_000;
+		case 2:
+			return random.nextInt(1_000_000) * 1000;
+		default:
+			return random.nextInt(1_000_000_000);
+		}
+	}
+
+	private static String contents(JsonEventBuffer buffer) {
+		return StandardCharsets.UTF_8.decode(buffer.contents()).toString();
+	}
+
+	private String line() {
+		String text = new String(output.toByteArray(), StandardCharsets.UTF_8);
+		assertEquals('\n', text.charAt(text.length() - 1));
+		assertEquals(text.length() - 1, text.indexOf('\n'));
+		return text;
+	}
+}
@@ -0,0 +1,103 @@
+package org.araqnid.stuff.activity;
+
+import java.time.Instant;
+import java.util.SortedMap;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FanOutActivityEventSinkTest {
+	@Test
+	public void slow_destination_does_not_hold_up_others() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		CountingSink fast = new CountingSink(null);
+		CountingSink slow = new CountingSink(release);
+		FanOutActivityEventSink sink = new FanOutActivityEventSink(ImmutableMap.of("fast", fast, "slow", slow), 16,
+				AsyncActivityEventSink.OverflowPolicy.DROP, 1);
+		sink.startAsync().awaitRunning();
+		try {
+			UUID activityId = UUID.randomUUID();
+			for (int i = 1; i <= 100; i++) {
+				sink.activityNodeStart(activityId, i, ActivityNode.NO_PARENT, "Test", Instant.EPOCH, null);
+				while (fast.count.get() < i) {
+					Thread.sleep(1);
+				}
+			}
+
+			SortedMap<String, FanOutActivityEventSink.DestinationStatus> status = sink.status();
+			assertEquals(100, status.get("fast").delivered());
+			assertEquals(0, status.get("fast").dropped());
+			assertTrue(status.get("slow").dropped() > 0);
+			assertTrue(status.get("slow").lag() > 0);
+		} finally {
+			release.countDown();
+			sink.stopAsync().awaitTerminated(5, TimeUnit.SECONDS);
+		}
+		assertEquals(100, fast.count.get());
+		assertEquals(100 - sink.status().get("slow").dropped(), slow.count.get());
+	}
+
+	@Test
+	public void destination_failures_are_counted() throws Exception {
+		ActivityEventSink failing = new ActivityEventSink() {
+			@Override
+			public void activityNodeStart(UUID activityId,
+					long nodeId,
+					long nodeParentId,
+					String type,
+					Instant started,
+					@Nullable Object attributes) {
+				throw new IllegalStateException("test failure");
+			}
+
+			@Override
+			public void activityNodeEnd(UUID activityId, long nodeId, boolean success, long durationNanos, @Nullable Object attributes) {
+			}
+		};
+		FanOutActivityEventSink sink = new FanOutActivityEventSink(ImmutableMap.of("failing", failing), 16,
+				AsyncActivityEventSink.OverflowPolicy.BLOCK, 1);
+		sink.startAsync().awaitRunning();
+		sink.activityNodeStart(UUID.randomUUID(), 1, ActivityNode.NO_PARENT, "Test", Instant.EPOCH, null);
+		sink.stopAsync().awaitTerminated(5, TimeUnit.SECONDS);
+		assertEquals(1, sink.status().get("failing").failed());
+		assertEquals(1, sink.status().get("failing").delivered());
+	}
+
+	private static final class CountingSink implements ActivityEventSink {
+		@Nullable final CountDownLatch release;
+		final AtomicInteger count = new AtomicInteger();
+
+		CountingSink(@Nullable CountDownLatch release) {
+			this.release = release;
+		}
+
+		@Override
+		public void activityNodeStart(UUID activityId,
+				long nodeId,
+				long nodeParentId,
+				String type,
+				Instant started,
+				@Nullable Object attributes) {
+			if (release != null) {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			count.incrementAndGet();
+		}
+
+		@Override
+		public void activityNodeEnd(UUID activityId, long nodeId, boolean success, long durationNanos, @Nullable Object attributes) {
+		}
+	}
+}
@@ -0,0 +1,47 @@
+package org.araqnid.stuff.activity;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+	@Test
+	public void empty_histogram_reports_zeroes() {
+		LatencyHistogram.Snapshot snapshot = new LatencyHistogram().snapshot();
+		assertEquals(0, snapshot.count());
+		assertEquals(0, snapshot.percentileNanos(99));
+		assertEquals(0, snapshot.maxNanos());
+	}
+
+	@Test
+	public void percentiles_are_within_bucket_precision() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 1; i <= 1000; i++) {
+			histogram.record(TimeUnit.MICROSECONDS.toNanos(i));
+		}
+		LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+		assertEquals(1000, snapshot.count());
+		assertEquals(TimeUnit.MICROSECONDS.toNanos(1000), snapshot.maxNanos());
+		assertWithin(TimeUnit.MICROSECONDS.toNanos(500), snapshot.percentileNanos(50));
+		assertWithin(TimeUnit.MICROSECONDS.toNanos(990), snapshot.percentileNanos(99));
+		assertEquals(500500.0, snapshot.meanNanos(), 0.001);
+	}
+
+	@Test
+	public void bucket_bounds_contain_their_values() {
+		for (long value = 1; value < (1L << 41); value = value * 3 / 2 + 1) {
+			int index = LatencyHistogram.bucketIndex(value);
+			assertTrue("upper bound of bucket for " + value, LatencyHistogram.bucketUpperBound(index) >= value);
+			if (index > 0) {
+				assertTrue("upper bound of previous bucket for " + value, LatencyHistogram.bucketUpperBound(index - 1) < value);
+			}
+		}
+	}
+
+	private static void assertWithin(long expected, long actual) {
+		assertTrue("expected about " + expected + " but was " + actual, Math.abs(actual - expected) <= expected / 16);
+	}
+}
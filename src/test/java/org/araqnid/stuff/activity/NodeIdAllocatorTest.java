@@ -0,0 +1,42 @@
+package org.araqnid.stuff.activity;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class NodeIdAllocatorTest {
+	@Test
+	public void ids_are_unique_across_threads_and_allocators() throws Exception {
+		Set<Long> ids = ConcurrentHashMap.newKeySet();
+		NodeIdAllocator[] allocators = { NodeIdAllocator.sequential(), NodeIdAllocator.threadBlocks(16),
+				NodeIdAllocator.threadBlocks(1000) };
+		Thread[] threads = new Thread[8];
+		for (int i = 0; i < threads.length; i++) {
+			NodeIdAllocator allocator = allocators[i % allocators.length];
+			threads[i] = new Thread(() -> {
+				for (int j = 0; j < 10000; j++) {
+					ids.add(allocator.next());
+				}
+			});
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(80000, ids.size());
+		assertFalse(ids.contains(ActivityNode.NO_PARENT));
+	}
+
+	@Test
+	public void activity_nodes_take_ids_from_activity_allocator() {
+		long[] next = { 100 };
+		Activity activity = new Activity(UUID.randomUUID(), "Test", null, new RecordingActivityEventSink(), () -> next[0]++, ActivityTiming.DEFAULT);
+		assertEquals(100, activity.root.id);
+		assertEquals(101, activity.root.begin("Child", null).id);
+	}
+}
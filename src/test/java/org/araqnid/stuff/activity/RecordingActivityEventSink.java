@@ -0,0 +1,87 @@
+package org.araqnid.stuff.activity;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+
+import static java.util.stream.Collectors.toList;
+
+/** Keeps every event it receives, from any thread, for tests to inspect */
+public final class RecordingActivityEventSink implements ActivityEventSink {
+	public final List<Event> events = new CopyOnWriteArrayList<>();
+
+	@Override
+	public void activityNodeStart(UUID activityId,
+			long nodeId,
+			long nodeParentId,
+			String type,
+			Instant started,
+			@Nullable Object attributes) {
+		events.add(new Event(false, activityId, nodeId, nodeParentId, type, started, false, 0, attributes));
+	}
+
+	@Override
+	public void activityNodeEnd(UUID activityId, long nodeId, boolean success, long durationNanos, @Nullable Object attributes) {
+		events.add(new Event(true, activityId, nodeId, ActivityNode.NO_PARENT, null, null, success, durationNanos, attributes));
+	}
+
+	/** Events formatted as "start nodeId" or "end nodeId" */
+	public List<String> describe() {
+		return describe(Event::toString);
+	}
+
+	public List<String> describe(Function<Event, String> formatter) {
+		return events.stream().map(formatter).collect(toList());
+	}
+
+	public List<Event> starts() {
+		return events.stream().filter(e -> !e.end).collect(toList());
+	}
+
+	public List<Event> ends() {
+		return events.stream().filter(e -> e.end).collect(toList());
+	}
+
+	public static final class Event {
+		public final boolean end;
+		public final UUID activityId;
+		public final long nodeId;
+		/** Parent node ID for start events, {@link ActivityNode#NO_PARENT} for end events */
+		public final long nodeParentId;
+		/** Node type for start events, null for end events */
+		@Nullable public final String type;
+		/** Start time for start events, null for end events */
+		@Nullable public final Instant started;
+		public final boolean success;
+		public final long durationNanos;
+		@Nullable public final Object attributes;
+
+		Event(boolean end,
+				UUID activityId,
+				long nodeId,
+				long nodeParentId,
+				@Nullable String type,
+				@Nullable Instant started,
+				boolean success,
+				long durationNanos,
+				@Nullable Object attributes) {
+			this.end = end;
+			this.activityId = activityId;
+			this.nodeId = nodeId;
+			this.nodeParentId = nodeParentId;
+			this.type = type;
+			this.started = started;
+			this.success = success;
+			this.durationNanos = durationNanos;
+			this.attributes = attributes;
+		}
+
+		@Override
+		public String toString() {
+			return (end ? "end " : "start ") + nodeId;
+		}
+	}
+}
@@ -0,0 +1,64 @@
+package org.araqnid.stuff.activity;
+
+import java.util.UUID;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ResourceAccountingTest {
+	private final RecordingActivityEventSink sink = new RecordingActivityEventSink();
+
+	@Test
+	public void sampled_activity_reports_usage_in_completion_attributes() {
+		ResourceAccounting accounting = new ResourceAccounting(1.0);
+		Activity activity = new Activity(UUID.randomUUID(), "Test", null, sink, NodeIdAllocator.DEFAULT,
+				ActivityTiming.DEFAULT, accounting);
+		activity.begin();
+		ActivityNode child = activity.root.begin("Allocating");
+		byte[][] garbage = new byte[100][];
+		for (int i = 0; i < garbage.length; i++) {
+			garbage[i] = new byte[10000];
+		}
+		child.complete(true, new ActivityAttributes(1).with("status", "done"));
+		activity.complete(true);
+
+		ActivityAttributes usage = (ActivityAttributes) sink.ends().get(0).attributes;
+		assertEquals("done", usage.get("status"));
+		assertTrue((Long) usage.get("cpu_nanos") >= 0);
+		assertTrue((Long) usage.get("allocated_bytes") >= 1000000);
+		assertEquals(3, usage.size());
+		assertEquals(2, ((ActivityAttributes) sink.ends().get(1).attributes).size());
+		assertEquals(1, accounting.snapshot().get("Allocating").count());
+		assertEquals(1, accounting.snapshot().get("Test").count());
+		assertTrue(accounting.snapshot().get("Test").allocatedBytes() >= (Long) usage.get("allocated_bytes"));
+	}
+
+	@Test
+	public void usage_replaces_existing_keys_in_a_copy() {
+		ResourceAccounting accounting = new ResourceAccounting(1.0);
+		ActivityAttributes attributes = new ActivityAttributes(3).with("status", "done").with("cpu_nanos", -5L)
+				.with("allocated_bytes", -5L);
+
+		ActivityAttributes first = (ActivityAttributes) accounting.record("Test", 10, 20, attributes);
+		ActivityAttributes second = (ActivityAttributes) accounting.record("Test", 30, 40, attributes);
+
+		assertEquals("{status=done, cpu_nanos=-5, allocated_bytes=-5}", attributes.toString());
+		assertEquals("{status=done, cpu_nanos=10, allocated_bytes=20}", first.toString());
+		assertEquals("{status=done, cpu_nanos=30, allocated_bytes=40}", second.toString());
+	}
+
+	@Test
+	public void unsampled_activity_leaves_attributes_alone() {
+		ResourceAccounting accounting = new ResourceAccounting(0.0);
+		Activity activity = new Activity(UUID.randomUUID(), "Test", null, sink, NodeIdAllocator.DEFAULT,
+				ActivityTiming.DEFAULT, accounting);
+		activity.begin();
+		activity.complete(true);
+
+		assertNull(sink.ends().get(0).attributes);
+		assertTrue(accounting.snapshot().isEmpty());
+	}
+}
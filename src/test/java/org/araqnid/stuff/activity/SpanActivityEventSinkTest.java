@@ -0,0 +1,98 @@
+package org.araqnid.stuff.activity;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Ticker;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SpanActivityEventSinkTest {
+	private final ObjectMapper mapper = new ObjectMapper();
+	private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+	private final long[] ticks = new long[1];
+	private final SpanActivityEventSink sink = new SpanActivityEventSink(
+			new ChannelActivityJsonEvents(mapper, UUID.randomUUID(), Channels.newChannel(output), 0),
+			Duration.ofSeconds(5), new Ticker() {
+				@Override
+				public long read() {
+					return ticks[0];
+				}
+			});
+	private final UUID activityId = UUID.randomUUID();
+	private final Instant started = Instant.parse("2017-03-01T12:00:00Z");
+
+	@Test
+	public void node_completing_within_threshold_written_as_one_span() throws Exception {
+		sink.activityNodeStart(activityId, 1, ActivityNode.NO_PARENT, "Test", started,
+				new ActivityAttributes().with("path", "/"));
+		sink.activityNodeStart(activityId, 2, 1, "Child", started, null);
+		assertEquals(0, output.size());
+		sink.activityNodeEnd(activityId, 2, false, 1_000_000L, null);
+		sink.activityNodeEnd(activityId, 1, true, 2_000_000L, new ActivityAttributes().with("status", 200));
+
+		List<JsonNode> events = lines();
+		assertEquals(2, events.size());
+		JsonNode child = events.get(0);
+		assertEquals("span", child.get("@type").asText());
+		assertEquals(activityId.toString(), child.get("activityId").asText());
+		assertEquals(2, child.get("nodeId").asLong());
+		assertEquals(1, child.get("nodeParentId").asLong());
+		assertEquals("Child", child.get("node_type").asText());
+		assertFalse(child.get("success").asBoolean());
+		assertEquals("PT0.001S", child.get("duration").asText());
+		assertNull(child.get("endAttributes"));
+		JsonNode root = events.get(1);
+		assertNull(root.get("nodeParentId"));
+		assertEquals(started.toString(), root.get("started").asText());
+		assertTrue(root.get("success").asBoolean());
+		assertEquals("/", root.get("attributes").get("path").asText());
+		assertEquals(200, root.get("endAttributes").get("status").asInt());
+		assertEquals(2, sink.getSpanCount());
+		assertEquals(0, sink.getPendingCount());
+	}
+
+	@Test
+	public void start_written_for_node_open_beyond_threshold() throws Exception {
+		sink.activityNodeStart(activityId, 1, ActivityNode.NO_PARENT, "Test", started, null);
+		ticks[0] = Duration.ofSeconds(4).toNanos();
+		sink.activityNodeStart(activityId, 2, 1, "Child", started, null);
+		ticks[0] = Duration.ofSeconds(6).toNanos();
+		sink.flush();
+
+		List<JsonNode> events = lines();
+		assertEquals(1, events.size());
+		assertEquals("start", events.get(0).get("@type").asText());
+		assertEquals(1, events.get(0).get("nodeId").asLong());
+
+		output.reset();
+		sink.activityNodeEnd(activityId, 2, true, 1_000_000L, null);
+		sink.activityNodeEnd(activityId, 1, true, Duration.ofSeconds(6).toNanos(), null);
+		events = lines();
+		assertEquals(2, events.size());
+		assertEquals("span", events.get(0).get("@type").asText());
+		assertEquals("end", events.get(1).get("@type").asText());
+		assertEquals(1, events.get(1).get("nodeId").asLong());
+		assertEquals(1, sink.getSplitSpanCount());
+	}
+
+	private List<JsonNode> lines() throws Exception {
+		List<JsonNode> events = new ArrayList<>();
+		for (String line : new String(output.toByteArray(), StandardCharsets.UTF_8).split("\n")) {
+			if (!line.isEmpty()) events.add(mapper.readTree(line));
+		}
+		return events;
+	}
+}
@@ -0,0 +1,142 @@
+package org.araqnid.stuff.activity;
+
+import java.io.Flushable;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import javax.annotation.Nullable;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class TailSamplingActivityEventSinkTest {
+	private final RecordingActivityEventSink recorder = new RecordingActivityEventSink();
+
+	@Test
+	public void fast_successful_activity_is_discarded() {
+		TailSamplingActivityEventSink sink = sink(100, 1000);
+		runActivity(sink, true, Duration.ofMillis(10));
+		assertEquals(0, recorder.events.size());
+		assertEquals(1, sink.getDiscardedCount());
+		assertEquals(0, sink.getBufferedEventCount());
+	}
+
+	@Test
+	public void slow_activity_is_emitted_in_order() {
+		TailSamplingActivityEventSink sink = sink(100, 1000);
+		runActivity(sink, true, Duration.ofSeconds(2));
+		assertEquals("[start 1, start 2, end 2, end 1]", emitted().toString());
+		assertEquals(1, sink.getKeptCount());
+		assertEquals(0, sink.getBufferedEventCount());
+	}
+
+	@Test
+	public void activity_with_failed_child_is_emitted() {
+		TailSamplingActivityEventSink sink = sink(100, 1000);
+		runActivity(sink, false, Duration.ofMillis(10));
+		assertEquals(4, recorder.events.size());
+	}
+
+	@Test
+	public void overlapping_roots_of_one_activity_buffered_separately() {
+		TailSamplingActivityEventSink sink = sink(100, 1000);
+		UUID activityId = UUID.randomUUID();
+		sink.activityNodeStart(activityId, 1, ActivityNode.NO_PARENT, "Root", Instant.EPOCH, null);
+		sink.activityNodeStart(activityId, 2, ActivityNode.NO_PARENT, "Root", Instant.EPOCH, null);
+		sink.activityNodeStart(activityId, 3, 1, "Child", Instant.EPOCH, null);
+		sink.activityNodeStart(activityId, 4, 2, "Child", Instant.EPOCH, null);
+		sink.activityNodeEnd(activityId, 4, true, Duration.ZERO, null);
+		sink.activityNodeEnd(activityId, 2, true, Duration.ofMillis(10), null);
+		assertEquals(0, recorder.events.size());
+		assertEquals(2, sink.getBufferedEventCount());
+		sink.activityNodeEnd(activityId, 3, true, Duration.ZERO, null);
+		sink.activityNodeEnd(activityId, 1, true, Duration.ofSeconds(2), null);
+		assertEquals("[start 1, start 3, end 3, end 1]", emitted().toString());
+		assertEquals(1, sink.getKeptCount());
+		assertEquals(1, sink.getDiscardedCount());
+		assertEquals(0, sink.getBufferedEventCount());
+	}
+
+	@Test
+	public void events_beyond_per_activity_limit_are_discarded() {
+		TailSamplingActivityEventSink sink = sink(4, 1000);
+		UUID activityId = UUID.randomUUID();
+		sink.activityNodeStart(activityId, 1, ActivityNode.NO_PARENT, "Root", Instant.EPOCH, null);
+		for (int i = 2; i <= 10; i++) {
+			sink.activityNodeStart(activityId, i, 1, "Child", Instant.EPOCH, null);
+			sink.activityNodeEnd(activityId, i, true, Duration.ZERO, null);
+		}
+		sink.activityNodeEnd(activityId, 1, true, Duration.ofSeconds(2), null);
+		assertEquals("[start 1, start 2, end 2, end 1 truncated]", emitted().toString());
+		assertEquals(0, sink.getBufferedEventCount());
+	}
+
+	@Test
+	public void activities_beyond_total_limit_are_not_traced() {
+		TailSamplingActivityEventSink sink = sink(100, 3);
+		UUID first = UUID.randomUUID();
+		sink.activityNodeStart(first, 1, ActivityNode.NO_PARENT, "Root", Instant.EPOCH, null);
+		sink.activityNodeStart(first, 2, 1, "Child", Instant.EPOCH, null);
+		sink.activityNodeStart(UUID.randomUUID(), 3, ActivityNode.NO_PARENT, "Root", Instant.EPOCH, null);
+		sink.activityNodeStart(UUID.randomUUID(), 4, ActivityNode.NO_PARENT, "Root", Instant.EPOCH, null);
+		assertEquals(1, sink.getOverflowCount());
+		assertEquals(3, sink.getBufferedEventCount());
+	}
+
+	private TailSamplingActivityEventSink sink(int maxEventsPerActivity, int maxEventsTotal) {
+		return new TailSamplingActivityEventSink(recorder, Duration.ofSeconds(1), 0.0, maxEventsPerActivity,
+				maxEventsTotal, Duration.ofMinutes(5));
+	}
+
+	@Test
+	public void flush_and_close_passed_to_delegate() throws Exception {
+		ClosingSink delegate = new ClosingSink();
+		TailSamplingActivityEventSink sink = new TailSamplingActivityEventSink(delegate, Duration.ofSeconds(1), 0.0, 100,
+				1000, Duration.ofMinutes(5));
+		sink.flush();
+		sink.close();
+		assertEquals("[flush, close]", delegate.calls.toString());
+	}
+
+	private List<String> emitted() {
+		return recorder.describe(e -> e + (e.attributes instanceof TailSamplingActivityEventSink.TruncatedTrace ? " truncated" : ""));
+	}
+
+	private static void runActivity(ActivityEventSink sink, boolean childSuccess, Duration rootDuration) {
+		UUID activityId = UUID.randomUUID();
+		sink.activityNodeStart(activityId, 1, ActivityNode.NO_PARENT, "Root", Instant.EPOCH, null);
+		sink.activityNodeStart(activityId, 2, 1, "Child", Instant.EPOCH, null);
+		sink.activityNodeEnd(activityId, 2, childSuccess, Duration.ZERO, null);
+		sink.activityNodeEnd(activityId, 1, true, rootDuration, null);
+	}
+
+	private static final class ClosingSink implements ActivityEventSink, Flushable, AutoCloseable {
+		final List<String> calls = new ArrayList<>();
+
+		@Override
+		public void activityNodeStart(UUID activityId,
+				long nodeId,
+				long nodeParentId,
+				String type,
+				Instant started,
+				@Nullable Object attributes) {
+		}
+
+		@Override
+		public void activityNodeEnd(UUID activityId, long nodeId, boolean success, long durationNanos, @Nullable Object attributes) {
+		}
+
+		@Override
+		public void flush() {
+			calls.add("flush");
+		}
+
+		@Override
+		public void close() {
+			calls.add("close");
+		}
+	}
+}
@@ -0,0 +1,49 @@
+package org.araqnid.stuff.config;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class EmbeddedResourceIndexTest {
+	private final EmbeddedResourceIndex index = EmbeddedResourceIndex.of("stuff/web",
+			ImmutableList.of("index.html", "js/bus.js", "js/lib/es6.js", "css/site.css"));
+
+	@Test
+	public void root_lists_files_and_directories() {
+		EmbeddedResourceIndex.Node root = index.lookup("stuff/web");
+		assertTrue(root.isDirectory());
+		assertArrayEquals(new String[] { "css/", "index.html", "js/" }, root.list());
+		assertArrayEquals(root.list(), index.lookup("stuff/web/").list());
+	}
+
+	@Test
+	public void nested_paths_resolved() {
+		assertArrayEquals(new String[] { "bus.js", "lib/" }, index.lookup("stuff/web/js").list());
+		assertTrue(index.lookup("stuff/web/js/lib/").isDirectory());
+		assertFalse(index.lookup("stuff/web/js/lib/es6.js").isDirectory());
+		assertEquals(0, index.lookup("stuff/web/index.html").list().length);
+	}
+
+	@Test
+	public void missing_paths_not_found() {
+		assertNull(index.lookup("stuff/web/missing.js"));
+		assertNull(index.lookup("stuff/web/index.html/x"));
+		assertNull(index.lookup("stuff/webby/index.html"));
+		assertNull(index.lookup("other/index.html"));
+	}
+
+	@Test
+	public void index_file_read_one_path_per_line() throws Exception {
+		byte[] content = "index.html\njs/bus.js\n\n".getBytes(StandardCharsets.UTF_8);
+		assertEquals(Arrays.asList("index.html", "js/bus.js"), EmbeddedResourceIndex.read(new ByteArrayInputStream(content)));
+	}
+}
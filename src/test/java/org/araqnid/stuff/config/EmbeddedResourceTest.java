@@ -0,0 +1,83 @@
+package org.araqnid.stuff.config;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.After;
+import org.junit.Test;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class EmbeddedResourceTest {
+	private final Path root;
+
+	public EmbeddedResourceTest() throws IOException {
+		root = Files.createTempDirectory("web");
+	}
+
+	@After
+	public void cleanUp() throws IOException {
+		try (Stream<Path> paths = Files.walk(root)) {
+			for (Path path : paths.sorted(Comparator.reverseOrder()).collect(toList())) {
+				Files.delete(path);
+			}
+		}
+	}
+
+	@Test
+	public void content_loaded_once_and_shared_between_resources() throws Exception {
+		Files.createDirectories(root.resolve("stuff/web"));
+		Path file = Files.write(root.resolve("stuff/web/index.html"), "<html></html>".getBytes(StandardCharsets.UTF_8));
+		try (URLClassLoader classLoader = new URLClassLoader(new URL[] { root.toUri().toURL() }, null)) {
+			EmbeddedResource webRoot = new EmbeddedResource(classLoader,
+					EmbeddedResourceIndex.of("stuff/web", ImmutableList.of("index.html")));
+			EmbeddedResource index = (EmbeddedResource) webRoot.addPath("/index.html");
+
+			assertEquals(13, index.length());
+			assertEquals(Files.getLastModifiedTime(file).toMillis(), index.lastModified());
+			ByteBuffer first = index.getDirectBuffer();
+			assertTrue(first.isDirect());
+			assertTrue(first.isReadOnly());
+
+			Files.write(file, "changed".getBytes(StandardCharsets.UTF_8));
+			ByteBuffer second = ((EmbeddedResource) webRoot.addPath("/index.html")).getDirectBuffer();
+			assertEquals("<html></html>", StandardCharsets.UTF_8.decode(second).toString());
+			assertEquals(13, first.remaining());
+			assertNull(index.getFile());
+			assertEquals(-1, webRoot.length());
+		}
+	}
+
+	@Test
+	public void channel_reads_content_in_chunks() throws Exception {
+		Files.createDirectories(root.resolve("stuff/web"));
+		Files.write(root.resolve("stuff/web/app.js"), "0123456789".getBytes(StandardCharsets.UTF_8));
+		try (URLClassLoader classLoader = new URLClassLoader(new URL[] { root.toUri().toURL() }, null)) {
+			EmbeddedResource resource = (EmbeddedResource) new EmbeddedResource(classLoader,
+					EmbeddedResourceIndex.of("stuff/web", ImmutableList.of("app.js"))).addPath("/app.js");
+			StringBuilder read = new StringBuilder();
+			try (ReadableByteChannel channel = resource.getReadableByteChannel()) {
+				ByteBuffer chunk = ByteBuffer.allocate(4);
+				while (channel.read(chunk) >= 0) {
+					chunk.flip();
+					read.append(StandardCharsets.UTF_8.decode(chunk));
+					chunk.clear();
+				}
+			}
+			assertEquals("0123456789", read.toString());
+			assertEquals(10, resource.getDirectBuffer().remaining());
+		}
+	}
+}
@@ -0,0 +1,49 @@
+package org.araqnid.stuff.config;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class VirtualThreadPoolTest {
+	@Test
+	public void available_exactly_when_runtime_has_virtual_threads() {
+		boolean runtimeHasVirtualThreads;
+		try {
+			Thread.class.getMethod("ofVirtual");
+			runtimeHasVirtualThreads = true;
+		} catch (NoSuchMethodException e) {
+			runtimeHasVirtualThreads = false;
+		}
+		assertEquals(runtimeHasVirtualThreads, VirtualThreadPool.create("test").isPresent());
+	}
+
+	@Test
+	public void runs_tasks_on_virtual_threads() throws Exception {
+		Optional<VirtualThreadPool> created = VirtualThreadPool.create("test");
+		assumeTrue("virtual threads available", created.isPresent());
+		VirtualThreadPool pool = created.get();
+		pool.start();
+		try {
+			CompletableFuture<Object> result = new CompletableFuture<>();
+			pool.execute(() -> {
+				try {
+					result.complete(new Object[] { Thread.class.getMethod("isVirtual").invoke(Thread.currentThread()),
+							Thread.currentThread().getName() });
+				} catch (ReflectiveOperationException e) {
+					result.completeExceptionally(e);
+				}
+			});
+			Object[] observed = (Object[]) result.get(5, TimeUnit.SECONDS);
+			assertEquals(Boolean.TRUE, observed[0]);
+			assertTrue(((String) observed[1]).startsWith("test-"));
+		} finally {
+			pool.stop();
+		}
+	}
+}